@@ -32,6 +32,12 @@
  */
 package org.n52.v3d.triturus.geologic.analysis;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dProcFilter;
 import org.n52.v3d.triturus.gisimplm.FltTIN2ElevationGrid;
@@ -54,6 +60,17 @@ import org.n52.v3d.triturus.vgis.VgPoint;
  * exceed the value {@link this#nMax}. For <i>n</i> &lt; 1 or <i>n</i> &gt; 
  * {@link this#nMax}, the {@link this#transform} method will throw an 
  * exception.
+ * <br>
+ * For quadratic windows, the window sums can be taken from summed-area 
+ * tables (see {@link #setUseSummedAreaTables(boolean)}); then, the 
+ * computation time does not depend on the window size. Circle-shaped 
+ * windows can be computed from row-wise prefix sums (see 
+ * {@link #setUseRowSpanSums(boolean)}); then, the computation time grows 
+ * linearly with the window size. Moreover, the computation can be 
+ * distributed to multiple threads (see {@link #setParallelism(int)}), and 
+ * the results for multiple window sizes can be computed in one pass (see 
+ * {@link #transformMultiScale(GmSimpleTINFeature, GmSimpleTINFeature, 
+ * short[], int, String, String)}).
  * 
  * @author Maximilian Haverkamp, Benno Schmidt
  */
@@ -74,6 +91,13 @@ public class FltTINCorrelation extends T3dProcFilter
 	private String z = "max";
 	private String u = "ARC_INFO_ASCII_GRID";
 	private String s = "Quadrat";
+	private boolean useSummedAreaTables = false;
+	private boolean useRowSpanSums = false;
+	private int parallelism = 1;
+
+	// Tile size (number of rows and columns) for summed-area tables, 
+	// row-span sums and concurrent processing:
+	private static final int TILE_SIZE = 128;
 	
 	
     public FltTINCorrelation() {
@@ -197,6 +221,67 @@ public class FltTINCorrelation extends T3dProcFilter
 	public void setWindowForm(String s){
 		this.s = s;
 	}
+
+	/**
+	 * enables the computation of quadratic windows by summed-area tables. 
+	 * The tables are set up tile by tile; afterwards, the mean values, 
+	 * variances and covariances are determined in constant time for each 
+	 * window, i.e. large windows (e.g. 13x13) are as cheap as small ones. 
+	 * The results equal those of the direct computation up to rounding 
+	 * errors; windows whose variance is small compared to the table entries 
+	 * (e.g. constant windows) are computed directly. By default, the direct 
+	 * computation will be used.
+	 * 
+	 * @param useSummedAreaTables <i>true</i> to use summed-area tables
+	 */
+	public void setUseSummedAreaTables(boolean useSummedAreaTables) {
+		this.useSummedAreaTables = useSummedAreaTables;
+	}
+
+	public boolean getUseSummedAreaTables() {
+		return useSummedAreaTables;
+	}
+
+	/**
+	 * enables the computation of circle-shaped windows by row-wise prefix 
+	 * sums. Each window is composed of one contiguous span per row, so that 
+	 * the sums for a window are taken from two table entries per row instead 
+	 * of visiting every window cell. The results equal those of the direct 
+	 * computation up to rounding errors (cf. 
+	 * {@link #setUseSummedAreaTables(boolean)}). By default, the direct 
+	 * computation will be used.
+	 * 
+	 * @param useRowSpanSums <i>true</i> to use row-wise prefix sums
+	 */
+	public void setUseRowSpanSums(boolean useRowSpanSums) {
+		this.useRowSpanSums = useRowSpanSums;
+	}
+
+	public boolean getUseRowSpanSums() {
+		return useRowSpanSums;
+	}
+
+	/**
+	 * sets the number of worker threads used to compute the correlation 
+	 * grid. For values &gt; 1, the grid will be divided into tiles, which 
+	 * will be processed concurrently in a {@link ForkJoinPool}; every tile 
+	 * reads the overlapping window cells of its neighbours, but writes its 
+	 * own result cells only. The results are identical to those of the 
+	 * sequential computation. By default, the computation runs on the 
+	 * calling thread (parallelism 1).
+	 * 
+	 * @param parallelism Number of worker threads; for values &lt;= 0, the 
+	 * number of available processors will be used
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0)
+			parallelism = Runtime.getRuntime().availableProcessors();
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
 		
     /**
      * returns available output format options.
@@ -259,7 +344,7 @@ public class FltTINCorrelation extends T3dProcFilter
      * @param zConflictHandler Directive how to handle z-value conflicts in 3-D rasterization process
      * @param windowForm Window form parameter (e.g. quadratic or circle-shaped)
      * @return Result grid
-     * @throws T3dException if an error occurs
+     * @throws T3dException if the window size is not positive
      */
     public VgElevationGrid  transform(
     	GmSimpleTINFeature tin1, GmSimpleTINFeature tin2,
@@ -269,7 +354,7 @@ public class FltTINCorrelation extends T3dProcFilter
     	if (tin1 != null) this.tin1 = tin1;
     	if (tin2 != null) this.tin2 = tin2;
     	
-        // this.checkWindowSize(n);
+		this.checkPositive(windowSize);
         
 		try {
 			// creating the Bounding Box for the area
@@ -304,255 +389,451 @@ public class FltTINCorrelation extends T3dProcFilter
 			VgElevationGrid grd2 = gridTwo.transform(tin2);
 			VgElevationGrid grdCorr = correlation.transform(tin1);
 
+			// flat copies of the input grids for the computation kernels:
+			final GridBuffer b1 = new GridBuffer((GmSimpleElevationGrid) grd);
+			final GridBuffer b2 = new GridBuffer((GmSimpleElevationGrid) grd2);
 
-			double[][] grdOneDeviation = new double[grd.numberOfRows()][grd.numberOfColumns()];
-			double[][] grdTwoDeviation = new double[grd2.numberOfRows()][grd2.numberOfColumns()];
-			double[][] covariance = new double[grd2.numberOfRows()][grd2.numberOfColumns()];
+			// correlation coefficients (NaN for cells without complete window):
+			final double[] r = new double[b1.numberOfRows() * b1.numberOfColumns()];
+			Arrays.fill(r, Double.NaN);
+
+			// Correlations are computed for the cells [iMin, iMax) x [jMin, jMax):
+			int 
+				iMin = (windowSize - 1) / 2, iMax = grd.numberOfRows() - (windowSize + 1) / 2, 
+				jMin = (windowSize - 1) / 2, jMax = grd.numberOfColumns() - (windowSize + 1) / 2;
 
 			switch (windowForm){
 
 			case ("Quadrat"):
-
-
-			//first entry is set with top left window corner on top left grid corner
-
-			for (int i = 0 + ((windowSize - 1) / 2); i < grd.numberOfRows() - ((windowSize + 1) / 2); i++) {
-
-				for (int j = 0 + ((windowSize - 1) / 2); j < grd.numberOfColumns() - ((windowSize + 1) / 2); j++) {
-					double meanGridOne = 0;
-					double sumX = 0;
-					double meanGridOne2 = 0;
-					double sumY = 0;
-					double sumXY = 0;
-					int counter = 0; // auxiliary variable
-
-					{
-						// checking if every field in the current window position is set, otherwise the correlation
-						// would be irregular
-						for (int k = -((windowSize - 1) / 2); k < (windowSize + 1) / 2; k++) {
-							for (int l = -((windowSize - 1) / 2); l < (windowSize + 1) / 2; l++) {
-
-
-								if ((boolean) ((GmSimpleElevationGrid) grd2).isSet(i + k, j + l) != false
-										&& (boolean) ((GmSimpleElevationGrid) grd).isSet(i + k, j + l) != false) {
-
-									counter++;
-								}
-
-
-
-							}
+				if (useSummedAreaTables) {
+					if (windowSize % 2 == 0)
+						break; // no complete windows (cf. direct computation)
+					this.forEachTile(iMin, iMax, jMin, jMax, new TileComputation() {
+						public void compute(int i0, int i1, int j0, int j1) {
+							squareWindowCorrelation_SAT(b1, b2, windowSize, i0, i1, j0, j1, r);
 						}
-						// calculation means of the current window
-						if (counter == (windowSize * windowSize)) { // -1
-							for (int k = -((windowSize - 1) / 2); k < (windowSize + 1) / 2; k++) {
-								for (int l = -((windowSize - 1) / 2); l < (windowSize + 1) / 2; l++) {
-
-									meanGridOne = meanGridOne + (((GmSimpleElevationGrid) grd).getValue(i + k, j + l));
-									meanGridOne2 = meanGridOne2
-											+ (((GmSimpleElevationGrid) grd2).getValue(i + k, j + l));
-
-
-
-								}
-							}
-
-							meanGridOne = meanGridOne / (windowSize * windowSize);
-							meanGridOne2 = meanGridOne2 / (windowSize * windowSize);
-							//calculating sums in each window
-							for (int k = -((windowSize - 1) / 2); k < (windowSize + 1) / 2; k++) {
-								for (int l = -((windowSize - 1) / 2); l < (windowSize + 1) / 2; l++) {
-
-
-									sumX = sumX + Math
-											.pow(((GmSimpleElevationGrid) grd).getValue(i + k, j + l) - meanGridOne, 2);
-									sumY = sumY + Math.pow(
-											((GmSimpleElevationGrid) grd2).getValue(i + k, j + l) - meanGridOne2, 2);
-									sumXY = sumXY + (((GmSimpleElevationGrid) grd).getValue(i + k, j + l)
-											- meanGridOne)
-											* (((GmSimpleElevationGrid) grd2).getValue(i + k, j + l) - meanGridOne2);
-
-								}
-							}
+					});
+				}
+				else {
+					final int[] halfWidths = this.squareHalfWidths(windowSize);
+					if (halfWidths == null)
+						break; // no complete windows (cf. direct computation)
+					this.forEachTile(iMin, iMax, jMin, jMax, new TileComputation() {
+						public void compute(int i0, int i1, int j0, int j1) {
+							windowCorrelation_Direct(b1, b2, halfWidths, i0, i1, j0, j1, r);
 						}
-					}
-					grdOneDeviation[i][j] = sumX;
-
-					grdTwoDeviation[i][j] = sumY;
-					covariance[i][j] = sumXY;
-
+					});
 				}
-			}break;
+				break;
 			case("Kreis"):
-				int circleCheck=0;
-			for (int z=0; z<=(windowSize-1)/2;z++){
-				circleCheck=circleCheck+z;
-			}
-			circleCheck=windowSize*windowSize-4*circleCheck; //Dreieckszahlen
-			System.out.println("CIRCLECHECK: "+circleCheck);
-			//first entry is set with top left window corner on top left grid corner
-
-			for (int i = 0 + ((windowSize - 1) / 2); i < grd.numberOfRows() - ((windowSize + 1) / 2); i++) {
-
-				for (int j = 0 + ((windowSize - 1) / 2); j < grd.numberOfColumns() - ((windowSize + 1) / 2); j++) {
-					double meanGridOne = 0;
-					double sumX = 0;
-					double meanGridTwo = 0;
-					double sumY = 0;
-					double sumXY = 0;
-					int counter = 0; // auxiliary variable
-
-					int x=((windowSize - 1) / 2)+1;
-					int y=((windowSize - 1) / 2)+1;
-						// checking if every field in the current window position is set, otherwise the correlation
-						// would be irregular
-					for (int k = -(windowSize-1)/2; k<(windowSize+1)/2; k++) {
-							if(y>0) {
-								x--;
-							}else{
-								x++;
-							}
-							y--;
-
-							for (int l = -((windowSize - 1) / 2)+x; l <= ((windowSize - 1) / 2)-x;l++) {
-
-
-								if ((boolean) ((GmSimpleElevationGrid) grd2).isSet(i + k, j + l) != false
-										&& (boolean) ((GmSimpleElevationGrid) grd).isSet(i + k, j + l) != false) {
-
-									counter++;
-
-								}
-
-
-
-							}
+				final int[] halfWidths = this.diamondHalfWidths(windowSize);
+				if (halfWidths == null)
+					break; // no complete windows (cf. direct computation)
+				if (useRowSpanSums) {
+					this.forEachTile(iMin, iMax, jMin, jMax, new TileComputation() {
+						public void compute(int i0, int i1, int j0, int j1) {
+							spanWindowCorrelation(b1, b2, halfWidths, i0, i1, j0, j1, r);
 						}
-						// calculation means of the current window
-
-
-						if (counter == circleCheck) {
-
-							x=((windowSize - 1) / 2)+1;
-							y=((windowSize - 1) / 2)+1;
+					});
+				}
+				else {
+					this.forEachTile(iMin, iMax, jMin, jMax, new TileComputation() {
+						public void compute(int i0, int i1, int j0, int j1) {
+							windowCorrelation_Direct(b1, b2, halfWidths, i0, i1, j0, j1, r);
+						}
+					});
+				}
+				break;
+			}
 
-							for (int k = -(windowSize-1)/2; k<(windowSize+1)/2; k++) {
-								if(y>0) {
-									x--;
-								}else{
-									x++;
-								}
-								y--;
-								for (int l = -((windowSize - 1) / 2)+x; l <= ((windowSize - 1) / 2)-x;l++) {
-									meanGridOne = meanGridOne + (((GmSimpleElevationGrid) grd).getValue(i + k, j + l));
-									meanGridTwo = meanGridTwo
-											+ (((GmSimpleElevationGrid) grd2).getValue(i + k, j + l));
 
+			// unset every not used field for better visualization
+			for (int i = 0; i < (grdCorr.numberOfRows()); i++) {
+				for (int j = 0; j < (grdCorr.numberOfColumns()); j++) {
 
+					((GmSimpleElevationGrid) grdCorr).unset(i, j);
 
+				}
+			}
 
-								}
 
+			// Input of correlations
+			for (int i = 0 + ((windowSize - 1) / 2); i < grdCorr.numberOfRows() - ((windowSize + 1) / 2); i++) {
+				for (int j = 0 + ((windowSize - 1) / 2); j < grdCorr.numberOfColumns() - ((windowSize + 1) / 2); j++) {
+					double rij = r[b1.index(i, j)];
+					if (!Double.isNaN(rij)) { // When Sum of X or Y is zero, the correlation is NaN
+						grdCorr.setValue(i, j, rij);
 
-							}
 
+					}
 
+				}
 
-							meanGridOne = meanGridOne / (circleCheck);
-							meanGridTwo = meanGridTwo / (circleCheck);
-							//calculating sums in each window
-							x=((windowSize - 1) / 2)+1;
-							y=((windowSize - 1) / 2)+1;
-							for (int k = -(windowSize-1)/2; k<(windowSize+1)/2; k++) {
-								if(y>0) {
-									x--;
-								}else{
-									x++;
-								}
-								y--;
-								for (int l = -((windowSize - 1) / 2)+x; l <= ((windowSize - 1) / 2)-x; l++) {
+			}
 
 
 
-									sumX = sumX + Math
-											.pow(((GmSimpleElevationGrid) grd).getValue(i + k, j + l) - meanGridOne, 2);
-									sumY = sumY + Math.pow(
-											((GmSimpleElevationGrid) grd2).getValue(i + k, j + l) - meanGridTwo, 2);
-									sumXY = sumXY + (((GmSimpleElevationGrid) grd).getValue(i + k, j + l)
-											- meanGridOne)
-											* (((GmSimpleElevationGrid) grd2).getValue(i + k, j + l) - meanGridTwo);
+			//returning correlation grid
+			return grdCorr;
 
 
-								}
-							}
+		} catch (T3dException e) {
+			e.printStackTrace();
+		}
 
-					    }
+        return null;
+    }
 
-					grdOneDeviation[i][j] = sumX;
+	/** 
+	 * computes the correlation coefficients of two TINs for multiple window 
+	 * sizes at once, e.g. for the sizes 3, 5, ..., 13 offered by 
+	 * {@link #UIDialog_MovingWindowSizeOptions()}. Both TINs will be 
+	 * rasterized only once; the window sums for all window sizes are taken 
+	 * from the same summed-area tables (&quot;Quadrat&quot;) or row-wise 
+	 * prefix sums (&quot;Kreis&quot;), which are set up tile by tile for the 
+	 * largest window size. Thus, the computation takes little more time 
+	 * than a single run of {@link #transform(GmSimpleTINFeature, 
+	 * GmSimpleTINFeature, short, int, String, String)}. As for single runs 
+	 * using summed-area tables or row-span sums (see 
+	 * {@link #setUseSummedAreaTables(boolean)}, 
+	 * {@link #setUseRowSpanSums(boolean)}), the result grids equal those of 
+	 * the direct computation up to rounding errors. Since the tables cover 
+	 * larger regions, the results may differ from those of single runs by 
+	 * rounding errors, too. The parallelism setting will be considered.
+	 *
+	 * @param tin1 First input TIN
+	 * @param tin2 Second input TIN
+	 * @param windowSizes Sizes of the moving windows (as numbers of raster cells)
+	 * @param cellSize TIN rasterization resolution
+	 * @param zConflictHandler Directive how to handle z-value conflicts in 3-D rasterization process
+	 * @param windowForm Window form parameter (&quot;Quadrat&quot; or &quot;Kreis&quot;)
+	 * @return Result grids, one for each window size (in the given order)
+	 * @throws T3dException if a window size is not positive or an error occurs
+	 */
+	public List<VgElevationGrid> transformMultiScale(
+		GmSimpleTINFeature tin1, GmSimpleTINFeature tin2,
+		short[] windowSizes, int cellSize, String zConflictHandler, String windowForm) 
+		throws T3dException
+	{
+		if (tin1 != null) this.tin1 = tin1;
+		if (tin2 != null) this.tin2 = tin2;
+
+		for (short windowSize : windowSizes)
+			this.checkPositive(windowSize);
+
+		final boolean square;
+		if ("Quadrat".equals(windowForm))
+			square = true;
+		else if ("Kreis".equals(windowForm))
+			square = false;
+		else
+			throw new T3dException("Unsupported window form \"" + windowForm + "\".");
+
+		VgEnvelope bbox = GmEnvelope.intersect(this.tin1.envelope(), this.tin2.envelope());
+		VgEquidistGrid grdGeom = this.setUpGeometry(bbox, cellSize);
+
+		final GridBuffer b1 = new GridBuffer(
+			(GmSimpleElevationGrid) this.rasterize(this.tin1, grdGeom, zConflictHandler));
+		final GridBuffer b2 = new GridBuffer(
+			(GmSimpleElevationGrid) this.rasterize(this.tin2, grdGeom, zConflictHandler));
+		int nRows = b1.numberOfRows(), nCols = b1.numberOfColumns();
+
+		// Window shapes (null, if there are no complete windows) and results:
+		final int[][] halfWidths = new int[windowSizes.length][];
+		final double[][] r = new double[windowSizes.length][];
+		int hMin = Integer.MAX_VALUE, hMax = -1;
+		for (int s = 0; s < windowSizes.length; s++) {
+			halfWidths[s] = square ? 
+				this.squareHalfWidths(windowSizes[s]) : this.diamondHalfWidths(windowSizes[s]);
+			r[s] = new double[nRows * nCols];
+			Arrays.fill(r[s], Double.NaN);
+			if (halfWidths[s] != null) {
+				int h = (halfWidths[s].length - 1) / 2;
+				hMin = Math.min(hMin, h);
+				hMax = Math.max(hMax, h);
+			}
+		}
 
-					grdTwoDeviation[i][j] = sumY;
-					covariance[i][j] = sumXY;
+		// The smallest window gives the largest set of result cells:
+		if (hMax >= 0) {
+			final int hLimit = hMax;
+			this.forEachTile(hMin, nRows - hMin - 1, hMin, nCols - hMin - 1, new TileComputation() {
+				public void compute(int i0, int i1, int j0, int j1) {
+					multiScaleCorrelation(b1, b2, square, halfWidths, hLimit, i0, i1, j0, j1, r);
+				}
+			});
+		}
 
+		List<VgElevationGrid> res = new ArrayList<VgElevationGrid>(windowSizes.length);
+		VgPoint origin = new GmPoint(bbox.getXMin(), bbox.getYMin(), 0.0);
+		for (int s = 0; s < windowSizes.length; s++) {
+			GmSimpleElevationGrid grdCorr = 
+				new GmSimpleElevationGrid(nCols, nRows, origin, cellSize, cellSize);
+			for (int i = 0, k = 0; i < nRows; i++) {
+				for (int j = 0; j < nCols; j++, k++) {
+					if (Double.isNaN(r[s][k]))
+						grdCorr.unset(i, j);
+					else
+						grdCorr.setValue(i, j, r[s][k]);
 				}
 			}
+			r[s] = null;
+			res.add(grdCorr);
+		}
+		return res;
+	}
 
+	private VgElevationGrid rasterize(
+		GmSimpleTINFeature tin, VgEquidistGrid grdGeom, String zConflictHandler)
+	{
+		FltTIN2ElevationGrid grid = new FltTIN2ElevationGrid();
+		//setting the conflict handler for occurance of multiple Z Coordinates
+		if(zConflictHandler=="max") {
+			grid.setZConflictHandler(FltTIN2ElevationGrid.CONFLICT_TAKE_MAX_Z);
+		} else if(zConflictHandler=="min") {
+			grid.setZConflictHandler(FltTIN2ElevationGrid.CONFLICT_TAKE_MIN_Z);
+		} else if(zConflictHandler=="avg") {
+			grid.setZConflictHandler(FltTIN2ElevationGrid.CONFLICT_TAKE_AVG_Z);
+		}
+		grid.setGridGeometry(grdGeom);
+		return grid.transform(tin);
+	}
+    
+	// Computation for the result cells [i0, i1) x [j0, j1):
+	private interface TileComputation {
+		void compute(int i0, int i1, int j0, int j1);
+	}
 
-			break;
+	// Performs the given computation for the tiles of TILE_SIZE x TILE_SIZE 
+	// cells covering [iMin, iMax) x [jMin, jMax). For parallelism > 1, the 
+	// tiles will be processed concurrently; since the tiles do not depend 
+	// on each other, the results are the same as for sequential processing:
+	private void forEachTile(
+		int iMin, int iMax, int jMin, int jMax, final TileComputation comp)
+	{
+		if (parallelism <= 1) {
+			for (int i0 = iMin; i0 < iMax; i0 += TILE_SIZE) {
+				for (int j0 = jMin; j0 < jMax; j0 += TILE_SIZE) {
+					comp.compute(
+						i0, Math.min(i0 + TILE_SIZE, iMax), 
+						j0, Math.min(j0 + TILE_SIZE, jMax));
+				}
 			}
+			return;
+		}
 
-			double[][] r = new double[grd2.numberOfRows()][grd2.numberOfColumns()];
-
-			// calculating correlation and setting value
-			for (int i = 0; i < r.length; i++) {
-				for (int j = 0; j < r[0].length; j++) {
-					r[i][j] = covariance[i][j] / (Math.sqrt(grdOneDeviation[i][j]) * Math.sqrt(grdTwoDeviation[i][j]));
-
-					if (r[i][j] > 1 || r[i][j] < -1) { // Check if the calculations are correct
-						//System.out.println(r[i][j]);
-						//throw new Error("Error in the calculations");
-						r[i][j]=Math.round(r[i][j]);
-					}
-
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			for (int i0 = iMin; i0 < iMax; i0 += TILE_SIZE) {
+				for (int j0 = jMin; j0 < jMax; j0 += TILE_SIZE) {
+					final int 
+						ti0 = i0, ti1 = Math.min(i0 + TILE_SIZE, iMax), 
+						tj0 = j0, tj1 = Math.min(j0 + TILE_SIZE, jMax);
+					tasks.add(pool.submit(new Runnable() {
+						public void run() {
+							comp.compute(ti0, ti1, tj0, tj1);
+						}
+					}));
 				}
 			}
+			for (ForkJoinTask<?> task : tasks)
+				task.join();
+		}
+		catch (RuntimeException e) {
+			// ForkJoinTask.join() re-throws the exceptions of the workers
+			if (e instanceof T3dException)
+				throw e;
+			if (e.getCause() instanceof T3dException)
+				throw (T3dException) e.getCause();
+			throw new T3dException(e.getMessage());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
 
-
-			// unset every not used field for better visualization
-			for (int i = 0; i < (grdCorr.numberOfRows()); i++) {
-				for (int j = 0; j < (grdCorr.numberOfColumns()); j++) {
-
-					((GmSimpleElevationGrid) grdCorr).unset(i, j);
-
+	// Computes the correlation coefficients for windows given by their 
+	// rows' half-widths (see RowSpanSums) for the result cells [i0, i1) x 
+	// [j0, j1) by visiting every window cell. Both buffers must have the 
+	// same dimensions:
+	private void windowCorrelation_Direct(
+		GridBuffer b1, GridBuffer b2, int[] halfWidths, 
+		int i0, int i1, int j0, int j1, double[] r)
+	{
+		int h = (halfWidths.length - 1) / 2, n = 0;
+		for (int w : halfWidths)
+			n += (w >= 0) ? 2 * w + 1 : 0;
+		double[] v1 = b1.getValues(), v2 = b2.getValues();
+
+		for (int i = i0; i < i1; i++) {
+			for (int j = j0; j < j1; j++) {
+				// checking if every field in the current window position is set, otherwise the correlation
+				// would be irregular
+				boolean complete = true;
+				for (int k = -h; k <= h && complete; k++) {
+					int w = halfWidths[k + h];
+					if (w >= 0) {
+						int t = b1.index(i + k, j - w);
+						complete = b1.isSpanSet(t, 2 * w + 1) && b2.isSpanSet(t, 2 * w + 1);
+					}
+				}
+				if (!complete)
+					continue;
+
+				// calculation means of the current window
+				double meanGridOne = 0, meanGridTwo = 0;
+				for (int k = -h; k <= h; k++) {
+					int w = halfWidths[k + h], t = b1.index(i + k, j);
+					for (int l = t - w; l <= t + w; l++) {
+						meanGridOne = meanGridOne + v1[l];
+						meanGridTwo = meanGridTwo + v2[l];
+					}
 				}
+				meanGridOne = meanGridOne / n;
+				meanGridTwo = meanGridTwo / n;
+
+				//calculating sums in each window
+				double sumX = 0, sumY = 0, sumXY = 0;
+				for (int k = -h; k <= h; k++) {
+					int w = halfWidths[k + h], t = b1.index(i + k, j);
+					for (int l = t - w; l <= t + w; l++) {
+						sumX = sumX + Math.pow(v1[l] - meanGridOne, 2);
+						sumY = sumY + Math.pow(v2[l] - meanGridTwo, 2);
+						sumXY = sumXY + (v1[l] - meanGridOne) * (v2[l] - meanGridTwo);
+					}
+				}
+				r[b1.index(i, j)] = correlation(sumX, sumY, sumXY);
 			}
+		}
+	}
 
+	// Computes the correlation coefficients for quadratic windows for the 
+	// result cells [i0, i1) x [j0, j1) by summed-area tables; windowSize 
+	// must be odd:
+	private void squareWindowCorrelation_SAT(
+		GridBuffer b1, GridBuffer b2, int windowSize, 
+		int i0, int i1, int j0, int j1, double[] r)
+	{
+		int h = (windowSize - 1) / 2;
+		// Tile region including the windows' overlap:
+		SummedAreaTables sat = new SummedAreaTables(
+			b1, b2, i0 - h, j0 - h, i1 - i0 + 2 * h, j1 - j0 + 2 * h);
+		double[] m = new double[3];
+		for (int i = i0; i < i1; i++) {
+			for (int j = j0; j < j1; j++) {
+				if (sat.windowMoments(i - h, j - h, i + h + 1, j + h + 1, m))
+					r[b1.index(i, j)] = correlation(m[0], m[1], m[2]);
+			}
+		}
+	}
 
-			// Input of correlations
-			for (int i = 0 + ((windowSize - 1) / 2); i < grdCorr.numberOfRows() - ((windowSize + 1) / 2); i++) {
-				for (int j = 0 + ((windowSize - 1) / 2); j < grdCorr.numberOfColumns() - ((windowSize + 1) / 2); j++) {
-					if (!new Double(r[i][j]).isNaN()) { // When Sum of X or Y is zero, the correlation is NaN
-						grdCorr.setValue(i, j, r[i][j]);
-
-
-					}
+	// Computes the correlation coefficients for windows given by their 
+	// rows' half-widths (see RowSpanSums) for the result cells [i0, i1) x 
+	// [j0, j1) from row-wise prefix sums:
+	private void spanWindowCorrelation(
+		GridBuffer b1, GridBuffer b2, int[] halfWidths, 
+		int i0, int i1, int j0, int j1, double[] r)
+	{
+		int h = (halfWidths.length - 1) / 2, hMax = 0; 
+		for (int w : halfWidths)
+			hMax = Math.max(hMax, w);
+		// Tile region including the windows' overlap:
+		RowSpanSums rss = new RowSpanSums(
+			b1, b2, i0 - h, j0 - hMax, i1 - i0 + 2 * h, j1 - j0 + 2 * hMax);
+		double[] m = new double[3];
+		for (int i = i0; i < i1; i++) {
+			for (int j = j0; j < j1; j++) {
+				if (rss.windowMoments(i, j, halfWidths, m))
+					r[b1.index(i, j)] = correlation(m[0], m[1], m[2]);
+			}
+		}
+	}
 
+	// Computes the correlation coefficients for all window sizes for the 
+	// result cells [i0, i1) x [j0, j1) from one set of summed-area tables 
+	// (square windows) or row-wise prefix sums (other windows). The tables 
+	// cover the tile and the overlap of the largest windows (hMax), clipped 
+	// to the grid:
+	private void multiScaleCorrelation(
+		GridBuffer b1, GridBuffer b2, boolean square, int[][] halfWidths, int hMax, 
+		int i0, int i1, int j0, int j1, double[][] r)
+	{
+		int nRows = b1.numberOfRows(), nCols = b1.numberOfColumns();
+		int 
+			r0 = Math.max(i0 - hMax, 0), r1 = Math.min(i1 + hMax, nRows), 
+			c0 = Math.max(j0 - hMax, 0), c1 = Math.min(j1 + hMax, nCols);
+		SummedAreaTables sat = null;
+		RowSpanSums rss = null;
+		if (square)
+			sat = new SummedAreaTables(b1, b2, r0, c0, r1 - r0, c1 - c0);
+		else
+			rss = new RowSpanSums(b1, b2, r0, c0, r1 - r0, c1 - c0);
+
+		double[] m = new double[3];
+		for (int s = 0; s < halfWidths.length; s++) {
+			if (halfWidths[s] == null)
+				continue;
+			int h = (halfWidths[s].length - 1) / 2;
+			// Result cells of this window size (cf. direct computation):
+			int 
+				iFrom = Math.max(i0, h), iTo = Math.min(i1, nRows - h - 1), 
+				jFrom = Math.max(j0, h), jTo = Math.min(j1, nCols - h - 1);
+			for (int i = iFrom; i < iTo; i++) {
+				for (int j = jFrom; j < jTo; j++) {
+					boolean complete = square ? 
+						sat.windowMoments(i - h, j - h, i + h + 1, j + h + 1, m) : 
+						rss.windowMoments(i, j, halfWidths[s], m);
+					if (complete)
+						r[s][b1.index(i, j)] = correlation(m[0], m[1], m[2]);
 				}
-
 			}
+		}
+	}
 
+	// Computes the correlation coefficient from the window's sums of squared 
+	// deviations and products of deviations; the result is NaN, if one of 
+	// the variances is 0:
+	private static double correlation(double sumX, double sumY, double sumXY)
+	{
+		double r = sumXY / (Math.sqrt(sumX) * Math.sqrt(sumY));
+		if (r > 1 || r < -1) // Check if the calculations are correct
+			r = Math.round(r);
+		return r;
+	}
 
+	private void checkPositive(short windowSize) throws T3dException
+	{
+		if (windowSize < 1)
+			throw new T3dException(
+				"Invalid computation window size " + windowSize + " (must be > 0)!");
+	}
 
-			//returning correlation grid
-			return grdCorr;
-
+	// Returns the rows' half-widths of the "Quadrat" window, or null, if the 
+	// direct computation does not give complete windows:
+	private int[] squareHalfWidths(int windowSize)
+	{
+		if (windowSize % 2 == 0)
+			return null;
+		int[] res = new int[windowSize];
+		Arrays.fill(res, (windowSize - 1) / 2);
+		return res;
+	}
 
-		} catch (T3dException e) {
-			e.printStackTrace();
-		}
+	// Returns the rows' half-widths of the "Kreis" window, which is a 
+	// diamond of (windowSize + 1) / 2 cells radius, or null, if the direct 
+	// computation does not give complete windows:
+	private int[] diamondHalfWidths(int windowSize)
+	{
+		if (windowSize % 2 == 0)
+			return null;
+		int h = (windowSize - 1) / 2;
+		int[] res = new int[windowSize];
+		for (int k = -h; k <= h; k++)
+			res[k + h] = h - Math.abs(k);
+		return res;
+	}
 
-        return null;
-    }
-    
 	private VgEquidistGrid setUpGeometry(VgEnvelope bbox, double cellSize) 
 	{
 		System.out.println(bbox);
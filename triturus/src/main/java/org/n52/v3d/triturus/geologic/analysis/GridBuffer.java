@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.analysis;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.gisimplm.GmSimpleElevationGrid;
+
+/**
+ * Grid values held in a flat row-major <tt>double</tt>-array together with 
+ * a bitmask telling which cells are set. Analysis kernels can access the 
+ * buffer's arrays directly (see {@link #getValues()}, {@link #index(int, 
+ * int)}), instead of calling the methods of {@link GmSimpleElevationGrid} 
+ * for each cell; moreover, the set state of whole row spans can be checked 
+ * at once (see {@link #isSpanSet(int, int)}).
+ */
+public class GridBuffer 
+{
+	private final int nRows, nCols;
+	private final double[] values;
+	private final long[] mask; // bit (k & 63) of mask[k >> 6]: cell k set
+
+	/**
+	 * Constructor. Initially, all cells are unset.
+	 * 
+	 * @param nRows Number of rows
+	 * @param nCols Number of columns
+	 */
+	public GridBuffer(int nRows, int nCols) 
+	{
+		if ((long) nRows * nCols > Integer.MAX_VALUE)
+			throw new T3dException("Grid too large (" + nRows + " x " + nCols + " cells).");
+		this.nRows = nRows;
+		this.nCols = nCols;
+		values = new double[nRows * nCols];
+		mask = new long[(nRows * nCols + 63) >> 6];
+	}
+
+	/**
+	 * Constructor. The values and set states of the given grid will be 
+	 * copied into the buffer.
+	 * 
+	 * @param grd Elevation grid
+	 */
+	public GridBuffer(GmSimpleElevationGrid grd) 
+	{
+		this(grd.numberOfRows(), grd.numberOfColumns());
+		for (int i = 0, k = 0; i < nRows; i++) {
+			for (int j = 0; j < nCols; j++, k++) {
+				if (grd.isSet(i, j)) {
+					values[k] = grd.getValue(i, j);
+					mask[k >> 6] |= 1L << k;
+				}
+			}
+		}
+	}
+
+	public int numberOfRows() {
+		return nRows;
+	}
+
+	public int numberOfColumns() {
+		return nCols;
+	}
+
+	/**
+	 * gets the array position of a grid cell.
+	 * 
+	 * @param row Row index
+	 * @param col Column index
+	 * @return Index into the array given by {@link #getValues()}
+	 */
+	public int index(int row, int col) {
+		return row * nCols + col;
+	}
+
+	/**
+	 * gives access to the buffer's values in row-major order. The values of 
+	 * cells that are not set are undefined.
+	 * 
+	 * @return Value array (no copy)
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	public double getValue(int row, int col) {
+		return values[row * nCols + col];
+	}
+
+	public boolean isSet(int row, int col) {
+		int k = row * nCols + col;
+		return (mask[k >> 6] & (1L << k)) != 0;
+	}
+
+	/**
+	 * checks if all cells of a row span are set. 
+	 * 
+	 * @param k Array position of the span's first cell (see 
+	 * {@link #index(int, int)})
+	 * @param n Number of cells
+	 * @return <i>true</i>, if all cells <i>k</i>, ..., <i>k</i> + <i>n</i> - 1 
+	 * are set
+	 */
+	public boolean isSpanSet(int k, int n) 
+	{
+		int end = k + n; // exclusive
+		while (k < end) {
+			int w = k >> 6, b = k & 63;
+			int m = Math.min(64 - b, end - k); // bits to check inside word w
+			long bits = (m == 64) ? -1L : ((1L << m) - 1) << b;
+			if ((mask[w] & bits) != bits)
+				return false;
+			k += m;
+		}
+		return true;
+	}
+
+	public void setValue(int row, int col, double value) {
+		int k = row * nCols + col;
+		values[k] = value;
+		mask[k >> 6] |= 1L << k;
+	}
+
+	public void unset(int row, int col) {
+		int k = row * nCols + col;
+		mask[k >> 6] &= ~(1L << k);
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.analysis;
+
+/**
+ * Row-wise prefix sums of two elevation grids <i>x</i> and <i>y</i> for a 
+ * rectangular grid region. For each row of the region, the sums of <i>x</i>, 
+ * <i>y</i>, <i>x</i>&sup2;, <i>y</i>&sup2; and <i>xy</i> as well as the 
+ * number of cells where both grids are set are accumulated from the 
+ * region's left border. Thus, the sum over a contiguous row span can be 
+ * taken from two table entries, and the moments of a window that is given 
+ * by one span per row (e.g. a circle or a diamond) can be determined in 
+ * time proportional to the window's height instead of its area (see 
+ * {@link #windowMoments(int, int, int[], double[])}).
+ * <br>
+ * See {@link WindowSums} concerning cancellation errors.
+ */
+class RowSpanSums extends WindowSums
+{
+	/**
+	 * Constructor. The given region must be located inside both grids.
+	 * 
+	 * @param b1 First grid (<i>x</i>)
+	 * @param b2 Second grid (<i>y</i>)
+	 * @param row0 Region's first row
+	 * @param col0 Region's first column
+	 * @param nRows Number of rows
+	 * @param nCols Number of columns
+	 */
+	RowSpanSums(
+		GridBuffer b1, GridBuffer b2, 
+		int row0, int col0, int nRows, int nCols)
+	{
+		super(b1, b2, row0, col0, nCols, nRows * (nCols + 1));
+		double[] x = new double[nRows * nCols], y = new double[nRows * nCols];
+		boolean[] set = new boolean[nRows * nCols];
+		this.readCentered(nRows, x, y, set);
+
+		// Set up the tables (column 0 of each row holds zeros):
+		for (int r = 0, k = 0; r < nRows; r++) {
+			for (int c = 0; c < nCols; c++, k++) {
+				int t = r * nCols1 + c + 1, u = t - 1;
+				if (set[k]) {
+					double dx = x[k], dy = y[k];
+					sx[t] = sx[u] + dx;
+					sy[t] = sy[u] + dy;
+					sxx[t] = sxx[u] + dx * dx;
+					syy[t] = syy[u] + dy * dy;
+					sxy[t] = sxy[u] + dx * dy;
+					cnt[t] = cnt[u] + 1;
+				} else {
+					sx[t] = sx[u];
+					sy[t] = sy[u];
+					sxx[t] = sxx[u];
+					syy[t] = syy[u];
+					sxy[t] = sxy[u];
+					cnt[t] = cnt[u];
+				}
+			}
+		}
+	}
+
+	/**
+	 * computes the central moments of a window that is symmetric with 
+	 * respect to its center cell, i.e. the sums of the squared deviations 
+	 * from the window means and the sum of the products of the deviations. 
+	 * The window is given by the half-widths of its rows: The row with 
+	 * offset <i>k</i> = -<i>h</i>, ..., <i>h</i> relative to the center row 
+	 * covers the columns <i>col</i> - <i>w</i> ... <i>col</i> + <i>w</i>, 
+	 * where <i>w</i> = <tt>halfWidths[<i>k</i> + <i>h</i>]</tt> and 
+	 * <i>h</i> = (<tt>halfWidths.length</tt> - 1) / 2. Rows having a 
+	 * negative half-width are empty. The window must be located inside the 
+	 * region. 
+	 * 
+	 * @param row Center cell's row (grid row index)
+	 * @param col Center cell's column (grid column index)
+	 * @param halfWidths Half-widths of the window's rows (odd number of rows)
+	 * @param res Array receiving the sums of squared deviations of <i>x</i> 
+	 * and <i>y</i> and the sum of products of deviations (in this order)
+	 * @return <i>false</i>, if the window contains cells that are not set 
+	 * in both grids; then, <tt>res</tt> remains unchanged
+	 */
+	boolean windowMoments(int row, int col, int[] halfWidths, double[] res)
+	{
+		int h = (halfWidths.length - 1) / 2;
+		int base = (row - h - row0) * nCols1 + col - col0;
+
+		// Check the row spans first, since incomplete windows are frequent 
+		// near the surfaces' borders:
+		int n = 0;
+		for (int k = 0, t = base; k < halfWidths.length; k++, t += nCols1) {
+			int w = halfWidths[k];
+			if (w < 0)
+				continue;
+			if (cnt[t + w + 1] - cnt[t - w] < 2 * w + 1)
+				return false;
+			n += 2 * w + 1;
+		}
+		if (n == 0)
+			return false;
+
+		double wx = 0., wy = 0., wxx = 0., wyy = 0., wxy = 0., magX = 0., magY = 0.;
+		for (int k = 0, t = base; k < halfWidths.length; k++, t += nCols1) {
+			int w = halfWidths[k];
+			if (w < 0)
+				continue;
+			int a = t - w, b = t + w + 1;
+			wx += sx[b] - sx[a];
+			wy += sy[b] - sy[a];
+			wxx += sxx[b] - sxx[a];
+			wyy += syy[b] - syy[a];
+			wxy += sxy[b] - sxy[a];
+			magX += sxx[b] + sxx[a];
+			magY += syy[b] + syy[a];
+		}
+		double 
+			vx = wxx - wx * wx / n,
+			vy = wyy - wy * wy / n,
+			cxy = wxy - wx * wy / n;
+		if (illConditioned(vx, magX, vy, magY)) {
+			this.directMoments(
+				row - h, row + h + 1, 0, 0, col, halfWidths, res);
+			return true;
+		}
+		res[0] = vx;
+		res[1] = vy;
+		res[2] = cxy;
+		return true;
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.analysis;
+
+/**
+ * Summed-area tables of two elevation grids <i>x</i> and <i>y</i> for a 
+ * rectangular grid region. For each cell (<i>r</i>, <i>c</i>) of the region, 
+ * the tables hold the sums of <i>x</i>, <i>y</i>, <i>x</i>&sup2;, 
+ * <i>y</i>&sup2; and <i>xy</i> as well as the number of cells where both 
+ * grids are set, each taken over the rectangle spanned by the region's 
+ * upper left cell and (<i>r</i>, <i>c</i>). Thus, the moments of any 
+ * rectangular window inside the region can be determined in constant time, 
+ * independent of the window size (see {@link #windowMoments(int, int, int, 
+ * int, double[])}).
+ * <br>
+ * The tables should be set up for moderately sized regions (tiles) only; 
+ * see {@link WindowSums} concerning cancellation errors.
+ */
+class SummedAreaTables extends WindowSums
+{
+	/**
+	 * Constructor. The given region must be located inside both grids.
+	 * 
+	 * @param b1 First grid (<i>x</i>)
+	 * @param b2 Second grid (<i>y</i>)
+	 * @param row0 Region's first row
+	 * @param col0 Region's first column
+	 * @param nRows Number of rows
+	 * @param nCols Number of columns
+	 */
+	SummedAreaTables(
+		GridBuffer b1, GridBuffer b2, 
+		int row0, int col0, int nRows, int nCols)
+	{
+		super(b1, b2, row0, col0, nCols, (nRows + 1) * (nCols + 1));
+		double[] x = new double[nRows * nCols], y = new double[nRows * nCols];
+		boolean[] set = new boolean[nRows * nCols];
+		this.readCentered(nRows, x, y, set);
+
+		// Set up the tables (row 0 and column 0 hold zeros):
+		for (int r = 0, k = 0; r < nRows; r++) {
+			double rx = 0., ry = 0., rxx = 0., ryy = 0., rxy = 0.; // row sums
+			int rc = 0;
+			for (int c = 0; c < nCols; c++, k++) {
+				if (set[k]) {
+					double dx = x[k], dy = y[k];
+					rx += dx;
+					ry += dy;
+					rxx += dx * dx;
+					ryy += dy * dy;
+					rxy += dx * dy;
+					rc++;
+				}
+				int t = (r + 1) * nCols1 + c + 1, u = t - nCols1;
+				sx[t] = sx[u] + rx;
+				sy[t] = sy[u] + ry;
+				sxx[t] = sxx[u] + rxx;
+				syy[t] = syy[u] + ryy;
+				sxy[t] = sxy[u] + rxy;
+				cnt[t] = cnt[u] + rc;
+			}
+		}
+	}
+
+	/**
+	 * computes the central moments of a rectangular window, i.e. the sums 
+	 * of the squared deviations from the window means and the sum of the 
+	 * products of the deviations. The window must be located inside the 
+	 * region. 
+	 * 
+	 * @param r0 Window's first row (grid row index)
+	 * @param c0 Window's first column (grid column index)
+	 * @param r1 Window's last row + 1
+	 * @param c1 Window's last column + 1
+	 * @param res Array receiving the sums of squared deviations of <i>x</i> 
+	 * and <i>y</i> and the sum of products of deviations (in this order)
+	 * @return <i>false</i>, if the window contains cells that are not set 
+	 * in both grids; then, <tt>res</tt> remains unchanged
+	 */
+	boolean windowMoments(int r0, int c0, int r1, int c1, double[] res)
+	{
+		int 
+			a = (r0 - row0) * nCols1 + c0 - col0, 
+			b = (r0 - row0) * nCols1 + c1 - col0,
+			c = (r1 - row0) * nCols1 + c0 - col0, 
+			d = (r1 - row0) * nCols1 + c1 - col0;
+		int n = cnt[d] - cnt[b] - cnt[c] + cnt[a];
+		if (n < (r1 - r0) * (c1 - c0))
+			return false;
+
+		double 
+			wx = sx[d] - sx[b] - sx[c] + sx[a],
+			wy = sy[d] - sy[b] - sy[c] + sy[a];
+		double 
+			vx = sxx[d] - sxx[b] - sxx[c] + sxx[a] - wx * wx / n,
+			vy = syy[d] - syy[b] - syy[c] + syy[a] - wy * wy / n,
+			cxy = sxy[d] - sxy[b] - sxy[c] + sxy[a] - wx * wy / n;
+		if (illConditioned(
+			vx, sxx[d] + sxx[b] + sxx[c] + sxx[a], vy, syy[d] + syy[b] + syy[c] + syy[a])) 
+		{
+			this.directMoments(r0, r1, c0, c1, 0, null, res);
+			return true;
+		}
+		res[0] = vx;
+		res[1] = vy;
+		res[2] = cxy;
+		return true;
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.analysis;
+
+/**
+ * Common base of the prefix sum tables of two elevation grids <i>x</i> and 
+ * <i>y</i> for a rectangular grid region (see {@link SummedAreaTables}, 
+ * {@link RowSpanSums}). The tables hold sums of <i>x</i>, <i>y</i>, 
+ * <i>x</i>&sup2;, <i>y</i>&sup2; and <i>xy</i> as well as the numbers of 
+ * cells where both grids are set. To reduce cancellation errors, the values 
+ * are centered by the mean values of the region before they are 
+ * accumulated.
+ * <br>
+ * Nevertheless, the variance of a window is the difference of table entries 
+ * that may be much larger than the variance itself, e.g. for constant 
+ * windows or for windows with small variance next to areas with large 
+ * variance. Such windows are recognized by comparing the variance to the 
+ * magnitude of the table entries it has been taken from; their moments 
+ * will be computed directly from the grids in the same way as done by 
+ * {@link FltTINCorrelation}'s direct computation. Thus, constant windows 
+ * give a variance of exactly 0, and the results do not depend on the 
+ * region the tables have been set up for up to rounding errors.
+ */
+abstract class WindowSums 
+{
+	// Windows having a variance below this fraction of the magnitude of the 
+	// table entries used will be computed directly:
+	static final double TOLERANCE = 1e-8;
+
+	private final GridBuffer b1, b2;
+	protected final int row0, col0, nCols1; // nCols1: table row length
+	protected final double[] sx, sy, sxx, syy, sxy;
+	protected final int[] cnt;
+
+	/**
+	 * Constructor. The given region must be located inside both grids.
+	 * 
+	 * @param b1 First grid (<i>x</i>)
+	 * @param b2 Second grid (<i>y</i>)
+	 * @param row0 Region's first row
+	 * @param col0 Region's first column
+	 * @param nCols Region's number of columns
+	 * @param tableSize Number of table entries
+	 */
+	protected WindowSums(
+		GridBuffer b1, GridBuffer b2, int row0, int col0, int nCols, int tableSize)
+	{
+		this.b1 = b1;
+		this.b2 = b2;
+		this.row0 = row0;
+		this.col0 = col0;
+		nCols1 = nCols + 1;
+		sx = new double[tableSize];
+		sy = new double[tableSize];
+		sxx = new double[tableSize];
+		syy = new double[tableSize];
+		sxy = new double[tableSize];
+		cnt = new int[tableSize];
+	}
+
+	/**
+	 * reads the region's values, centered by the mean values of the cells 
+	 * that are set in both grids.
+	 * 
+	 * @param nRows Region's number of rows
+	 * @param x Array receiving the centered values of the first grid (row-major order)
+	 * @param y Array receiving the centered values of the second grid
+	 * @param set Array receiving the information which cells are set in both grids
+	 */
+	protected void readCentered(int nRows, double[] x, double[] y, boolean[] set)
+	{
+		int nCols = nCols1 - 1;
+		double[] v1 = b1.getValues(), v2 = b2.getValues();
+		double refX = 0., refY = 0.;
+		int n = 0;
+		for (int r = 0, k = 0; r < nRows; r++) {
+			for (int c = 0; c < nCols; c++, k++) {
+				if (b1.isSet(row0 + r, col0 + c) && b2.isSet(row0 + r, col0 + c)) {
+					x[k] = v1[b1.index(row0 + r, col0 + c)];
+					y[k] = v2[b2.index(row0 + r, col0 + c)];
+					set[k] = true;
+					refX += x[k];
+					refY += y[k];
+					n++;
+				}
+			}
+		}
+		if (n == 0)
+			return;
+		refX /= n;
+		refY /= n;
+		for (int k = 0; k < x.length; k++) {
+			if (set[k]) {
+				x[k] -= refX;
+				y[k] -= refY;
+			}
+		}
+	}
+
+	/**
+	 * checks if the window moments taken from the tables are affected by 
+	 * cancellation errors.
+	 * 
+	 * @param vx Sum of squared deviations of <i>x</i>
+	 * @param magX Sum of the magnitudes of the table entries <i>vx</i> has been taken from
+	 * @param vy Sum of squared deviations of <i>y</i>
+	 * @param magY Sum of the magnitudes of the table entries <i>vy</i> has been taken from
+	 * @return <i>true</i>, if the moments have to be computed directly
+	 */
+	protected static boolean illConditioned(double vx, double magX, double vy, double magY) {
+		return vx <= TOLERANCE * magX || vy <= TOLERANCE * magY;
+	}
+
+	/**
+	 * computes the central moments of a window directly from the grids. The 
+	 * window consists of the rows <i>r0</i>, ..., <i>r1</i> - 1, each 
+	 * covering the columns <i>c0</i>, ..., <i>c1</i> - 1 (<tt>halfWidths</tt> 
+	 * = <i>null</i>) or the columns <i>col</i> - <i>w</i>, ..., <i>col</i> + 
+	 * <i>w</i>, where <i>w</i> is the row's half-width (see 
+	 * {@link RowSpanSums#windowMoments(int, int, int[], double[])}). The 
+	 * window has to be complete.
+	 * 
+	 * @param res Array receiving the sums of squared deviations of <i>x</i> 
+	 * and <i>y</i> and the sum of products of deviations (in this order)
+	 */
+	protected void directMoments(
+		int r0, int r1, int c0, int c1, int col, int[] halfWidths, double[] res)
+	{
+		double[] v1 = b1.getValues(), v2 = b2.getValues();
+		int n = 0;
+		double meanX = 0., meanY = 0.;
+		for (int r = r0; r < r1; r++) {
+			int a = c0, b = c1;
+			if (halfWidths != null) {
+				int w = halfWidths[r - r0];
+				a = col - w;
+				b = col + w + 1;
+			}
+			for (int l = b1.index(r, a), end = b1.index(r, b); l < end; l++) {
+				meanX = meanX + v1[l];
+				meanY = meanY + v2[l];
+				n++;
+			}
+		}
+		meanX = meanX / n;
+		meanY = meanY / n;
+
+		double sumX = 0, sumY = 0, sumXY = 0;
+		for (int r = r0; r < r1; r++) {
+			int a = c0, b = c1;
+			if (halfWidths != null) {
+				int w = halfWidths[r - r0];
+				a = col - w;
+				b = col + w + 1;
+			}
+			for (int l = b1.index(r, a), end = b1.index(r, b); l < end; l++) {
+				sumX = sumX + Math.pow(v1[l] - meanX, 2);
+				sumY = sumY + Math.pow(v2[l] - meanY, 2);
+				sumXY = sumXY + (v1[l] - meanX) * (v2[l] - meanY);
+			}
+		}
+		res[0] = sumX;
+		res[1] = sumY;
+		res[2] = sumXY;
+	}
+}
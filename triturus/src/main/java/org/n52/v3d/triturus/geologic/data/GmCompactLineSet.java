@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt, 52 North Initiative for Geospatial Open Source 
+ * Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, Germany, 
+ * info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.data;
+
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Memory-saving set of polylines, e.g. to hold the fault sticks given by a 
+ * GOCAD PLine object. The line segments are given by pairs of vertex 
+ * indices held in a single <tt>int[]</tt> array. The segments can be 
+ * grouped into parts (e.g. the <tt>ILINE</tt> components of a PLine object), 
+ * each of them consisting of consecutive segments.
+ */
+public class GmCompactLineSet extends GmCompactPointSet
+{
+	private int[] segments = new int[2 * 1024];
+	private int nSegments = 0;
+	private int[] partStarts = new int[16]; // first segment of each part
+	private int nParts = 0;
+
+	/**
+	 * Constructor. Constructs an empty line set.
+	 */
+	public GmCompactLineSet() {
+		super();
+	}
+
+	/**
+	 * starts a new part. Subsequently added segments will belong to this part.
+	 */
+	public void beginPart() 
+	{
+		if (nParts >= partStarts.length)
+			partStarts = Arrays.copyOf(partStarts, grow(partStarts.length, nParts + 1));
+		partStarts[nParts++] = nSegments;
+	}
+
+	/**
+	 * appends a line segment. If no part has been started yet, a new part 
+	 * will be started.
+	 * 
+	 * @param i1 Index of the segment's first vertex
+	 * @param i2 Index of the segment's second vertex
+	 * @return Index of the added segment
+	 */
+	public int addSegment(int i1, int i2) 
+	{
+		if (nParts == 0)
+			this.beginPart();
+		if (2 * nSegments + 2 > segments.length)
+			segments = Arrays.copyOf(segments, grow(segments.length, 2 * nSegments + 2));
+		segments[2 * nSegments] = i1;
+		segments[2 * nSegments + 1] = i2;
+		return nSegments++;
+	}
+
+	public int numberOfSegments() {
+		return nSegments;
+	}
+
+	/**
+	 * gets the index of the k-th vertex of the i-th segment.
+	 * 
+	 * @param i Segment index (0 &lt;= i &lt; number of segments)
+	 * @param k Vertex number (0 or 1)
+	 * @return Vertex index
+	 */
+	public int getSegmentVertexIndex(int i, int k) 
+	{
+		if (i < 0 || i >= nSegments)
+			throw new T3dException("Segment index out of bounds: " + i);
+		return segments[2 * i + k];
+	}
+
+	public int numberOfParts() {
+		return nParts;
+	}
+
+	/**
+	 * gets the index of a part's first segment.
+	 * 
+	 * @param p Part index (0 &lt;= p &lt; number of parts)
+	 * @return Segment index
+	 */
+	public int getPartStart(int p) {
+		return partStarts[p];
+	}
+
+	/**
+	 * gets the index following a part's last segment.
+	 * 
+	 * @param p Part index (0 &lt;= p &lt; number of parts)
+	 * @return Segment index
+	 */
+	public int getPartEnd(int p) {
+		return (p + 1 < nParts) ? partStarts[p + 1] : nSegments;
+	}
+
+	/**
+	 * checks if all segment vertex indices refer to existing vertices.
+	 * 
+	 * @throws T3dException if an invalid index has been found
+	 */
+	public void checkIndices() throws T3dException
+	{
+		for (int k = 0; k < 2 * nSegments; k++) {
+			if (segments[k] < 0 || segments[k] >= this.numberOfPoints())
+				throw new T3dException(
+					"Invalid vertex index " + segments[k] + " in segment #" + (k / 2) + ".");
+		}
+	}
+
+	@Override
+	public void trimToSize() {
+		super.trimToSize();
+		if (segments.length > 2 * nSegments)
+			segments = Arrays.copyOf(segments, 2 * nSegments);
+		if (partStarts.length > nParts)
+			partStarts = Arrays.copyOf(partStarts, nParts);
+	}
+
+	public String toString() {
+		return "[" + this.numberOfPoints() + " vertices, " + nSegments + " segments, " 
+			+ nParts + " parts]";
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt, 52 North Initiative for Geospatial Open Source 
+ * Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, Germany, 
+ * info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.data;
+
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.gisimplm.GmEnvelope;
+import org.n52.v3d.triturus.gisimplm.GmPoint;
+import org.n52.v3d.triturus.vgis.VgPoint;
+
+/**
+ * Memory-saving point set, e.g. to hold the well points given by a GOCAD 
+ * VSet object. As for {@link GmCompactTINGeometry}, the vertex coordinates 
+ * are held in a single <tt>double[]</tt> array, and optional vertex 
+ * properties are held in a single <tt>double[]</tt> column for each 
+ * property.
+ */
+public class GmCompactPointSet
+{
+	private double[] xyz;
+	private int nPoints = 0;
+	private String[] propNames = new String[0];
+	private double[][] props = new double[0][]; // one column per property
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param pointCapacity Expected number of vertices
+	 */
+	public GmCompactPointSet(int pointCapacity) {
+		xyz = new double[3 * Math.max(pointCapacity, 1)];
+	}
+
+	/**
+	 * Constructor. Constructs an empty point set.
+	 */
+	public GmCompactPointSet() {
+		this(1024);
+	}
+
+	/**
+	 * appends a vertex.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param z z-coordinate
+	 * @return Index of the added vertex
+	 */
+	public int addPoint(double x, double y, double z) 
+	{
+		if (3 * nPoints + 3 > xyz.length)
+			xyz = Arrays.copyOf(xyz, grow(xyz.length, 3 * nPoints + 3));
+		int k = 3 * nPoints;
+		xyz[k] = x;
+		xyz[k + 1] = y;
+		xyz[k + 2] = z;
+		for (int j = 0; j < props.length; j++) {
+			if (nPoints >= props[j].length)
+				props[j] = Arrays.copyOf(props[j], 
+					Math.max(xyz.length / 3, grow(props[j].length, nPoints + 1)));
+			props[j][nPoints] = Double.NaN;
+		}
+		return nPoints++;
+	}
+
+	/**
+	 * appends a vertex with property values.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param z z-coordinate
+	 * @param values Property values in the order given by 
+	 * {@link #setPropertyNames(String[])}; missing values will be set to 
+	 * <tt>NaN</tt>, surplus values will be ignored
+	 * @return Index of the added vertex
+	 */
+	public int addPoint(double x, double y, double z, double[] values) 
+	{
+		int i = this.addPoint(x, y, z);
+		int n = Math.min(values.length, props.length);
+		for (int j = 0; j < n; j++)
+			props[j][i] = values[j];
+		return i;
+	}
+
+	/**
+	 * defines the vertex properties. For the vertices that have been added 
+	 * already, the property values will be set to <tt>NaN</tt>.
+	 * 
+	 * @param names Property names
+	 */
+	public void setPropertyNames(String[] names) 
+	{
+		propNames = names.clone();
+		props = new double[names.length][];
+		for (int j = 0; j < names.length; j++) {
+			props[j] = new double[Math.max(xyz.length / 3, 1)];
+			Arrays.fill(props[j], 0, nPoints, Double.NaN);
+		}
+	}
+
+	public int numberOfPoints() {
+		return nPoints;
+	}
+
+	public double getX(int i) { 
+		this.checkPointIndex(i);
+		return xyz[3 * i]; 
+	}
+
+	public double getY(int i) { 
+		this.checkPointIndex(i);
+		return xyz[3 * i + 1]; 
+	}
+
+	public double getZ(int i) { 
+		this.checkPointIndex(i);
+		return xyz[3 * i + 2]; 
+	}
+
+	/**
+	 * gets a vertex. Note that the point object will be created on the fly.
+	 * 
+	 * @param i Vertex index (0 &lt;= i &lt; number of points)
+	 * @return Point
+	 */
+	public VgPoint getPoint(int i) {
+		this.checkPointIndex(i);
+		return new GmPoint(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+	}
+
+	public int numberOfProperties() {
+		return props.length;
+	}
+
+	public String getPropertyName(int j) {
+		return propNames[j];
+	}
+
+	/**
+	 * gets the array holding the values of a vertex property. Note that the 
+	 * internal array will be returned, not a copy; only the first 
+	 * {@link #numberOfPoints()} elements are valid.
+	 * 
+	 * @param j Property index (0 &lt;= j &lt; number of properties)
+	 * @return Property column
+	 */
+	public double[] getPropertyColumn(int j) {
+		return props[j];
+	}
+
+	public double getPropertyValue(int j, int i) {
+		this.checkPointIndex(i);
+		return props[j][i];
+	}
+
+	/**
+	 * releases unused array capacities.
+	 */
+	public void trimToSize() {
+		if (xyz.length > 3 * nPoints)
+			xyz = Arrays.copyOf(xyz, 3 * nPoints);
+		for (int j = 0; j < props.length; j++) {
+			if (props[j].length > nPoints)
+				props[j] = Arrays.copyOf(props[j], nPoints);
+		}
+	}
+
+	/**
+	 * gets the point set's bounding-box.
+	 * 
+	 * @return Envelope, or <i>null</i> for empty point sets
+	 */
+	public GmEnvelope envelope() 
+	{
+		if (nPoints <= 0)
+			return null;
+		double 
+			xMin = xyz[0], xMax = xyz[0], 
+			yMin = xyz[1], yMax = xyz[1], 
+			zMin = xyz[2], zMax = xyz[2];
+		for (int k = 3; k < 3 * nPoints; k += 3) {
+			if (xyz[k] < xMin) xMin = xyz[k]; 
+			if (xyz[k] > xMax) xMax = xyz[k];
+			if (xyz[k + 1] < yMin) yMin = xyz[k + 1]; 
+			if (xyz[k + 1] > yMax) yMax = xyz[k + 1];
+			if (xyz[k + 2] < zMin) zMin = xyz[k + 2]; 
+			if (xyz[k + 2] > zMax) zMax = xyz[k + 2];
+		}
+		return new GmEnvelope(xMin, xMax, yMin, yMax, zMin, zMax);
+	}
+
+	public String toString() {
+		return "[" + nPoints + " vertices]";
+	}
+
+	// Protected helpers:
+
+	protected void checkPointIndex(int i) throws T3dException {
+		if (i < 0 || i >= nPoints)
+			throw new T3dException("Vertex index out of bounds: " + i);
+	}
+
+	protected static int grow(int oldLength, int minLength) {
+		int len = oldLength + (oldLength >> 1); // factor 1.5
+		if (len < minLength) len = minLength;
+		if (len < 0) len = Integer.MAX_VALUE - 8; // overflow
+		return len;
+	}
+}
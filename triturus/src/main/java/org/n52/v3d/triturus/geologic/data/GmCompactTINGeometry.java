@@ -0,0 +1,658 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt, 52 North Initiative for Geospatial Open Source 
+ * Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, Germany, 
+ * info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.data;
+
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.gisimplm.GmEnvelope;
+import org.n52.v3d.triturus.gisimplm.GmPoint;
+import org.n52.v3d.triturus.gisimplm.GmSimpleTINGeometry;
+import org.n52.v3d.triturus.gisimplm.GmTriangle;
+import org.n52.v3d.triturus.vgis.VgEnvelope;
+import org.n52.v3d.triturus.vgis.VgGeomObject;
+import org.n52.v3d.triturus.vgis.VgPoint;
+import org.n52.v3d.triturus.vgis.VgTriangle;
+
+/**
+ * Memory-saving TIN geometry. The vertex coordinates are held in a single 
+ * <tt>double[]</tt> array (<i>x</i>, <i>y</i>, <i>z</i> for each vertex) and 
+ * the triangles' vertex indices are held in a single <tt>int[]</tt> array 
+ * (three indices for each triangle), i.e. no point or index objects are 
+ * kept on the heap. Vertices and triangles can be appended one by one (see 
+ * {@link #addPoint(double, double, double)} and 
+ * {@link #addTriangle(int, int, int)}); the arrays will grow as needed.
+ * <br>
+ * Since this class is derived from {@link GmSimpleTINGeometry}, instances 
+ * can be used as {@link org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature} 
+ * geometries and processed by any code based on the 
+ * {@link org.n52.v3d.triturus.vgis.VgIndexedTIN} interface. Note that the
+ * point and triangle objects returned by {@link #getPoint(int)} and 
+ * {@link #getTriangle(int)} are created on the fly.
+ * <br>
+ * Optionally, vertex properties (e.g. porosity or temperature values) can 
+ * be attached to the TIN. The values are held in a single <tt>double[]</tt> 
+ * column for each property (see {@link #setPropertyNames(String[])} and 
+ * {@link #addPoint(double, double, double, double[])}).
+ * <br>
+ * The triangles can be divided into patches (e.g. GOCAD <tt>TFACE</tt> 
+ * sections), each covering a contiguous range of triangle indices (see 
+ * {@link #beginPatch()}), i.e. per-patch processing does not require 
+ * splitting the TIN. Border topology (GOCAD <tt>BSTONE</tt> and 
+ * <tt>BORDER</tt> elements) can be attached as vertex index arrays, too 
+ * (see {@link #addBstone(int)} and {@link #addBorder(int, int)}).
+ */
+public class GmCompactTINGeometry extends GmSimpleTINGeometry
+{
+	private double[] xyz;
+	private int[] indices;
+	private int nPoints = 0, nTriangles = 0;
+	private GmEnvelope env = null; // lazily computed bounding-box
+	private String[] propNames = new String[0];
+	private double[][] props = new double[0][]; // one column per property
+	private int[] patchStarts = new int[] {0}; // first triangle of each patch
+	private int nPatches = 1;
+	private int[] bstones = new int[0]; // vertex indices
+	private int[] borders = new int[0]; // two vertex indices for each border
+	private int nBstones = 0, nBorders = 0;
+
+	/**
+	 * Constructor. The given numbers of vertices and triangles are used as 
+	 * initial capacities; the TIN itself will be empty.
+	 * 
+	 * @param pointCapacity Expected number of vertices
+	 * @param triangleCapacity Expected number of triangles
+	 */
+	public GmCompactTINGeometry(int pointCapacity, int triangleCapacity) {
+		super(0, 0);
+		xyz = new double[3 * Math.max(pointCapacity, 1)];
+		indices = new int[3 * Math.max(triangleCapacity, 1)];
+	}
+
+	/**
+	 * Constructor. Constructs an empty TIN.
+	 */
+	public GmCompactTINGeometry() {
+		this(1024, 2048);
+	}
+
+	/**
+	 * Constructor. The given arrays will be used as vertex and index storage 
+	 * directly, i.e. they will not be copied. 
+	 * 
+	 * @param xyz Vertex coordinates (<i>x</i>, <i>y</i>, <i>z</i> for each 
+	 * vertex)
+	 * @param indices Vertex indices (three for each triangle)
+	 * @throws T3dException if an array length is not a multiple of 3
+	 */
+	public GmCompactTINGeometry(double[] xyz, int[] indices) throws T3dException
+	{
+		super(0, 0);
+		if (xyz.length % 3 != 0 || indices.length % 3 != 0)
+			throw new T3dException("Array lengths must be multiples of 3.");
+		this.xyz = xyz;
+		this.indices = indices;
+		nPoints = xyz.length / 3;
+		nTriangles = indices.length / 3;
+	}
+
+	/**
+	 * appends a vertex to the TIN.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param z z-coordinate
+	 * @return Index of the added vertex
+	 */
+	public int addPoint(double x, double y, double z) 
+	{
+		if (3 * nPoints + 3 > xyz.length)
+			xyz = Arrays.copyOf(xyz, grow(xyz.length, 3 * nPoints + 3));
+		int k = 3 * nPoints;
+		xyz[k] = x;
+		xyz[k + 1] = y;
+		xyz[k + 2] = z;
+		env = null;
+		for (int j = 0; j < props.length; j++) {
+			if (nPoints >= props[j].length)
+				props[j] = this.growColumn(props[j], nPoints + 1);
+			props[j][nPoints] = Double.NaN;
+		}
+		return nPoints++;
+	}
+
+	/**
+	 * appends a vertex with property values to the TIN.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param z z-coordinate
+	 * @param values Property values in the order given by 
+	 * {@link #setPropertyNames(String[])}; missing values will be set to 
+	 * <tt>NaN</tt>, surplus values will be ignored
+	 * @return Index of the added vertex
+	 */
+	public int addPoint(double x, double y, double z, double[] values) 
+	{
+		int i = this.addPoint(x, y, z);
+		int n = Math.min(values.length, props.length);
+		for (int j = 0; j < n; j++)
+			props[j][i] = values[j];
+		return i;
+	}
+
+	/**
+	 * defines the vertex properties. For the vertices that have been added 
+	 * already, the property values will be set to <tt>NaN</tt>. Property 
+	 * columns that have been defined before will be discarded.
+	 * 
+	 * @param names Property names
+	 */
+	public void setPropertyNames(String[] names) 
+	{
+		propNames = names.clone();
+		props = new double[names.length][];
+		for (int j = 0; j < names.length; j++) {
+			props[j] = new double[Math.max(xyz.length / 3, 1)];
+			Arrays.fill(props[j], 0, nPoints, Double.NaN);
+		}
+	}
+
+	/**
+	 * attaches a vertex property column. The given array will be used 
+	 * directly, i.e. it will not be copied.
+	 * 
+	 * @param name Property name
+	 * @param values Property values (at least one value for each vertex)
+	 * @throws T3dException if the column is too short
+	 */
+	public void addPropertyColumn(String name, double[] values) throws T3dException
+	{
+		if (values.length < nPoints)
+			throw new T3dException("Property column \"" + name + "\" is too short.");
+		propNames = Arrays.copyOf(propNames, propNames.length + 1);
+		propNames[propNames.length - 1] = name;
+		props = Arrays.copyOf(props, props.length + 1);
+		props[props.length - 1] = values;
+	}
+
+	public int numberOfProperties() {
+		return props.length;
+	}
+
+	public String getPropertyName(int j) {
+		return propNames[j];
+	}
+
+	/**
+	 * gets the array holding the values of a vertex property. Note that the 
+	 * internal array will be returned, not a copy; only the first 
+	 * {@link #numberOfPoints()} elements are valid.
+	 * 
+	 * @param j Property index (0 &lt;= j &lt; number of properties)
+	 * @return Property column
+	 */
+	public double[] getPropertyColumn(int j) {
+		return props[j];
+	}
+
+	/**
+	 * gets a vertex property value.
+	 * 
+	 * @param j Property index (0 &lt;= j &lt; number of properties)
+	 * @param i Vertex index (0 &lt;= i &lt; number of points)
+	 * @return Property value, <tt>NaN</tt> if no value is given
+	 */
+	public double getPropertyValue(int j, int i) {
+		this.checkPointIndex(i);
+		return props[j][i];
+	}
+
+	/**
+	 * appends a triangle to the TIN. Note that the vertex indices will not 
+	 * be checked before {@link #checkIndices()} is called.
+	 * 
+	 * @param i1 Index of the first vertex (0 &lt;= i1 &lt; number of points)
+	 * @param i2 Index of the second vertex
+	 * @param i3 Index of the third vertex
+	 * @return Index of the added triangle
+	 */
+	public int addTriangle(int i1, int i2, int i3) 
+	{
+		if (3 * nTriangles + 3 > indices.length)
+			indices = Arrays.copyOf(indices, grow(indices.length, 3 * nTriangles + 3));
+		int k = 3 * nTriangles;
+		indices[k] = i1;
+		indices[k + 1] = i2;
+		indices[k + 2] = i3;
+		return nTriangles++;
+	}
+
+	/**
+	 * begins a new patch. The triangles added afterwards will belong to this 
+	 * patch. Initially, all triangles belong to a single patch. Empty patches
+	 * will not be kept, i.e. if no triangle has been added since the current 
+	 * patch began, the current patch will be continued.
+	 * 
+	 * @return Index of the current patch
+	 */
+	public int beginPatch() 
+	{
+		if (patchStarts[nPatches - 1] == nTriangles)
+			return nPatches - 1;
+		if (nPatches >= patchStarts.length)
+			patchStarts = Arrays.copyOf(patchStarts, 2 * nPatches);
+		patchStarts[nPatches] = nTriangles;
+		return nPatches++;
+	}
+
+	/**
+	 * sets the patches of the TIN.
+	 * 
+	 * @param starts Index of the first triangle of each patch (ascending 
+	 * order, the first element must be 0)
+	 * @throws T3dException if the given triangle indices are invalid
+	 */
+	public void setPatchStarts(int[] starts) throws T3dException
+	{
+		if (starts.length == 0 || starts[0] != 0)
+			throw new T3dException("The first patch must start with triangle #0.");
+		for (int p = 1; p < starts.length; p++) {
+			if (starts[p] <= starts[p - 1] || starts[p] > nTriangles)
+				throw new T3dException("Invalid patch start " + starts[p] + ".");
+		}
+		patchStarts = starts.clone();
+		nPatches = starts.length;
+	}
+
+	/**
+	 * gets the number of patches. A TIN without explicitly defined patches 
+	 * consists of a single patch.
+	 * 
+	 * @return Number of patches
+	 */
+	public int numberOfPatches() {
+		// Note that the last patch might have been begun without triangles:
+		return (nPatches > 1 && patchStarts[nPatches - 1] == nTriangles) ? 
+			nPatches - 1 : nPatches;
+	}
+
+	/**
+	 * gets the index of a patch's first triangle.
+	 * 
+	 * @param p Patch index (0 &lt;= p &lt; number of patches)
+	 * @return Triangle index
+	 */
+	public int getPatchStart(int p) {
+		this.checkPatchIndex(p);
+		return patchStarts[p];
+	}
+
+	/**
+	 * gets the end of a patch's triangle range, i.e. the patch consists of 
+	 * the triangles <tt>getPatchStart(p)</tt> ... <tt>getPatchEnd(p) - 1</tt>.
+	 * 
+	 * @param p Patch index (0 &lt;= p &lt; number of patches)
+	 * @return Triangle index (exclusive)
+	 */
+	public int getPatchEnd(int p) {
+		this.checkPatchIndex(p);
+		return (p + 1 < nPatches) ? patchStarts[p + 1] : nTriangles;
+	}
+
+	/**
+	 * gets the patch a triangle belongs to.
+	 * 
+	 * @param i Triangle index (0 &lt;= i &lt; number of triangles)
+	 * @return Patch index
+	 */
+	public int getPatch(int i) {
+		this.checkTriangleIndex(i);
+		int p = Arrays.binarySearch(patchStarts, 0, nPatches, i);
+		return (p >= 0) ? p : -p - 2;
+	}
+
+	/**
+	 * adds a border stone, i.e. a vertex where a border begins.
+	 * 
+	 * @param i Vertex index
+	 * @return Index of the added border stone
+	 */
+	public int addBstone(int i) 
+	{
+		if (nBstones >= bstones.length)
+			bstones = Arrays.copyOf(bstones, grow(bstones.length, nBstones + 1));
+		bstones[nBstones] = i;
+		return nBstones++;
+	}
+
+	public int numberOfBstones() {
+		return nBstones;
+	}
+
+	/**
+	 * gets the vertex index of a border stone.
+	 * 
+	 * @param b Border stone index (0 &lt;= b &lt; number of border stones)
+	 * @return Vertex index
+	 */
+	public int getBstoneVertexIndex(int b) {
+		if (b < 0 || b >= nBstones)
+			throw new T3dException("Border stone index out of bounds: " + b);
+		return bstones[b];
+	}
+
+	/**
+	 * gets the array holding the border stones' vertex indices. Note that 
+	 * the internal array will be returned, not a copy; only the first 
+	 * {@link #numberOfBstones()} elements are valid.
+	 * 
+	 * @return Border stone array
+	 */
+	public int[] getBstoneArray() {
+		return bstones;
+	}
+
+	/**
+	 * adds a border. As for GOCAD <tt>BORDER</tt> elements, a border is given
+	 * by its first two vertices, i.e. a border stone and the next vertex 
+	 * along the border.
+	 * 
+	 * @param i1 Index of the border's first vertex
+	 * @param i2 Index of the border's second vertex
+	 * @return Index of the added border
+	 */
+	public int addBorder(int i1, int i2) 
+	{
+		if (2 * nBorders + 2 > borders.length)
+			borders = Arrays.copyOf(borders, grow(borders.length, 2 * nBorders + 2));
+		borders[2 * nBorders] = i1;
+		borders[2 * nBorders + 1] = i2;
+		return nBorders++;
+	}
+
+	public int numberOfBorders() {
+		return nBorders;
+	}
+
+	/**
+	 * gets a vertex index of a border.
+	 * 
+	 * @param b Border index (0 &lt;= b &lt; number of borders)
+	 * @param k 0 for the first vertex (border stone), 1 for the second vertex
+	 * @return Vertex index
+	 */
+	public int getBorderVertexIndex(int b, int k) {
+		if (b < 0 || b >= nBorders)
+			throw new T3dException("Border index out of bounds: " + b);
+		return borders[2 * b + k];
+	}
+
+	/**
+	 * gets the array holding the borders' vertex indices. Note that the 
+	 * internal array will be returned, not a copy; only the first 
+	 * 2 * {@link #numberOfBorders()} elements are valid.
+	 * 
+	 * @return Border array (two vertex indices for each border)
+	 */
+	public int[] getBorderArray() {
+		return borders;
+	}
+
+	/**
+	 * checks if all triangle, border and border stone vertex indices refer 
+	 * to existing vertices.
+	 * 
+	 * @throws T3dException if an invalid index has been found
+	 */
+	public void checkIndices() throws T3dException
+	{
+		for (int k = 0; k < 3 * nTriangles; k++) {
+			if (indices[k] < 0 || indices[k] >= nPoints)
+				throw new T3dException(
+					"Invalid vertex index " + indices[k] + " in triangle #" + (k / 3) + ".");
+		}
+		for (int k = 0; k < 2 * nBorders; k++) {
+			if (borders[k] < 0 || borders[k] >= nPoints)
+				throw new T3dException(
+					"Invalid vertex index " + borders[k] + " in border #" + (k / 2) + ".");
+		}
+		for (int k = 0; k < nBstones; k++) {
+			if (bstones[k] < 0 || bstones[k] >= nPoints)
+				throw new T3dException(
+					"Invalid vertex index " + bstones[k] + " in border stone #" + k + ".");
+		}
+	}
+
+	/**
+	 * releases unused array capacities.
+	 */
+	public void trimToSize() {
+		if (xyz.length > 3 * nPoints)
+			xyz = Arrays.copyOf(xyz, 3 * nPoints);
+		if (indices.length > 3 * nTriangles)
+			indices = Arrays.copyOf(indices, 3 * nTriangles);
+		for (int j = 0; j < props.length; j++) {
+			if (props[j].length > nPoints)
+				props[j] = Arrays.copyOf(props[j], nPoints);
+		}
+		if (patchStarts.length > nPatches)
+			patchStarts = Arrays.copyOf(patchStarts, nPatches);
+		if (bstones.length > nBstones)
+			bstones = Arrays.copyOf(bstones, nBstones);
+		if (borders.length > 2 * nBorders)
+			borders = Arrays.copyOf(borders, 2 * nBorders);
+	}
+
+	public double getX(int i) { 
+		this.checkPointIndex(i);
+		return xyz[3 * i]; 
+	}
+
+	public double getY(int i) { 
+		this.checkPointIndex(i);
+		return xyz[3 * i + 1]; 
+	}
+
+	public double getZ(int i) { 
+		this.checkPointIndex(i);
+		return xyz[3 * i + 2]; 
+	}
+
+	/**
+	 * gets the index of the k-th vertex of the i-th triangle without 
+	 * allocating an array (cf. {@link #getTriangleVertexIndices(int)}).
+	 * 
+	 * @param i Triangle index (0 &lt;= i &lt; number of triangles)
+	 * @param k Corner number (0, 1 or 2)
+	 * @return Vertex index
+	 */
+	public int getTriangleVertexIndex(int i, int k) { 
+		this.checkTriangleIndex(i);
+		return indices[3 * i + k]; 
+	}
+
+	/**
+	 * gets the array holding the vertex coordinates. Note that the internal 
+	 * array will be returned, not a copy; only the first 
+	 * 3 * {@link #numberOfPoints()} elements are valid.
+	 * 
+	 * @return Coordinate array (<i>x</i>, <i>y</i>, <i>z</i> for each vertex)
+	 */
+	public double[] getCoordinateArray() {
+		return xyz;
+	}
+
+	/**
+	 * gets the array holding the triangles' vertex indices. Note that the 
+	 * internal array will be returned, not a copy; only the first 
+	 * 3 * {@link #numberOfTriangles()} elements are valid.
+	 * 
+	 * @return Index array (three vertex indices for each triangle)
+	 */
+	public int[] getIndexArray() {
+		return indices;
+	}
+
+	// Overridden GmSimpleTINGeometry methods:
+
+	@Override
+	public void newPointList(int n) {
+		xyz = new double[3 * n];
+		nPoints = n;
+		env = null;
+		for (int j = 0; j < props.length; j++) {
+			props[j] = new double[n];
+			Arrays.fill(props[j], Double.NaN);
+		}
+		nBstones = 0; // border topology refers to the former vertices
+		nBorders = 0;
+	}
+
+	@Override
+	public void setPoint(int i, VgPoint pt) throws T3dException {
+		this.checkPointIndex(i);
+		xyz[3 * i] = pt.getX();
+		xyz[3 * i + 1] = pt.getY();
+		xyz[3 * i + 2] = pt.getZ();
+		env = null;
+	}
+
+	@Override
+	public VgPoint getPoint(int i) throws T3dException {
+		this.checkPointIndex(i);
+		return new GmPoint(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+	}
+
+	@Override
+	public void newTriangleList(int n) {
+		indices = new int[3 * n];
+		nTriangles = n;
+		nPatches = 1;
+	}
+
+	@Override
+	public void setTriangle(int i, int i1, int i2, int i3) throws T3dException {
+		this.checkTriangleIndex(i);
+		indices[3 * i] = i1;
+		indices[3 * i + 1] = i2;
+		indices[3 * i + 2] = i3;
+	}
+
+	@Override
+	public int[] getTriangleVertexIndices(int i) throws T3dException {
+		this.checkTriangleIndex(i);
+		return new int[] {indices[3 * i], indices[3 * i + 1], indices[3 * i + 2]};
+	}
+
+	@Override
+	public VgTriangle getTriangle(int i) throws T3dException {
+		this.checkTriangleIndex(i);
+		return new GmTriangle(
+			this.getPoint(indices[3 * i]), 
+			this.getPoint(indices[3 * i + 1]), 
+			this.getPoint(indices[3 * i + 2]));
+	}
+
+	@Override
+	public int numberOfPoints() {
+		return nPoints;
+	}
+
+	@Override
+	public int numberOfTriangles() {
+		return nTriangles;
+	}
+
+	@Override
+	public VgEnvelope envelope() 
+	{
+		if (nPoints <= 0)
+			return null;
+		if (env == null) {
+			double 
+				xMin = xyz[0], xMax = xyz[0], 
+				yMin = xyz[1], yMax = xyz[1], 
+				zMin = xyz[2], zMax = xyz[2];
+			for (int k = 3; k < 3 * nPoints; k += 3) {
+				if (xyz[k] < xMin) xMin = xyz[k]; 
+				if (xyz[k] > xMax) xMax = xyz[k];
+				if (xyz[k + 1] < yMin) yMin = xyz[k + 1]; 
+				if (xyz[k + 1] > yMax) yMax = xyz[k + 1];
+				if (xyz[k + 2] < zMin) zMin = xyz[k + 2]; 
+				if (xyz[k + 2] > zMax) zMax = xyz[k + 2];
+			}
+			env = new GmEnvelope(xMin, xMax, yMin, yMax, zMin, zMax);
+		}
+		return env;
+	}
+
+	@Override
+	public VgGeomObject footprint() {
+		VgEnvelope e = this.envelope();
+		return (e == null) ? null : e.footprint();
+	}
+
+	public String toString() {
+		return "[" + nPoints + " vertices, " + nTriangles + " triangles]";
+	}
+
+	// Private helpers:
+
+	private void checkPointIndex(int i) throws T3dException {
+		if (i < 0 || i >= nPoints)
+			throw new T3dException("Vertex index out of bounds: " + i);
+	}
+
+	private void checkTriangleIndex(int i) throws T3dException {
+		if (i < 0 || i >= nTriangles)
+			throw new T3dException("Triangle index out of bounds: " + i);
+	}
+
+	private void checkPatchIndex(int p) throws T3dException {
+		if (p < 0 || p >= this.numberOfPatches())
+			throw new T3dException("Patch index out of bounds: " + p);
+	}
+
+	private double[] growColumn(double[] col, int minLength) {
+		// Columns grow along with the coordinate array:
+		return Arrays.copyOf(col, Math.max(xyz.length / 3, grow(col.length, minLength)));
+	}
+
+	private static int grow(int oldLength, int minLength) {
+		int len = oldLength + (oldLength >> 1); // factor 1.5
+		if (len < minLength) len = minLength;
+		if (len < 0) len = Integer.MAX_VALUE - 8; // overflow
+		return len;
+	}
+}
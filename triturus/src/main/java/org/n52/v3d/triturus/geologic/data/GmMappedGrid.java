@@ -0,0 +1,255 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License 
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * Contact: Benno Schmidt, 52 North Initiative for Geospatial Open Source 
+ * Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster, Germany, 
+ * info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.gisimplm.GmPoint;
+import org.n52.v3d.triturus.vgis.VgPoint;
+
+/**
+ * Regular or structured 2D or 3D grid, e.g. given by a GOCAD Voxet, GSurf or 
+ * SGrid object. The grid nodes are addressed by indices <i>i</i>, <i>j</i>, 
+ * <i>k</i> referring to the grid axes <i>u</i>, <i>v</i> and <i>w</i>; for 
+ * 2D grids, <i>k</i> = 0 holds. For regular grids, the node positions are 
+ * computed from the grid's origin and axis vectors; for structured grids, 
+ * the node positions are read from a coordinate file.
+ * <br>
+ * The property values and node positions are not copied onto the heap; 
+ * instead, they are accessed through (memory-mapped) byte buffers, each 
+ * of them holding {@link #CHUNK_SIZE} bytes at maximum. Values are stored 
+ * with <i>i</i> running fastest, then <i>j</i>, then <i>k</i>.
+ */
+public class GmMappedGrid
+{
+	/**
+	 * Maximum number of bytes per buffer (768 MB). This is a multiple of 
+	 * both the node position record size (12 bytes) and the property 
+	 * element sizes, i.e. no value will straddle two buffers.
+	 */
+	public static final long CHUNK_SIZE = 12L << 26;
+
+	private int nu = 1, nv = 1, nw = 1;
+	private double[] 
+		origin = {0., 0., 0.}, 
+		axisU = {1., 0., 0.}, axisV = {0., 1., 0.}, axisW = {0., 0., 1.},
+		axisMin = {0., 0., 0.}, axisMax = {1., 1., 1.};
+	private ByteBuffer[] points = null; // node positions for structured grids
+	private List<Property> props = new ArrayList<Property>();
+
+	private static class Property {
+		String name;
+		ByteBuffer[] data;
+		int eSize;
+		boolean floating, signed;
+		double noData;
+	}
+
+	/**
+	 * sets the number of grid nodes along the axes.
+	 * 
+	 * @param nu Number of nodes in <i>u</i>-direction
+	 * @param nv Number of nodes in <i>v</i>-direction
+	 * @param nw Number of nodes in <i>w</i>-direction (1 for 2D grids)
+	 */
+	public void setDimensions(int nu, int nv, int nw) {
+		if (nu < 1 || nv < 1 || nw < 1)
+			throw new T3dException("Illegal grid dimensions.");
+		this.nu = nu;
+		this.nv = nv;
+		this.nw = nw;
+	}
+
+	public int getNumberOfNodesU() { return nu; }
+	public int getNumberOfNodesV() { return nv; }
+	public int getNumberOfNodesW() { return nw; }
+
+	public long numberOfNodes() {
+		return (long) nu * nv * nw;
+	}
+
+	/**
+	 * sets the grid's origin and axis vectors (cf. GOCAD keywords 
+	 * <tt>AXIS_O</tt>, <tt>AXIS_U</tt>, <tt>AXIS_V</tt> and <tt>AXIS_W</tt>).
+	 */
+	public void setAxes(double[] origin, double[] u, double[] v, double[] w) {
+		this.origin = origin.clone();
+		this.axisU = u.clone();
+		this.axisV = v.clone();
+		this.axisW = w.clone();
+	}
+
+	/**
+	 * sets the grid's extent in axis coordinates (cf. GOCAD keywords 
+	 * <tt>AXIS_MIN</tt> and <tt>AXIS_MAX</tt>). By default, the grid covers 
+	 * the range 0 ... 1 for each axis.
+	 */
+	public void setAxisRange(double[] min, double[] max) {
+		this.axisMin = min.clone();
+		this.axisMax = max.clone();
+	}
+
+	/**
+	 * sets the node positions for structured grids. The buffers have to hold 
+	 * three <tt>float</tt> values (<i>x</i>, <i>y</i>, <i>z</i>) for each 
+	 * node.
+	 * 
+	 * @param chunks Buffers holding {@link #CHUNK_SIZE} bytes each (except for 
+	 * the last one)
+	 */
+	public void setPoints(ByteBuffer[] chunks) {
+		this.points = chunks;
+	}
+
+	/**
+	 * checks if the node positions are given explicitly (structured grid).
+	 * 
+	 * @return <i>true</i> for structured grids, <i>false</i> for regular grids 
+	 */
+	public boolean isStructured() {
+		return points != null;
+	}
+
+	/**
+	 * adds a property.
+	 * 
+	 * @param name Property name
+	 * @param chunks Buffers holding the property values, {@link #CHUNK_SIZE} 
+	 * bytes each (except for the last one)
+	 * @param eSize Number of bytes per value (1, 2, 4 or 8)
+	 * @param floating <i>true</i> for IEEE floating point values, <i>false</i> 
+	 * for integer values
+	 * @param signed <i>true</i> for signed integer values
+	 * @param noData No-data value
+	 */
+	public void addProperty(
+		String name, ByteBuffer[] chunks, int eSize, boolean floating, boolean signed, 
+		double noData) 
+	{
+		if (eSize != 1 && eSize != 2 && eSize != 4 && eSize != 8)
+			throw new T3dException("Unsupported property element size: " + eSize);
+		if (floating && eSize != 4 && eSize != 8)
+			throw new T3dException("Unsupported floating point element size: " + eSize);
+		Property p = new Property();
+		p.name = name;
+		p.data = chunks;
+		p.eSize = eSize;
+		p.floating = floating;
+		p.signed = signed;
+		p.noData = noData;
+		props.add(p);
+	}
+
+	public int numberOfProperties() {
+		return props.size();
+	}
+
+	public String getPropertyName(int p) {
+		return props.get(p).name;
+	}
+
+	/**
+	 * gets a property value.
+	 * 
+	 * @param p Property index (0 &lt;= p &lt; number of properties)
+	 * @param i Node index in <i>u</i>-direction
+	 * @param j Node index in <i>v</i>-direction
+	 * @param k Node index in <i>w</i>-direction
+	 * @return Property value, <tt>NaN</tt> for no-data values
+	 */
+	public double getValue(int p, int i, int j, int k) 
+	{
+		Property prop = props.get(p);
+		long pos = prop.eSize * this.nodeIndex(i, j, k);
+		ByteBuffer b = prop.data[(int) (pos / CHUNK_SIZE)];
+		int off = (int) (pos % CHUNK_SIZE);
+		double val;
+		switch (prop.eSize) {
+			case 1: val = prop.signed ? b.get(off) : b.get(off) & 0xff; break;
+			case 2: val = prop.signed ? b.getShort(off) : b.getShort(off) & 0xffff; break;
+			case 4: val = prop.floating ? b.getFloat(off) : 
+				(prop.signed ? b.getInt(off) : b.getInt(off) & 0xffffffffL); break;
+			default: val = prop.floating ? b.getDouble(off) : b.getLong(off);
+		}
+		return (val == prop.noData) ? Double.NaN : val;
+	}
+
+	/**
+	 * gets the position of a grid node. Note that the point object will be 
+	 * created on the fly.
+	 * 
+	 * @param i Node index in <i>u</i>-direction
+	 * @param j Node index in <i>v</i>-direction
+	 * @param k Node index in <i>w</i>-direction
+	 * @return Node position
+	 */
+	public VgPoint getPoint(int i, int j, int k) 
+	{
+		if (points != null) {
+			long pos = 12L * this.nodeIndex(i, j, k);
+			ByteBuffer b = points[(int) (pos / CHUNK_SIZE)];
+			int off = (int) (pos % CHUNK_SIZE);
+			return new GmPoint(b.getFloat(off), b.getFloat(off + 4), b.getFloat(off + 8));
+		}
+		double 
+			u = axisCoord(0, i, nu), 
+			v = axisCoord(1, j, nv), 
+			w = (nw > 1) ? axisCoord(2, k, nw) : 0.;
+		return new GmPoint(
+			origin[0] + u * axisU[0] + v * axisV[0] + w * axisW[0], 
+			origin[1] + u * axisU[1] + v * axisV[1] + w * axisW[1], 
+			origin[2] + u * axisU[2] + v * axisV[2] + w * axisW[2]);
+	}
+
+	public String toString() {
+		return "[" + nu + " x " + nv + " x " + nw + " nodes, " 
+			+ props.size() + " properties" + (points != null ? ", structured" : "") + "]";
+	}
+
+	// Private helpers:
+
+	private long nodeIndex(int i, int j, int k) {
+		if (i < 0 || i >= nu || j < 0 || j >= nv || k < 0 || k >= nw)
+			throw new T3dException("Grid index out of bounds: " + i + ", " + j + ", " + k);
+		return i + (long) nu * (j + (long) nv * k);
+	}
+
+	private double axisCoord(int axis, int i, int n) {
+		if (n <= 1)
+			return axisMin[axis];
+		return axisMin[axis] + i * (axisMax[axis] - axisMin[axis]) / (n - 1);
+	}
+}
@@ -0,0 +1,576 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.exporters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.geologic.data.GmCompactTINGeometry;
+import org.n52.v3d.triturus.geologic.importers.GocadDataInfo;
+import org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature;
+import org.n52.v3d.triturus.gisimplm.IoAbstractWriter;
+import org.n52.v3d.triturus.t3dutil.T3dColor;
+import org.n52.v3d.triturus.vgis.VgIndexedTIN;
+import org.n52.v3d.triturus.vgis.VgPoint;
+
+/** 
+ * Writer which exports TINs to GOCAD TSurf files (GOCAD data file format 
+ * version 1.0). Multiple TSurf objects can be written to a single file, e.g. 
+ * to round-trip the objects read by 
+ * {@link org.n52.v3d.triturus.geologic.importers.IoGocadTSurfReader}:
+ * <pre>
+ * writer.open(filename);
+ * for (...)
+ *     writer.writeTSurf(geom, info);
+ * writer.close();
+ * </pre>
+ * The objects are streamed to the target file, i.e. VRTX/PVRTX and TRGL 
+ * elements are formatted directly into an output buffer which is written 
+ * to a file channel. For {@link GmCompactTINGeometry} objects, the vertex 
+ * properties will be exported as PVRTX values; moreover, the coordinate 
+ * and index arrays will be accessed directly.
+ * <br>
+ * Header information (name, colors, geological type etc.) will be taken 
+ * from the given {@link GocadDataInfo} objects. Patches of 
+ * {@link GmCompactTINGeometry} objects will be exported as separate TFACE 
+ * sections, and border topology attached to them (e.g. as imported from a 
+ * GOCAD file) will be exported as BSTONE and BORDER elements. Optionally, 
+ * the TIN borders can be determined and exported instead (see 
+ * {@link #setWriteBorders(boolean)}).
+ */
+public class IoGocadTSurfWriter extends IoAbstractWriter
+{
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final double NO_DATA = -99999.;
+	private static final long[] POW10 = new long[19];
+	static {
+		POW10[0] = 1L;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = 10L * POW10[i - 1];
+	}
+
+	private String logString = "";
+	private int decimalsXY = 6, decimalsZ = 6, decimalsProp = 6;
+	private boolean writeBorders = false;
+
+	private FileChannel channel = null;
+	private byte[] buf = new byte[BUFFER_SIZE];
+	private int pos = 0;
+	private byte[] digits = new byte[20];
+	private int objectCount = 0;
+
+	public IoGocadTSurfWriter() {
+		logString = this.getClass().getName();
+	}
+
+	public String log() {
+		return logString;
+	}
+
+	/**
+	 * sets the number of decimal places used to write coordinates. Trailing 
+	 * zeros will be omitted. By default, 6 decimal places will be written.
+	 * 
+	 * @param decimalsXY Number of decimal places for x- and y-coordinates
+	 * @param decimalsZ Number of decimal places for z-coordinates
+	 */
+	public void setPrecision(int decimalsXY, int decimalsZ) {
+		this.decimalsXY = checkDecimals(decimalsXY);
+		this.decimalsZ = checkDecimals(decimalsZ);
+	}
+
+	/**
+	 * sets the number of decimal places used to write PVRTX property values.
+	 * By default, 6 decimal places will be written.
+	 * 
+	 * @param decimals Number of decimal places
+	 */
+	public void setPropertyPrecision(int decimals) {
+		this.decimalsProp = checkDecimals(decimals);
+	}
+
+	/**
+	 * enables the export of the TIN borders. If enabled, the border edges
+	 * (i.e. edges belonging to a single triangle only) will be determined and
+	 * chained; for each border, a BSTONE element and a BORDER element (giving 
+	 * the border's first two vertices) will be written. Note that this 
+	 * requires 24 bytes of heap space per triangle. Border topology attached 
+	 * to the TIN will be ignored then. By default, borders will not be 
+	 * determined.
+	 * 
+	 * @param writeBorders <i>true</i> to export BSTONE and BORDER elements
+	 */
+	public void setWriteBorders(boolean writeBorders) {
+		this.writeBorders = writeBorders;
+	}
+
+	/**
+	 * writes a single TIN to a GOCAD TSurf file.
+	 * 
+	 * @param tin TIN to be written
+	 * @param filename File path
+	 * @throws T3dException if an I/O error occurs
+	 */
+	public void writeToFile(GmSimpleTINFeature tin, String filename) 
+		throws T3dException
+	{
+		this.open(filename);
+		try {
+			this.writeTSurf((VgIndexedTIN) tin.getGeometry(), null);
+		}
+		finally {
+			this.close();
+		}
+	}
+
+	/**
+	 * writes a set of TINs to a GOCAD TSurf file. The header information 
+	 * will be taken from the TSurf objects given in the information list, 
+	 * i.e. the TINs and information objects returned by 
+	 * {@link org.n52.v3d.triturus.geologic.importers.IoGocadTSurfReader} can 
+	 * be passed directly. Information objects referring to other object 
+	 * types will be ignored.
+	 * 
+	 * @param tins TINs to be written
+	 * @param info Information objects, or <i>null</i>
+	 * @param filename File path
+	 * @throws T3dException if an I/O error occurs
+	 */
+	public void writeToFile(
+		List<GmSimpleTINFeature> tins, List<GocadDataInfo> info, String filename) 
+		throws T3dException
+	{
+		this.open(filename);
+		try {
+			int k = 0;
+			for (GmSimpleTINFeature tin : tins) {
+				GocadDataInfo lInfo = null;
+				while (info != null && k < info.size() && lInfo == null) {
+					if ("TSurf".equalsIgnoreCase(info.get(k).getObjectType()))
+						lInfo = info.get(k);
+					k++;
+				}
+				this.writeTSurf((VgIndexedTIN) tin.getGeometry(), lInfo);
+			}
+		}
+		finally {
+			this.close();
+		}
+	}
+
+	/**
+	 * opens a GOCAD file for writing. An existing file will be overwritten.
+	 * 
+	 * @param filename File path
+	 * @throws T3dException if the file can not be opened
+	 */
+	public void open(String filename) throws T3dException
+	{
+		if (channel != null)
+			this.close();
+		try {
+			channel = FileChannel.open(Paths.get(filename), 
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, 
+				StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		catch (IOException e) {
+			throw new T3dException("Could not open file \"" + filename + "\".");
+		}
+		pos = 0;
+		objectCount = 0;
+	}
+
+	/**
+	 * writes a TSurf object to the opened file.
+	 * 
+	 * @param geom TIN geometry
+	 * @param info Header information, or <i>null</i>
+	 * @throws T3dException if no file has been opened or if an I/O error 
+	 * occurs
+	 */
+	public void writeTSurf(VgIndexedTIN geom, GocadDataInfo info) 
+		throws T3dException
+	{
+		if (channel == null)
+			throw new T3dException("No GOCAD file has been opened.");
+		objectCount++;
+
+		GmCompactTINGeometry cGeom = (geom instanceof GmCompactTINGeometry) ? 
+			(GmCompactTINGeometry) geom : null;
+		int nProps = (cGeom != null) ? cGeom.numberOfProperties() : 0;
+		
+		this.writeHeader(info, cGeom);
+		this.writeLine("TFACE");
+
+		// Vertices:
+		int nPoints = geom.numberOfPoints();
+		double[] xyz = (cGeom != null) ? cGeom.getCoordinateArray() : null;
+		double[][] props = new double[nProps][];
+		for (int j = 0; j < nProps; j++)
+			props[j] = cGeom.getPropertyColumn(j);
+		for (int i = 0; i < nPoints; i++) {
+			this.writeAscii((nProps > 0) ? "PVRTX " : "VRTX ");
+			this.writeLong(i + 1);
+			if (xyz != null) {
+				this.writeDouble(xyz[3 * i], decimalsXY);
+				this.writeDouble(xyz[3 * i + 1], decimalsXY);
+				this.writeDouble(xyz[3 * i + 2], decimalsZ);
+			}
+			else {
+				VgPoint pt = geom.getPoint(i);
+				this.writeDouble(pt.getX(), decimalsXY);
+				this.writeDouble(pt.getY(), decimalsXY);
+				this.writeDouble(pt.getZ(), decimalsZ);
+			}
+			for (int j = 0; j < nProps; j++) {
+				double v = props[j][i];
+				this.writeDouble(Double.isNaN(v) ? NO_DATA : v, decimalsProp);
+			}
+			this.writeByte('\n');
+		}
+
+		// Triangles:
+		int nTriangles = geom.numberOfTriangles();
+		int[] indices = (cGeom != null) ? cGeom.getIndexArray() : null;
+		int p = 1; // next patch (patch 0 has been started above)
+		for (int i = 0; i < nTriangles; i++) {
+			if (cGeom != null && p < cGeom.numberOfPatches() && cGeom.getPatchStart(p) == i) {
+				this.writeLine("TFACE");
+				p++;
+			}
+			this.writeAscii("TRGL");
+			if (indices != null) {
+				this.writeIndex(indices[3 * i]);
+				this.writeIndex(indices[3 * i + 1]);
+				this.writeIndex(indices[3 * i + 2]);
+			}
+			else {
+				int[] tri = geom.getTriangleVertexIndices(i);
+				this.writeIndex(tri[0]);
+				this.writeIndex(tri[1]);
+				this.writeIndex(tri[2]);
+			}
+			this.writeByte('\n');
+		}
+
+		if (writeBorders)
+			this.writeBorders(geom, indices, nPoints);
+		else if (cGeom != null) {
+			this.writeTopology(
+				cGeom.getBstoneArray(), cGeom.numberOfBstones(), 
+				cGeom.getBorderArray(), cGeom.numberOfBorders(), nPoints);
+		}
+
+		this.writeLine("END");
+	}
+
+	/**
+	 * closes the GOCAD file.
+	 * 
+	 * @throws T3dException if an I/O error occurs
+	 */
+	public void close() throws T3dException
+	{
+		if (channel == null)
+			return;
+		try {
+			this.flush();
+			channel.close();
+		}
+		catch (IOException e) {
+			throw new T3dException(e.getMessage());
+		}
+		finally {
+			channel = null;
+		}
+	}
+
+	// Private helpers:
+
+	private void writeHeader(GocadDataInfo info, GmCompactTINGeometry cGeom)
+	{
+		this.writeLine("GOCAD TSurf 1");
+		this.writeLine("HEADER {");
+		String name = (info != null) ? info.getObjectName() : null;
+		if (name == null || name.length() == 0)
+			name = "tsurf" + objectCount;
+		this.writeLine("name: " + name);
+		if (info != null) {
+			this.writeColor("*solid*color:", info.getSolidColor());
+			this.writeColor("*border*color:", info.getBorderColor());
+		}
+		this.writeLine("}");
+
+		if (info != null) {
+			if (info.getGeologicalType() != null)
+				this.writeLine("GEOLOGICAL_TYPE " + info.getGeologicalType());
+			if (info.getGeologicalFeature() != null)
+				this.writeLine("GEOLOGICAL_FEATURE " + info.getGeologicalFeature());
+			if (info.getStratigraphicPosition() != null)
+				this.writeLine("STRATIGRAPHIC_POSITION " + info.getStratigraphicPosition());
+		}
+
+		int nProps = (cGeom != null) ? cGeom.numberOfProperties() : 0;
+		if (nProps > 0) {
+			StringBuilder names = new StringBuilder("PROPERTIES");
+			StringBuilder noData = new StringBuilder("NO_DATA_VALUES");
+			StringBuilder sizes = new StringBuilder("ESIZES");
+			for (int j = 0; j < nProps; j++) {
+				// GOCAD property names must not contain blanks:
+				names.append(' ').append(cGeom.getPropertyName(j).replace(' ', '_'));
+				noData.append(' ').append(NO_DATA);
+				sizes.append(" 1");
+			}
+			this.writeLine(names.toString());
+			this.writeLine(noData.toString());
+			this.writeLine(sizes.toString());
+		}
+	}
+
+	private void writeColor(String key, T3dColor col) {
+		if (col == null)
+			return;
+		this.writeLine(key + " " + col.getRed() + " " + col.getGreen() + " " 
+			+ col.getBlue() + " " + col.getAlpha());
+	}
+
+	// Determines the border edges, i.e. the directed triangle edges without 
+	// opposite edge, chains them and writes a BSTONE and a BORDER element 
+	// for each border: 
+	private void writeBorders(VgIndexedTIN geom, int[] indices, int nPoints)
+	{
+		int nTriangles = geom.numberOfTriangles();
+		long[] edges = new long[3 * nTriangles];
+		for (int i = 0; i < nTriangles; i++) {
+			int a, b, c;
+			if (indices != null) {
+				a = indices[3 * i]; 
+				b = indices[3 * i + 1]; 
+				c = indices[3 * i + 2];
+			}
+			else {
+				int[] tri = geom.getTriangleVertexIndices(i);
+				a = tri[0]; 
+				b = tri[1]; 
+				c = tri[2];
+			}
+			edges[3 * i] = edgeKey(a, b);
+			edges[3 * i + 1] = edgeKey(b, c);
+			edges[3 * i + 2] = edgeKey(c, a);
+		}
+		Arrays.sort(edges);
+		
+		long[] border = new long[256]; // border edges, sorted by start vertex
+		int n = 0; 
+		for (int k = 0; k < edges.length; k++) {
+			long e = edges[k];
+			long rev = edgeKey((int) e, (int) (e >>> 32));
+			if (Arrays.binarySearch(edges, rev) < 0) {
+				if (n >= border.length)
+					border = Arrays.copyOf(border, 2 * border.length);
+				border[n++] = e;
+			}
+		}
+		edges = border;
+
+		// Chain the border edges:
+		boolean[] visited = new boolean[n];
+		int[] stones = new int[16], next = new int[16];
+		int nBorders = 0;
+		for (int k = 0; k < n; k++) {
+			if (visited[k])
+				continue;
+			if (nBorders >= stones.length) {
+				stones = Arrays.copyOf(stones, 2 * stones.length);
+				next = Arrays.copyOf(next, 2 * next.length);
+			}
+			stones[nBorders] = (int) (edges[k] >>> 32);
+			next[nBorders] = (int) edges[k];
+			nBorders++;
+			for (int e = k; e >= 0; ) {
+				visited[e] = true;
+				e = this.findUnvisited(edges, n, visited, (int) edges[e]);
+			}
+		}
+
+		int[] borders = new int[2 * nBorders];
+		for (int b = 0; b < nBorders; b++) {
+			borders[2 * b] = stones[b];
+			borders[2 * b + 1] = next[b];
+		}
+		this.writeTopology(stones, nBorders, borders, nBorders, nPoints);
+	}
+
+	// Writes BSTONE and BORDER elements (border ids follow the vertex ids):
+	private void writeTopology(
+		int[] bstones, int nBstones, int[] borders, int nBorders, int nPoints)
+	{
+		for (int b = 0; b < nBstones; b++) {
+			this.writeAscii("BSTONE");
+			this.writeIndex(bstones[b]);
+			this.writeByte('\n');
+		}
+		for (int b = 0; b < nBorders; b++) {
+			this.writeAscii("BORDER ");
+			this.writeLong(nPoints + b + 1);
+			this.writeIndex(borders[2 * b]);
+			this.writeIndex(borders[2 * b + 1]);
+			this.writeByte('\n');
+		}
+	}
+
+	private static long edgeKey(int from, int to) {
+		return ((long) from << 32) | (to & 0xFFFFFFFFL);
+	}
+
+	// Gets the position of an unvisited border edge starting at the given 
+	// vertex, or -1:
+	private int findUnvisited(long[] edges, int n, boolean[] visited, int from)
+	{
+		int k = Arrays.binarySearch(edges, 0, n, edgeKey(from, 0));
+		if (k < 0)
+			k = -k - 1;
+		for (; k < n && (int) (edges[k] >>> 32) == from; k++) {
+			if (!visited[k])
+				return k;
+		}
+		return -1;
+	}
+
+	private static int checkDecimals(int decimals) throws T3dException {
+		if (decimals < 0 || decimals > 15)
+			throw new T3dException("Illegal number of decimal places: " + decimals);
+		return decimals;
+	}
+
+	// Writes a blank followed by the GOCAD vertex id belonging to the given 
+	// vertex index:
+	private void writeIndex(int index) {
+		this.writeByte(' ');
+		this.writeLong((long) index + 1);
+	}
+
+	// Writes a blank followed by the given value; trailing zeros will be 
+	// omitted:
+	private void writeDouble(double v, int decimals) 
+	{
+		this.writeByte(' ');
+		double scaled = v * POW10[decimals];
+		if (Double.isNaN(v) || Math.abs(scaled) >= 1e17) {
+			this.writeAscii(Double.toString(v)); // rare
+			return;
+		}
+		long l = Math.round(scaled);
+		if (l < 0) {
+			this.writeByte('-');
+			l = -l;
+		}
+		this.writeLong(l / POW10[decimals]);
+		long frac = l % POW10[decimals];
+		if (frac == 0)
+			return;
+		int nDigits = decimals;
+		while (frac % 10 == 0) {
+			frac /= 10;
+			nDigits--;
+		}
+		this.writeByte('.');
+		this.ensureCapacity(nDigits);
+		for (int i = nDigits - 1; i >= 0; i--) {
+			buf[pos + i] = (byte) ('0' + frac % 10);
+			frac /= 10;
+		}
+		pos += nDigits;
+	}
+
+	// Writes a non-negative integer:
+	private void writeLong(long l) 
+	{
+		int n = 0;
+		do {
+			digits[n++] = (byte) ('0' + l % 10);
+			l /= 10;
+		} while (l > 0);
+		this.ensureCapacity(n);
+		while (n > 0)
+			buf[pos++] = digits[--n];
+	}
+
+	private void writeLine(String s) {
+		this.writeAscii(s);
+		this.writeByte('\n');
+	}
+
+	private void writeAscii(String s) {
+		byte[] b = s.getBytes(StandardCharsets.ISO_8859_1);
+		this.ensureCapacity(b.length);
+		if (b.length > buf.length) {
+			this.write(ByteBuffer.wrap(b));
+			return;
+		}
+		System.arraycopy(b, 0, buf, pos, b.length);
+		pos += b.length;
+	}
+
+	private void writeByte(char c) {
+		this.ensureCapacity(1);
+		buf[pos++] = (byte) c;
+	}
+
+	private void ensureCapacity(int n) {
+		if (pos + n > buf.length)
+			this.flush();
+	}
+
+	private void flush() {
+		this.write(ByteBuffer.wrap(buf, 0, pos));
+		pos = 0;
+	}
+
+	private void write(ByteBuffer b) {
+		try {
+			while (b.hasRemaining())
+				channel.write(b);
+		}
+		catch (IOException e) {
+			throw new T3dException(e.getMessage());
+		}
+	}
+}
@@ -35,6 +35,7 @@ package org.n52.v3d.triturus.geologic.exporters;
 import org.n52.v3d.triturus.core.IoFormatType;
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.core.T3dNotYetImplException;
+import org.n52.v3d.triturus.geologic.data.GmCompactTINGeometry;
 import org.n52.v3d.triturus.geologic.util.Orientation;
 import org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature;
 import org.n52.v3d.triturus.gisimplm.IoAbstractWriter;
@@ -52,7 +53,9 @@ import java.text.DecimalFormat;
  * triangle normal orientations (z-component > 0, i.e. skyward orientation; 
  * = 0, i.e. vertical triangle; or < 0, i.e. earthward orientation) will be 
  * exported (see switch {@link this#exportOrientationAttributes}), e.g. to 
- * generate datasets to be used in ParaView.
+ * generate datasets to be used in ParaView. Vertex properties attached to 
+ * {@link GmCompactTINGeometry} objects (e.g. GOCAD PVRTX values) will be 
+ * exported as point data (see switch {@link this#exportVertexProperties}).
  * 
  * @author Benno Schmidt
  */
@@ -67,7 +70,8 @@ public class IoSurfaceWriter extends IoAbstractWriter
     	exportAzimuth = false, 
     	exportCompassDirection = false,
     	exportOrientationClass = false,
-    	exportHeight=false;
+    	exportHeight=false,
+    	exportVertexProperties = true;
     /**
      * Constructor. As a parameter, format type has to be set. For unsupported
      * file formats, a <tt>T3dNotYetImplException</tt> will be thrown. Currently, 
@@ -235,6 +239,20 @@ public class IoSurfaceWriter extends IoAbstractWriter
                 }            	
             }
 
+            if (this.exportVertexProperties && geom instanceof GmCompactTINGeometry) {
+            	GmCompactTINGeometry cGeom = (GmCompactTINGeometry) geom;
+            	if (cGeom.numberOfProperties() > 0)
+            		wl("POINT_DATA " + geom.numberOfPoints());
+            	for (int j = 0; j < cGeom.numberOfProperties(); j++) {
+            		// VTK attribute names must not contain blanks:
+            		wl("SCALARS " + cGeom.getPropertyName(j).replace(' ', '_') + " double 1");
+            		wl("LOOKUP_TABLE default");
+            		double[] values = cGeom.getPropertyColumn(j);
+            		for (int i = 0; i < geom.numberOfPoints(); i++) 
+            			wl("" + values[i]);
+            	}
+            }
+
             doc.close();
         }
         catch (IOException e) {
@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Transparent decompression of import files. The compression format is 
+ * detected by the input's magic bytes (not by the file extension); 
+ * currently, gzip files and zip archives are supported. For zip archives, 
+ * the first file entry will be read. Uncompressed input will be passed 
+ * through unchanged.
+ * <br>
+ * Decompression is performed by a reader thread of its own which runs 
+ * ahead of the consumer by a few buffers, i.e. parsing the decompressed 
+ * data and decompressing the next block are done concurrently.
+ */
+final class CompressedInput 
+{
+	private static final int 
+		CHUNK_SIZE = 1 << 18, // 256 KB
+		CHUNKS = 4; // number of chunks decompressed in advance
+
+	private static final int MAGIC_LENGTH = 4;
+	
+	private CompressedInput() {
+	}
+
+	/**
+	 * checks if the given file is compressed.
+	 * 
+	 * @param file File path
+	 * @return <i>true</i> for compressed files
+	 * @throws IOException if the file can not be read
+	 */
+	static boolean isCompressed(Path file) throws IOException 
+	{
+		InputStream is = Files.newInputStream(file);
+		try {
+			byte[] magic = new byte[MAGIC_LENGTH];
+			int n = 0, k;
+			while (n < MAGIC_LENGTH && (k = is.read(magic, n, MAGIC_LENGTH - n)) > 0)
+				n += k;
+			return format(magic, n) != null;
+		}
+		finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * opens a (possibly compressed) input stream. If the stream is 
+	 * compressed, the returned stream delivers the decompressed data.
+	 * 
+	 * @param is Input stream
+	 * @return Decompressed input stream
+	 * @throws IOException if an I/O error occurs
+	 * @throws T3dException if the compression format is not supported
+	 */
+	static InputStream open(InputStream is) throws IOException, T3dException
+	{
+		BufferedInputStream bis = new BufferedInputStream(is, 1 << 16);
+		bis.mark(MAGIC_LENGTH);
+		byte[] magic = new byte[MAGIC_LENGTH];
+		int n = 0, k;
+		while (n < MAGIC_LENGTH && (k = bis.read(magic, n, MAGIC_LENGTH - n)) > 0)
+			n += k;
+		bis.reset();
+
+		String format = format(magic, n);
+		if (format == null)
+			return bis;
+		InputStream res;
+		switch (format) {
+		case "gzip": 
+			res = new GZIPInputStream(bis, 1 << 16); 
+			break;
+		case "zip":
+			ZipInputStream zis = new ZipInputStream(bis);
+			ZipEntry e = zis.getNextEntry();
+			while (e != null && e.isDirectory())
+				e = zis.getNextEntry();
+			if (e == null) {
+				zis.close();
+				throw new T3dException("Zip archive does not contain any file.");
+			}
+			res = zis;
+			break;
+		default:
+			bis.close();
+			throw new T3dException(
+				"Unsupported compression format: " + format + ".");
+		}
+		return new PipelinedInputStream(res);
+	}
+
+	// Detects the compression format by the given magic bytes; returns null 
+	// for uncompressed data:
+	private static String format(byte[] magic, int n) 
+	{
+		if (n >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b)
+			return "gzip";
+		if (n >= 4 && magic[0] == 'P' && magic[1] == 'K' 
+			&& magic[2] == 3 && magic[3] == 4)
+			return "zip";
+		if (n >= 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5 
+			&& (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd)
+			return "zstd";
+		return null;
+	}
+
+	// Input stream reading the given source in a background thread:
+	private static class PipelinedInputStream extends InputStream 
+	{
+		private static final Chunk END = new Chunk(0);
+
+		private final InputStream source;
+		private final BlockingQueue<Chunk> 
+			full = new ArrayBlockingQueue<Chunk>(CHUNKS + 1),
+			free = new ArrayBlockingQueue<Chunk>(CHUNKS);
+		private volatile boolean closed = false;
+		private volatile IOException failure = null;
+		private Chunk current = null;
+		private boolean ended = false;
+
+		PipelinedInputStream(InputStream source) 
+		{
+			this.source = source;
+			for (int i = 0; i < CHUNKS; i++)
+				free.add(new Chunk(CHUNK_SIZE));
+			Thread t = new Thread(this::decompress, "CompressedInput");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		// Reader thread:
+		private void decompress() 
+		{
+			try {
+				while (!closed) {
+					Chunk c = free.poll(100, TimeUnit.MILLISECONDS);
+					if (c == null)
+						continue;
+					c.length = 0;
+					c.pos = 0;
+					int k = 0;
+					while (c.length < c.data.length 
+						&& (k = source.read(c.data, c.length, c.data.length - c.length)) >= 0)
+						c.length += k;
+					if (c.length > 0)
+						full.put(c);
+					if (k < 0)
+						break;
+				}
+			}
+			catch (IOException e) {
+				failure = e;
+			}
+			catch (InterruptedException e) {
+				failure = new IOException("Decompression has been interrupted.");
+			}
+			finally {
+				full.offer(END); // there is always space for END
+				try {
+					source.close();
+				}
+				catch (IOException e) {
+				}
+			}
+		}
+
+		@Override
+		public int read() throws IOException 
+		{
+			if (!this.nextChunk())
+				return -1;
+			return current.data[current.pos++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException 
+		{
+			if (len == 0)
+				return 0;
+			if (!this.nextChunk())
+				return -1;
+			int n = Math.min(len, current.length - current.pos);
+			System.arraycopy(current.data, current.pos, b, off, n);
+			current.pos += n;
+			return n;
+		}
+
+		// Ensures that the current chunk holds data; returns false at EOF:
+		private boolean nextChunk() throws IOException
+		{
+			if (closed)
+				throw new IOException("Stream has been closed.");
+			if (current != null && current.pos < current.length)
+				return true;
+			if (ended)
+				return false;
+			if (current != null)
+				free.offer(current);
+			try {
+				current = full.take();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Import has been interrupted.");
+			}
+			if (current == END) {
+				current = null;
+				ended = true;
+				if (failure != null)
+					throw failure;
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public void close() {
+			closed = true; // the reader thread will close the source
+			free.clear();
+			full.clear();
+		}
+	}
+
+	private static class Chunk 
+	{
+		final byte[] data;
+		int length, pos;
+
+		Chunk(int size) {
+			data = new byte[size];
+		}
+	}
+}
@@ -32,6 +32,9 @@
  */
 package org.n52.v3d.triturus.geologic.importers;
 
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.gisimplm.GmEnvelope;
 import org.n52.v3d.triturus.t3dutil.T3dColor;
 
 /**
@@ -45,11 +48,15 @@ public class GocadDataInfo
 		objectType = "(undefined)",
 		objectName = "(undefined)";
 	private long 
-		ctVrtx, ctPvrtx, ctTrgl, ctAtom, ctBorder, ctBstone;
+		ctVrtx, ctPvrtx, ctTrgl, ctAtom, ctBorder, ctBstone, ctSeg;
 	private T3dColor 
 		colSolid, colBorder;
 	private String
 		geologicalType, geologicalFeature, stratigraphicPosition;
+	private String[] propertyNames;
+	private int[] propertySizes;
+	private double[] noDataValues;
+	private GocadObjectStatistics stats;
 	
 	/**
 	 * gets the object type name.
@@ -83,14 +90,46 @@ public class GocadDataInfo
 	public void incrAtomCount() { ctAtom++; }
 	public void incrBorderCount() { ctBorder++; }
 	public void incrBstoneCount() { ctBstone++; }
+	public void incrSegCount() { ctSeg++; }
 
 	public long getNumberOfVertices() { return ctVrtx + ctPvrtx + ctAtom; }
 	public long getNumberOfTriangles() { return ctTrgl; }	
+
+	public long getVrtxCount() { return ctVrtx; }
+	public long getPvrtxCount() { return ctPvrtx; }
+	public long getTrglCount() { return ctTrgl; }
+	public long getAtomCount() { return ctAtom; }
+	public long getBorderCount() { return ctBorder; }
+	public long getBstoneCount() { return ctBstone; }
+	public long getSegCount() { return ctSeg; }
+
+	/**
+	 * sets all element counts at once, e.g. to restore information objects
+	 * from a persistent index.
+	 */
+	void setCounts(
+		long vrtx, long pvrtx, long trgl, long atom, long border, long bstone) 
+	{
+		ctVrtx = vrtx;
+		ctPvrtx = pvrtx;
+		ctTrgl = trgl;
+		ctAtom = atom;
+		ctBorder = border;
+		ctBstone = bstone;
+	}
+
+	void setSegCount(long seg) {
+		ctSeg = seg;
+	}
 	
 	public void setGeologicalType(String name) { geologicalType = name; }
 	public void setGeologicalFeature(String name) { geologicalFeature = name; }
 	public void setStratigraphicPosition(String name) { stratigraphicPosition = name; }
 
+	public String getGeologicalType() { return geologicalType; }
+	public String getGeologicalFeature() { return geologicalFeature; }
+	public String getStratigraphicPosition() { return stratigraphicPosition; }
+
 	public void setSolidColor(T3dColor col) {
 		colSolid = col;
 		if (colBorder == null) colBorder = new T3dColor(.9f, .9f, .9f); // light grey
@@ -101,6 +140,124 @@ public class GocadDataInfo
 		if (colSolid == null) colSolid = new T3dColor(.1f, .1f, .1f); // dark grey
 	}
 
+	/**
+	 * sets the names of the PVRTX properties (as given in the 
+	 * <tt>PROPERTIES</tt> line).
+	 */
+	public void setPropertyNames(String[] names) { propertyNames = names; }
+
+	/**
+	 * sets the numbers of values per PVRTX property (as given in the 
+	 * <tt>ESIZES</tt> line).
+	 */
+	public void setPropertySizes(int[] sizes) { propertySizes = sizes; }
+
+	/**
+	 * sets the PVRTX properties' no-data values (as given in the 
+	 * <tt>NO_DATA_VALUES</tt> line).
+	 */
+	public void setNoDataValues(double[] values) { noDataValues = values; }
+
+	/**
+	 * gets the names of the PVRTX properties.
+	 * 
+	 * @return Property names, or <i>null</i> if no properties are given
+	 */
+	public String[] getPropertyNames() { return propertyNames; }
+	public int[] getPropertySizes() { return propertySizes; }
+	public double[] getNoDataValues() { return noDataValues; }
+
+	/**
+	 * gets a name for each value given in a PVRTX line. For properties 
+	 * consisting of multiple values (see {@link #getPropertySizes()}), the 
+	 * value number will be appended to the property name. For values not 
+	 * covered by the <tt>PROPERTIES</tt> line, generic names will be used.
+	 * 
+	 * @param nValues Number of property values per PVRTX line
+	 * @return Array holding <tt>nValues</tt> names
+	 */
+	public String[] getPropertyColumnNames(int nValues) 
+	{
+		String[] res = new String[nValues];
+		int k = 0;
+		for (int j = 0; propertyNames != null && j < propertyNames.length; j++) {
+			int size = (propertySizes != null && j < propertySizes.length) ? 
+				propertySizes[j] : 1;
+			for (int l = 0; l < size && k < nValues; l++) {
+				res[k++] = (size == 1) ? 
+					propertyNames[j] : propertyNames[j] + "_" + (l + 1);
+			}
+		}
+		while (k < nValues) {
+			res[k] = "PROPERTY_" + (k + 1);
+			k++;
+		}
+		return res;
+	}
+
+	/**
+	 * gets the no-data value for each value given in a PVRTX line (cf. 
+	 * {@link #getPropertyColumnNames(int)}).
+	 * 
+	 * @param nValues Number of property values per PVRTX line
+	 * @return Array holding <tt>nValues</tt> no-data values (<tt>NaN</tt>, 
+	 * if no no-data value is given)
+	 */
+	public double[] getPropertyColumnNoDataValues(int nValues) 
+	{
+		double[] res = new double[nValues];
+		Arrays.fill(res, Double.NaN);
+		int k = 0;
+		for (int j = 0; noDataValues != null && j < noDataValues.length; j++) {
+			int size = (propertySizes != null && j < propertySizes.length) ? 
+				propertySizes[j] : 1;
+			for (int l = 0; l < size && k < nValues; l++)
+				res[k++] = noDataValues[j];
+		}
+		return res;
+	}
+
+	/**
+	 * gets statistics about the object's geometry (bounding-box, <i>z</i>-value
+	 * histogram, triangle areas), as collected while the GOCAD file has been 
+	 * scanned (e.g. by {@link IoGocadTSurfReader#getInfo(String)}). For 
+	 * TSurf objects that have been imported as TINs, the statistics have 
+	 * been computed from the TIN geometry when the object had been read. 
+	 * 
+	 * @return Statistics, or <i>null</i> if not available (e.g. for 
+	 * information restored from a sidecar index)
+	 */
+	public GocadObjectStatistics getStatistics() {
+		return stats; 
+	}
+
+	/**
+	 * gets the bounding-box of the object's vertices (cf. 
+	 * {@link #getStatistics()}).
+	 * 
+	 * @return Envelope, or <i>null</i> if not available
+	 */
+	public GmEnvelope getEnvelope() { 
+		GocadObjectStatistics stats = this.getStatistics();
+		return (stats == null) ? null : stats.getEnvelope(); 
+	}
+
+	void setStatistics(GocadObjectStatistics stats) { 
+		this.stats = stats; 
+	}
+
+	public T3dColor getSolidColor() { return colSolid; }
+	public T3dColor getBorderColor() { return colBorder; }
+
+	/**
+	 * sets both colors at once, e.g. to restore information objects from a 
+	 * persistent cache (<i>null</i> values are allowed).
+	 */
+	void setColors(T3dColor solid, T3dColor border) {
+		colSolid = solid;
+		colBorder = border;
+	}
+
 	public String toString() {
 		StringBuffer s = new StringBuffer("[");
 		{	s.append("(type:\"" + objectType + "\"");
@@ -113,6 +270,12 @@ public class GocadDataInfo
 			if (ctAtom > 0) s.append(", #atom=" + ctAtom); 
 			s.append(")");
 		}
+		if ("PLine".equalsIgnoreCase(objectType) || "VSet".equalsIgnoreCase(objectType)) {
+			s.append("(#vrtx=" + (ctVrtx + ctPvrtx)); 
+			if (ctAtom > 0) s.append(", #atom=" + ctAtom); 
+			if (ctSeg > 0) s.append(", #seg=" + ctSeg); 
+			s.append(")");
+		}
 		if (ctBorder + ctBstone > 0) {
 			s.append("(#border=" + ctBorder + ", #bstone=" + ctBstone + ")");
 		}
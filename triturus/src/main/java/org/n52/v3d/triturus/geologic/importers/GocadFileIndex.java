@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2018 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index holding the byte offsets, line counts and element counts of the 
+ * objects contained in a GOCAD file. The index can be stored as a sidecar
+ * file (<tt>&lt;GOCAD file&gt;.gidx</tt>) next to the GOCAD file; it will be
+ * considered valid as long as the GOCAD file's size and modification time 
+ * do not change. Once built, an index is not modified anymore, i.e. it can 
+ * be shared by concurrent threads.
+ */
+class GocadFileIndex 
+{
+	private static final int MAGIC = 0x47494458; // "GIDX"
+	private static final int VERSION = 2;
+
+	/**
+	 * Index entry describing a single GOCAD object.
+	 */
+	static class Entry {
+		long offset, length, lineCount;
+		GocadDataInfo info;
+	}
+
+	private long fileSize, lastModified;
+	private List<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param gocadFile Indexed GOCAD file
+	 */
+	public GocadFileIndex(File gocadFile) {
+		fileSize = gocadFile.length();
+		lastModified = gocadFile.lastModified();
+	}
+
+	/**
+	 * adds an object to the index.
+	 * 
+	 * @param offset Byte offset of the object's "GOCAD" line
+	 * @param length Object size in bytes
+	 * @param lineCount Number of lines
+	 * @param info Object information
+	 */
+	public void addEntry(long offset, long length, long lineCount, GocadDataInfo info) {
+		Entry e = new Entry();
+		e.offset = offset;
+		e.length = length;
+		e.lineCount = lineCount;
+		e.info = info;
+		entries.add(e);
+	}
+
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * gets the index entry of the object with the given name.
+	 * 
+	 * @param objectName Object name as given by {@link GocadDataInfo#getObjectName()}
+	 * @return Index entry, or <i>null</i> if there is no such object
+	 */
+	public Entry getEntry(String objectName) {
+		for (Entry e : entries) {
+			if (e.info.getObjectName().equals(objectName))
+				return e;
+		}
+		return null;
+	}
+
+	/**
+	 * checks if the index is still valid for the given GOCAD file.
+	 * 
+	 * @param gocadFile GOCAD file
+	 * @return <i>true</i>, if size and modification time did not change
+	 */
+	public boolean isValidFor(File gocadFile) {
+		return gocadFile.length() == fileSize && gocadFile.lastModified() == lastModified;
+	}
+
+	/**
+	 * gets the sidecar file belonging to the given GOCAD file.
+	 * 
+	 * @param gocadFile GOCAD file
+	 * @return Index file
+	 */
+	public static File sidecarFile(File gocadFile) {
+		return new File(gocadFile.getPath() + ".gidx");
+	}
+
+	/**
+	 * reads the sidecar index of the given GOCAD file.
+	 * 
+	 * @param gocadFile GOCAD file
+	 * @return Index, or <i>null</i> if no valid index exists
+	 */
+	public static GocadFileIndex load(File gocadFile) 
+	{
+		File f = sidecarFile(gocadFile);
+		if (!f.isFile())
+			return null;
+		try {
+			DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(f)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION)
+					return null;
+				GocadFileIndex idx = new GocadFileIndex(gocadFile);
+				idx.fileSize = in.readLong();
+				idx.lastModified = in.readLong();
+				if (!idx.isValidFor(gocadFile))
+					return null;
+				int n = in.readInt();
+				for (int i = 0; i < n; i++) {
+					long offset = in.readLong(), length = in.readLong(), 
+						lineCount = in.readLong();
+					GocadDataInfo info = new GocadDataInfo();
+					info.setObjectType(in.readUTF());
+					info.setObjectName(in.readUTF());
+					info.setCounts(
+						in.readLong(), in.readLong(), in.readLong(), 
+						in.readLong(), in.readLong(), in.readLong());
+					info.setSegCount(in.readLong());
+					info.setGeologicalType(readOptionalUTF(in));
+					info.setGeologicalFeature(readOptionalUTF(in));
+					info.setStratigraphicPosition(readOptionalUTF(in));
+					idx.addEntry(offset, length, lineCount, info);
+				}
+				return idx;
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (IOException e) {
+			return null; // corrupt index, will be re-built
+		}
+	}
+
+	/**
+	 * writes the index to the sidecar file belonging to the given GOCAD file.
+	 * 
+	 * @param gocadFile GOCAD file
+	 * @return <i>false</i>, if the index could not be written (e.g., in case 
+	 * of missing write permissions)
+	 */
+	public boolean save(File gocadFile) 
+	{
+		File f = sidecarFile(gocadFile), tmp = null;
+		try {
+			// Each writer uses a temporary file of its own:
+			tmp = File.createTempFile(
+				f.getName() + ".", ".tmp", f.getAbsoluteFile().getParentFile());
+			DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(fileSize);
+				out.writeLong(lastModified);
+				out.writeInt(entries.size());
+				for (Entry e : entries) {
+					out.writeLong(e.offset);
+					out.writeLong(e.length);
+					out.writeLong(e.lineCount);
+					out.writeUTF(e.info.getObjectType());
+					out.writeUTF(e.info.getObjectName());
+					out.writeLong(e.info.getVrtxCount());
+					out.writeLong(e.info.getPvrtxCount());
+					out.writeLong(e.info.getTrglCount());
+					out.writeLong(e.info.getAtomCount());
+					out.writeLong(e.info.getBorderCount());
+					out.writeLong(e.info.getBstoneCount());
+					out.writeLong(e.info.getSegCount());
+					writeOptionalUTF(out, e.info.getGeologicalType());
+					writeOptionalUTF(out, e.info.getGeologicalFeature());
+					writeOptionalUTF(out, e.info.getStratigraphicPosition());
+				}
+			}
+			finally {
+				out.close();
+			}
+			// Concurrent readers never see a partially written index:
+			Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		}
+		catch (IOException e) {
+			if (tmp != null)
+				tmp.delete();
+			return false;
+		}
+	}
+
+	// Private helpers:
+
+	private static String readOptionalUTF(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeOptionalUTF(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null)
+			out.writeUTF(s);
+	}
+}
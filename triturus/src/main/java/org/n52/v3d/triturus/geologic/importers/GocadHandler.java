@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2018 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+/**
+ * Callback interface for event-driven (&quot;SAX-style&quot;) processing of 
+ * GOCAD ASCII files, see {@link IoGocadTSurfReader#parse(String, GocadHandler)}.
+ * Implementations might compute derived quantities such as envelopes, 
+ * triangle orientations or vertex statistics without materializing the 
+ * complete TIN geometries.
+ * <br>
+ * Vertex and triangle ids are passed as given in the GOCAD file, i.e. 
+ * usually starting with 1.
+ */
+public interface GocadHandler 
+{
+	/**
+	 * is called when a new GOCAD object begins. At this point, only the 
+	 * object type has been set in the given information object; the 
+	 * remaining header information will be filled in while the object is 
+	 * read.
+	 * 
+	 * @param info Object information
+	 */
+	void onObjectBegin(GocadDataInfo info);
+
+	/**
+	 * is called for each VRTX or PVRTX element.
+	 * 
+	 * @param id Vertex id
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param z z-coordinate
+	 * @param props Property values given for PVRTX elements (empty array 
+	 * for VRTX elements). Note that this array will be re-used by the 
+	 * parser, i.e. its content is valid during this call only.
+	 */
+	void onVertex(long id, double x, double y, double z, double[] props);
+
+	/**
+	 * is called for each ATOM element, i.e. a vertex re-using the position 
+	 * of a vertex given before.
+	 * 
+	 * @param id Vertex id
+	 * @param refId Id of the referenced vertex
+	 */
+	void onAtom(long id, long refId);
+
+	/**
+	 * is called for each TRGL element.
+	 * 
+	 * @param a Id of the triangle's first vertex
+	 * @param b Id of the triangle's second vertex
+	 * @param c Id of the triangle's third vertex
+	 */
+	void onTriangle(long a, long b, long c);
+
+	/**
+	 * is called for each SEG element (PLine objects).
+	 * 
+	 * @param a Id of the segment's first vertex
+	 * @param b Id of the segment's second vertex
+	 */
+	default void onSegment(long a, long b) {
+	}
+
+	/**
+	 * is called for each TFACE or ILINE element, i.e. when a new surface 
+	 * patch or polyline part begins.
+	 */
+	default void onPartBegin() {
+	}
+
+	/**
+	 * is called for each BSTONE element, i.e. a vertex where a border 
+	 * begins.
+	 * 
+	 * @param id Id of the border stone vertex
+	 */
+	default void onBstone(long id) {
+	}
+
+	/**
+	 * is called for each BORDER element.
+	 * 
+	 * @param id Border id
+	 * @param a Id of the border's first vertex (border stone)
+	 * @param b Id of the border's second vertex
+	 */
+	default void onBorder(long id, long a, long b) {
+	}
+
+	/**
+	 * is called for each header line, i.e. for each line that does not hold 
+	 * a geometry element. This allows to process object-type specific 
+	 * information such as Voxet axes or property file names.
+	 * 
+	 * @param line Line as given in the GOCAD file
+	 */
+	default void onHeaderLine(String line) {
+	}
+
+	/**
+	 * is called when a GOCAD object has been read completely.
+	 * 
+	 * @param info Complete object information
+	 */
+	void onObjectEnd(GocadDataInfo info);
+}
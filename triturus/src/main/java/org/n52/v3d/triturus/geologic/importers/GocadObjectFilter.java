@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.n52.v3d.triturus.vgis.VgEnvelope;
+
+/**
+ * Filter to restrict the GOCAD objects and triangles to be imported by 
+ * {@link IoGocadTSurfReader} (see 
+ * {@link GocadReadOptions#setFilter(GocadObjectFilter)}). Objects can be 
+ * selected by name, type and geological type; if multiple criteria are 
+ * given, all of them have to be fulfilled. Additionally, an area of interest 
+ * can be given; then, only triangles intersecting this area (with respect 
+ * to the <i>x-y</i>-plane) will be imported.
+ */
+public class GocadObjectFilter 
+{
+	private Set<String> names, types, geologicalTypes; // null: no restriction
+	private VgEnvelope env;
+
+	/**
+	 * restricts the import to objects having the given name. This method 
+	 * can be called multiple times to select multiple objects.
+	 * 
+	 * @param objectName Object name as given by {@link GocadDataInfo#getObjectName()}
+	 * @return this filter
+	 */
+	public GocadObjectFilter addObjectName(String objectName) {
+		if (names == null)
+			names = new HashSet<String>();
+		names.add(objectName);
+		return this;
+	}
+
+	/**
+	 * restricts the import to objects of the given type (case will be 
+	 * ignored). This method can be called multiple times.
+	 * 
+	 * @param type Object type, e.g. &quot;TSurf&quot;
+	 * @return this filter
+	 */
+	public GocadObjectFilter addObjectType(String type) {
+		if (types == null)
+			types = new HashSet<String>();
+		types.add(type.toLowerCase());
+		return this;
+	}
+
+	/**
+	 * restricts the import to objects having the given 
+	 * <tt>GEOLOGICAL_TYPE</tt> (case will be ignored). This method can be 
+	 * called multiple times.
+	 * 
+	 * @param geologicalType Geological type, e.g. &quot;top&quot;
+	 * @return this filter
+	 */
+	public GocadObjectFilter addGeologicalType(String geologicalType) {
+		if (geologicalTypes == null)
+			geologicalTypes = new HashSet<String>();
+		geologicalTypes.add(geologicalType.toLowerCase());
+		return this;
+	}
+
+	/**
+	 * sets the area of interest. Triangles not intersecting the given 
+	 * envelope's <i>x-y</i>-extent will be dropped.
+	 * 
+	 * @param env Area of interest, or <i>null</i> for no spatial restriction
+	 * @return this filter
+	 */
+	public GocadObjectFilter setEnvelope(VgEnvelope env) {
+		this.env = env;
+		return this;
+	}
+
+	public VgEnvelope getEnvelope() {
+		return env;
+	}
+
+	/**
+	 * checks if an object fulfills the name and type criteria. Note that the 
+	 * object's header information must have been read before.
+	 * 
+	 * @param info Object information
+	 * @return <i>true</i>, if the object shall be imported
+	 */
+	public boolean accepts(GocadDataInfo info) 
+	{
+		if (names != null && !names.contains(info.getObjectName()))
+			return false;
+		if (types != null && !types.contains(info.getObjectType().toLowerCase()))
+			return false;
+		if (geologicalTypes != null && (info.getGeologicalType() == null 
+			|| !geologicalTypes.contains(info.getGeologicalType().toLowerCase())))
+			return false;
+		return true;
+	}
+
+	/**
+	 * computes the position of a point relative to the area of interest. For 
+	 * points inside the area, 0 will be returned; otherwise, the result 
+	 * holds one bit for each side the point lies beyond (cf. Cohen-Sutherland 
+	 * clipping). A triangle intersects the area's bounding-box if and only if 
+	 * the bitwise <i>and</i> of its vertices' outcodes is 0.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @return Outcode (0, if no area of interest has been set)
+	 */
+	public int outcode(double x, double y) 
+	{
+		if (env == null)
+			return 0;
+		int code = 0;
+		if (x < env.getXMin()) code |= 1;
+		if (x > env.getXMax()) code |= 2;
+		if (y < env.getYMin()) code |= 4;
+		if (y > env.getYMax()) code |= 8;
+		return code;
+	}
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import org.n52.v3d.triturus.geologic.data.GmCompactTINGeometry;
+import org.n52.v3d.triturus.gisimplm.GmEnvelope;
+
+/**
+ * Statistics about a GOCAD object's geometry, collected while the GOCAD file 
+ * is scanned (see {@link GocadDataInfo#getStatistics()}). The statistics give 
+ * the vertices' bounding-box, a <i>z</i>-value histogram, and the triangle 
+ * areas' minimum, maximum, sum and mean. This allows to plan target grids 
+ * and to estimate memory demands before any TIN has been built.
+ * <br>
+ * The histogram consists of {@link #NUMBER_OF_BINS} bins of equal width. 
+ * Since the <i>z</i>-range is not known in advance, the histogram range 
+ * will be doubled (merging neighboring bins) whenever a <i>z</i>-value 
+ * exceeds the current range. 
+ */
+public class GocadObjectStatistics 
+{
+	/**
+	 * Number of histogram bins.
+	 */
+	public static final int NUMBER_OF_BINS = 64;
+
+	private long nVertices = 0;
+	private double 
+		xMin = Double.POSITIVE_INFINITY, xMax = Double.NEGATIVE_INFINITY, 
+		yMin = Double.POSITIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY, 
+		zMin = Double.POSITIVE_INFINITY, zMax = Double.NEGATIVE_INFINITY;
+	
+	private long[] bins = new long[NUMBER_OF_BINS];
+	private double binOrigin = 0., binWidth = 0.; // binWidth 0: empty histogram
+
+	private long nTriangles = 0;
+	private double 
+		areaMin = Double.POSITIVE_INFINITY, areaMax = 0., areaSum = 0.;
+
+	/**
+	 * adds a vertex.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param z z-coordinate
+	 */
+	public void addVertex(double x, double y, double z) 
+	{
+		nVertices++;
+		if (x < xMin) xMin = x;
+		if (x > xMax) xMax = x;
+		if (y < yMin) yMin = y;
+		if (y > yMax) yMax = y;
+		if (z < zMin) zMin = z;
+		if (z > zMax) zMax = z;
+		if (Double.isNaN(z) || Double.isInfinite(z))
+			return;
+		
+		if (binWidth == 0.) {
+			binWidth = Math.max(Math.abs(z) * 1.e-9, 1.e-9);
+			binOrigin = z - binWidth * (NUMBER_OF_BINS / 2);
+		}
+		while (z < binOrigin || z >= binOrigin + NUMBER_OF_BINS * binWidth)
+			this.doubleHistogramRange(z < binOrigin);
+		int i = (int) ((z - binOrigin) / binWidth);
+		bins[Math.min(i, NUMBER_OF_BINS - 1)]++;
+	}
+
+	/**
+	 * adds a triangle.
+	 */
+	public void addTriangle(
+		double x1, double y1, double z1, 
+		double x2, double y2, double z2, 
+		double x3, double y3, double z3) 
+	{
+		double 
+			ax = x2 - x1, ay = y2 - y1, az = z2 - z1,
+			bx = x3 - x1, by = y3 - y1, bz = z3 - z1,
+			cx = ay * bz - az * by, 
+			cy = az * bx - ax * bz, 
+			cz = ax * by - ay * bx;
+		double area = 0.5 * Math.sqrt(cx * cx + cy * cy + cz * cz);
+		nTriangles++;
+		areaSum += area;
+		if (area < areaMin) areaMin = area;
+		if (area > areaMax) areaMax = area;
+	}
+
+	public long numberOfVertices() {
+		return nVertices;
+	}
+
+	public long numberOfTriangles() {
+		return nTriangles;
+	}
+
+	/**
+	 * gets the bounding-box of the vertices.
+	 * 
+	 * @return Envelope, or <i>null</i> if no vertices have been given
+	 */
+	public GmEnvelope getEnvelope() {
+		if (nVertices <= 0)
+			return null;
+		return new GmEnvelope(xMin, xMax, yMin, yMax, zMin, zMax);
+	}
+
+	/**
+	 * gets the <i>z</i>-value histogram. Bin <i>i</i> holds the number of 
+	 * vertices with <i>z</i> in the range 
+	 * [<tt>getHistogramOrigin() + i * getHistogramBinWidth()</tt>, 
+	 * <tt>getHistogramOrigin() + (i + 1) * getHistogramBinWidth()</tt>).
+	 * 
+	 * @return Array holding {@link #NUMBER_OF_BINS} counts
+	 */
+	public long[] getZHistogram() {
+		return bins.clone();
+	}
+
+	public double getHistogramOrigin() {
+		return binOrigin;
+	}
+
+	public double getHistogramBinWidth() {
+		return binWidth;
+	}
+
+	public double getMinTriangleArea() {
+		return (nTriangles > 0) ? areaMin : 0.;
+	}
+
+	public double getMaxTriangleArea() {
+		return areaMax;
+	}
+
+	/**
+	 * gets the sum of all triangle areas, i.e. the surface area.
+	 * 
+	 * @return Surface area
+	 */
+	public double getTotalTriangleArea() {
+		return areaSum;
+	}
+
+	public double getMeanTriangleArea() {
+		return (nTriangles > 0) ? areaSum / nTriangles : 0.;
+	}
+
+	public String toString() {
+		return "[#vertices=" + nVertices + ", envelope=" + this.getEnvelope() 
+			+ ", #triangles=" + nTriangles + ", area(min/mean/max)=" 
+			+ this.getMinTriangleArea() + "/" + this.getMeanTriangleArea() + "/" 
+			+ areaMax + ", total area=" + areaSum + "]";
+	}
+
+	// Package-private helpers:
+
+	// Computes the statistics of the given TIN geometry; the vertices and 
+	// triangles are visited in the same order as during the file scan:
+	static GocadObjectStatistics compute(GmCompactTINGeometry geom) 
+	{
+		GocadObjectStatistics stats = new GocadObjectStatistics();
+		double[] xyz = geom.getCoordinateArray();
+		for (int i = 0; i < geom.numberOfPoints(); i++)
+			stats.addVertex(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+		int[] idx = geom.getIndexArray();
+		for (int k = 0; k < 3 * geom.numberOfTriangles(); k += 3) {
+			int a = 3 * idx[k], b = 3 * idx[k + 1], c = 3 * idx[k + 2];
+			stats.addTriangle(
+				xyz[a], xyz[a + 1], xyz[a + 2], 
+				xyz[b], xyz[b + 1], xyz[b + 2], 
+				xyz[c], xyz[c + 1], xyz[c + 2]);
+		}
+		return stats;
+	}
+
+	// Access for persistent caches:
+
+	double[] getState() {
+		double[] res = new double[13];
+		res[0] = nVertices; res[1] = xMin; res[2] = xMax; res[3] = yMin; 
+		res[4] = yMax; res[5] = zMin; res[6] = zMax; res[7] = binOrigin; 
+		res[8] = binWidth; res[9] = nTriangles; res[10] = areaMin; 
+		res[11] = areaMax; res[12] = areaSum;
+		return res;
+	}
+
+	void setState(double[] s, long[] bins) {
+		nVertices = (long) s[0]; xMin = s[1]; xMax = s[2]; yMin = s[3];
+		yMax = s[4]; zMin = s[5]; zMax = s[6]; binOrigin = s[7];
+		binWidth = s[8]; nTriangles = (long) s[9]; areaMin = s[10];
+		areaMax = s[11]; areaSum = s[12];
+		this.bins = bins;
+	}
+
+	// Private helpers:
+
+	private void doubleHistogramRange(boolean downwards) 
+	{
+		long[] res = new long[NUMBER_OF_BINS];
+		int shift = downwards ? NUMBER_OF_BINS / 2 : 0;
+		for (int i = 0; i < NUMBER_OF_BINS; i++)
+			res[shift + i / 2] += bins[i];
+		if (downwards)
+			binOrigin -= NUMBER_OF_BINS * binWidth;
+		binWidth *= 2.;
+		bins = res;
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+/**
+ * Options for a single read operation of {@link IoGocadTSurfReader}, i.e. 
+ * the number of worker threads, the usage of the binary cache and the 
+ * object filter. Since the options are passed per call (e.g. 
+ * {@link IoGocadTSurfReader#read(String, GocadReadOptions)}), a single 
+ * reader can serve concurrent requests with different options. The options 
+ * will be copied when a read operation starts, i.e. later modifications do 
+ * not affect read operations already running.
+ */
+public class GocadReadOptions 
+{
+	private int parallelism = 1;
+	private boolean useCache = false;
+	private GocadObjectFilter filter = null;
+
+	public GocadReadOptions() {
+	}
+
+	/**
+	 * Copy constructor.
+	 * 
+	 * @param options Options to be copied
+	 */
+	public GocadReadOptions(GocadReadOptions options) {
+		parallelism = options.parallelism;
+		useCache = options.useCache;
+		filter = options.filter;
+	}
+
+	/**
+	 * sets the number of worker threads used to read GOCAD files holding
+	 * multiple objects. For values &gt; 1, the object boundaries inside a 
+	 * local file will be located by a fast scan first; then, the single
+	 * objects (<tt>GOCAD ... END</tt> blocks) will be parsed concurrently in
+	 * a {@link java.util.concurrent.ForkJoinPool}. The resulting TINs are 
+	 * returned in file order anyway. By default, files will be read 
+	 * sequentially (parallelism 1).
+	 * 
+	 * @param parallelism Number of worker threads; for values &lt;= 0, the 
+	 * number of available processors will be used
+	 * @return these options
+	 */
+	public GocadReadOptions setParallelism(int parallelism) {
+		if (parallelism <= 0)
+			parallelism = Runtime.getRuntime().availableProcessors();
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * enables the binary cache for local GOCAD files. If enabled, the 
+	 * imported objects will be stored in a binary cache file 
+	 * (<tt>&lt;location&gt;.gtsc</tt>) next to the GOCAD file. The next
+	 * time the file is read, the cache file will be loaded instead of 
+	 * parsing the GOCAD file again, as long as the GOCAD file's path, size and 
+	 * modification time did not change. If the GOCAD file has been modified, 
+	 * only the objects whose content changed will be parsed again; the other 
+	 * objects are identified by content hashes of their <tt>GOCAD ... END</tt> 
+	 * blocks and taken from the cache. By default, the cache is disabled.
+	 * 
+	 * @param useCache <i>true</i> to enable the cache
+	 * @return these options
+	 */
+	public GocadReadOptions setUseCache(boolean useCache) {
+		this.useCache = useCache;
+		return this;
+	}
+
+	public boolean getUseCache() {
+		return useCache;
+	}
+
+	/**
+	 * sets a filter to restrict the import to selected GOCAD objects (by 
+	 * name, type or geological type) and, optionally, to the triangles 
+	 * intersecting an area of interest. Note that objects are selected after 
+	 * their header has been read, i.e. the <tt>GEOLOGICAL_TYPE</tt> has to be 
+	 * given before the first vertex. 
+	 * <br>
+	 * For an area of interest, local files will be scanned in two steps: 
+	 * First, only the vertices' positions relative to the area and the 
+	 * triangles intersecting the area are kept; then, the vertices referred 
+	 * to by these triangles are read, and the vertex indices are compacted. 
+	 * Thus, the memory needed depends on the size of the area of interest 
+	 * rather than on the file size. Only TSurf objects having triangles 
+	 * inside the area will be imported. If a filter is set, the binary cache 
+	 * will not be used. The filter must not be modified while it is in use.
+	 * 
+	 * @param filter Filter, or <i>null</i> to import all objects
+	 * @return these options
+	 */
+	public GocadReadOptions setFilter(GocadObjectFilter filter) {
+		this.filter = filter;
+		return this;
+	}
+
+	public GocadObjectFilter getFilter() {
+		return filter;
+	}
+}
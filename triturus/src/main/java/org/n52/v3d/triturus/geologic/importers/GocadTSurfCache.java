@@ -0,0 +1,591 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import org.n52.v3d.triturus.geologic.data.GmCompactTINGeometry;
+import org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature;
+import org.n52.v3d.triturus.t3dutil.T3dColor;
+
+/**
+ * Binary cache holding the parsed content of a GOCAD TSurf file. The cache 
+ * is stored as file <tt>&lt;GOCAD file&gt;.gtsc</tt> next to the GOCAD file; 
+ * it will be considered valid as long as the GOCAD file's absolute path, size 
+ * and modification time do not change. For each object, a content hash of 
+ * the object's byte range (<tt>GOCAD ... END</tt> block) is stored, too; 
+ * thus, if the GOCAD file has been modified, the objects that did not 
+ * change can still be taken from the cache (see {@link #loadAny(File)}).
+ * <br>
+ * File layout (little-endian): 
+ * <ol>
+ * <li>File header: magic number <tt>"GTSC"</tt>, version, source path, 
+ * source size, source modification time, number of objects</li>
+ * <li>For each object: content hash, object header (type, name, geological information, 
+ * element counts, colors, property definitions, statistics, number of 
+ * vertices and triangles), vertex block
+ * (<i>x</i>, <i>y</i>, <i>z</i> as <tt>double</tt> for each vertex) and 
+ * index block (three <tt>int</tt> vertex indices for each triangle), 
+ * followed by the number of vertex properties and, for each property, its 
+ * name and value block (one <tt>double</tt> for each vertex), and by the 
+ * patch starts, border stones and borders (each given as count and 
+ * <tt>int</tt> block). For 
+ * objects without TIN geometry, the number of vertices is set to -1 and 
+ * the blocks are omitted.</li>
+ * </ol>
+ * The vertex and index blocks are loaded through memory-mapped buffers.
+ */
+class GocadTSurfCache 
+{
+	private static final int MAGIC = 0x47545343; // "GTSC"
+	private static final int VERSION = 7;
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int MAX_BLOCK_ELEMS = 1 << 27; // max. mapped elements
+
+	List<GocadDataInfo> info = new ArrayList<GocadDataInfo>();
+	List<GmSimpleTINFeature> tins = new ArrayList<GmSimpleTINFeature>();
+	// Content hashes and TINs (null for non-TSurf objects) for each info:
+	List<Long> hashes = new ArrayList<Long>();
+	List<GmSimpleTINFeature> objectTins = new ArrayList<GmSimpleTINFeature>();
+	// false, if the GOCAD file has been modified after writing the cache: 
+	boolean valid; 
+
+	/**
+	 * gets the cache file belonging to the given GOCAD file.
+	 * 
+	 * @param gocadFile GOCAD file
+	 * @return Cache file
+	 */
+	public static File cacheFile(File gocadFile) {
+		return new File(gocadFile.getPath() + ".gtsc");
+	}
+
+	/**
+	 * loads the cached content of the given GOCAD file.
+	 * 
+	 * @param gocadFile GOCAD file
+	 * @return Cache content, or <i>null</i> if no valid cache exists
+	 */
+	public static GocadTSurfCache load(File gocadFile) 
+	{
+		GocadTSurfCache res = loadAny(gocadFile);
+		return (res != null && res.valid) ? res : null;
+	}
+
+	/**
+	 * loads the cached content of the given GOCAD file, even if the GOCAD 
+	 * file has been modified after writing the cache (see field 
+	 * <tt>valid</tt>). In this case, the cached objects can be identified by 
+	 * their content hashes (see {@link #contentHash(FileChannel, long, long)}).
+	 * 
+	 * @param gocadFile GOCAD file
+	 * @return Cache content, or <i>null</i> if no readable cache exists for 
+	 * the given file path
+	 */
+	public static GocadTSurfCache loadAny(File gocadFile) 
+	{
+		File f = cacheFile(gocadFile);
+		if (!f.isFile())
+			return null;
+		try {
+			FileChannel ch = FileChannel.open(f.toPath());
+			try {
+				return read(ch, gocadFile);
+			}
+			finally {
+				ch.close();
+			}
+		}
+		catch (IOException e) {
+			return null; // corrupt cache, will be re-written
+		}
+		catch (RuntimeException e) {
+			return null; // dto.
+		}
+	}
+
+	/**
+	 * writes the cache for the given GOCAD file. The TINs are assigned to 
+	 * the TSurf objects given in the information list in file order.
+	 * 
+	 * @param gocadFile GOCAD file
+	 * @param info Information objects
+	 * @param tins TINs
+	 * @param hashes Content hashes for each information object
+	 * @return <i>false</i>, if the cache could not be written (e.g., in case 
+	 * of missing write permissions)
+	 */
+	public static boolean save(
+		File gocadFile, List<GocadDataInfo> info, List<GmSimpleTINFeature> tins, 
+		long[] hashes) 
+	{
+		if (hashes.length != info.size())
+			return false;
+		File f = cacheFile(gocadFile), tmp = null;
+		try {
+			// Each writer uses a temporary file of its own:
+			tmp = File.createTempFile(
+				f.getName() + ".", ".tmp", f.getAbsoluteFile().getParentFile());
+			FileChannel ch = FileChannel.open(tmp.toPath(), 
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				write(ch, gocadFile, info, tins, hashes);
+			}
+			finally {
+				ch.close();
+			}
+			// Concurrent readers never see a partially written cache:
+			Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		}
+		catch (IOException e) {
+			if (tmp != null)
+				tmp.delete();
+			return false;
+		}
+		catch (ClassCastException e) {
+			tmp.delete();
+			return false; // geometries not generated by IoGocadTSurfReader
+		}
+	}
+
+	/**
+	 * computes a 64 bit content hash of the given byte range (consisting of 
+	 * a CRC-32 and an Adler-32 checksum). Trailing blanks and line breaks 
+	 * will be ignored.
+	 * 
+	 * @param ch GOCAD file channel
+	 * @param from Start position
+	 * @param to End position (exclusive)
+	 * @return Content hash
+	 * @throws IOException
+	 */
+	public static long contentHash(FileChannel ch, long from, long to) 
+		throws IOException
+	{
+		ByteBuffer last = ByteBuffer.allocate(1);
+		while (to > from) {
+			last.clear();
+			if (ch.read(last, to - 1) < 1)
+				break;
+			byte c = last.get(0);
+			if (c != ' ' && c != '\t' && c != '\r' && c != '\n')
+				break;
+			to--;
+		}
+
+		CRC32 crc = new CRC32();
+		Adler32 adler = new Adler32();
+		for (long pos = from; pos < to; ) {
+			long len = Math.min(to - pos, 1L << 30);
+			ByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+			crc.update(b.duplicate());
+			adler.update(b);
+			pos += len;
+		}
+		return (crc.getValue() << 32) | adler.getValue();
+	}
+
+	// Private helpers:
+
+	private static GocadTSurfCache read(FileChannel ch, File gocadFile) 
+		throws IOException
+	{
+		Header h = new Header(ch);
+		if (h.getInt() != MAGIC || h.getInt() != VERSION)
+			return null;
+		if (!gocadFile.getAbsolutePath().equals(h.getString()))
+			return null;
+
+		GocadTSurfCache res = new GocadTSurfCache();
+		res.valid = // note that both values have to be read
+			h.getLong() == gocadFile.length() & 
+			h.getLong() == gocadFile.lastModified();
+		int n = h.getInt();
+		for (int i = 0; i < n; i++) {
+			res.hashes.add(h.getLong());
+			GocadDataInfo lInfo = new GocadDataInfo();
+			lInfo.setObjectType(h.getString());
+			lInfo.setObjectName(h.getString());
+			lInfo.setGeologicalType(h.getString());
+			lInfo.setGeologicalFeature(h.getString());
+			lInfo.setStratigraphicPosition(h.getString());
+			lInfo.setCounts(
+				h.getLong(), h.getLong(), h.getLong(), 
+				h.getLong(), h.getLong(), h.getLong());
+			lInfo.setSegCount(h.getLong());
+			lInfo.setColors(h.getColor(), h.getColor());
+			int nNames = h.getInt();
+			if (nNames >= 0) {
+				String[] names = new String[nNames];
+				int[] sizes = new int[nNames];
+				double[] noData = new double[nNames];
+				for (int j = 0; j < nNames; j++) {
+					names[j] = h.getString();
+					sizes[j] = h.getInt();
+					noData[j] = h.getDouble();
+				}
+				lInfo.setPropertyNames(names);
+				lInfo.setPropertySizes(sizes);
+				lInfo.setNoDataValues(noData);
+			}
+			if (h.getInt() != 0) {
+				double[] state = new double[13];
+				for (int k = 0; k < state.length; k++)
+					state[k] = h.getDouble();
+				long[] bins = new long[GocadObjectStatistics.NUMBER_OF_BINS];
+				for (int k = 0; k < bins.length; k++)
+					bins[k] = h.getLong();
+				GocadObjectStatistics stats = new GocadObjectStatistics();
+				stats.setState(state, bins);
+				lInfo.setStatistics(stats);
+			}
+			res.info.add(lInfo);
+
+			int nPoints = h.getInt(), nTriangles = h.getInt();
+			if (nPoints < 0) {
+				res.objectTins.add(null);
+				continue;
+			}
+			long pos = h.position();
+			double[] xyz = new double[3 * nPoints];
+			pos = readDoubles(ch, pos, xyz);
+			int[] indices = new int[3 * nTriangles];
+			pos = readInts(ch, pos, indices);
+			h.seek(pos);
+			GmCompactTINGeometry geom = new GmCompactTINGeometry(xyz, indices);
+
+			int nProps = h.getInt();
+			for (int j = 0; j < nProps; j++) {
+				String name = h.getString();
+				double[] values = new double[nPoints];
+				h.seek(readDoubles(ch, h.position(), values));
+				geom.addPropertyColumn(name, values);
+			}
+
+			int[] patchStarts = new int[h.getInt()];
+			h.seek(readInts(ch, h.position(), patchStarts));
+			geom.setPatchStarts(patchStarts);
+			int[] bstones = new int[h.getInt()];
+			h.seek(readInts(ch, h.position(), bstones));
+			for (int b = 0; b < bstones.length; b++)
+				geom.addBstone(bstones[b]);
+			int[] borders = new int[2 * h.getInt()];
+			h.seek(readInts(ch, h.position(), borders));
+			for (int b = 0; b < borders.length; b += 2)
+				geom.addBorder(borders[b], borders[b + 1]);
+
+			GmSimpleTINFeature tin = new GmSimpleTINFeature();
+			tin.setGeometry(geom);
+			res.tins.add(tin);
+			res.objectTins.add(tin);
+		}
+		return res;
+	}
+
+	private static void write(
+		FileChannel ch, File gocadFile, 
+		List<GocadDataInfo> info, List<GmSimpleTINFeature> tins, long[] hashes) 
+		throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+
+		buf.putInt(MAGIC);
+		buf.putInt(VERSION);
+		putString(ch, buf, gocadFile.getAbsolutePath());
+		buf.putLong(gocadFile.length());
+		buf.putLong(gocadFile.lastModified());
+		buf.putInt(info.size());
+
+		int iTin = 0, i = 0;
+		for (GocadDataInfo lInfo : info) {
+			ensure(ch, buf, 8);
+			buf.putLong(hashes[i++]);
+			putString(ch, buf, lInfo.getObjectType());
+			putString(ch, buf, lInfo.getObjectName());
+			putString(ch, buf, lInfo.getGeologicalType());
+			putString(ch, buf, lInfo.getGeologicalFeature());
+			putString(ch, buf, lInfo.getStratigraphicPosition());
+			ensure(ch, buf, 256);
+			buf.putLong(lInfo.getVrtxCount());
+			buf.putLong(lInfo.getPvrtxCount());
+			buf.putLong(lInfo.getTrglCount());
+			buf.putLong(lInfo.getAtomCount());
+			buf.putLong(lInfo.getBorderCount());
+			buf.putLong(lInfo.getBstoneCount());
+			buf.putLong(lInfo.getSegCount());
+			putColor(buf, lInfo.getSolidColor());
+			putColor(buf, lInfo.getBorderColor());
+			putPropertyHeader(ch, buf, lInfo);
+			putStatistics(ch, buf, lInfo.getStatistics());
+
+			ensure(ch, buf, 8);
+			if (!"TSurf".equalsIgnoreCase(lInfo.getObjectType()) || iTin >= tins.size()) {
+				buf.putInt(-1);
+				buf.putInt(0);
+				continue;
+			}
+			GmCompactTINGeometry geom = 
+				(GmCompactTINGeometry) tins.get(iTin++).getGeometry();
+			int nPoints = geom.numberOfPoints(), nTriangles = geom.numberOfTriangles();
+			buf.putInt(nPoints);
+			buf.putInt(nTriangles);
+
+			putDoubles(ch, buf, geom.getCoordinateArray(), 3 * nPoints);
+			putInts(ch, buf, geom.getIndexArray(), 3 * nTriangles);
+
+			ensure(ch, buf, 4);
+			buf.putInt(geom.numberOfProperties());
+			for (int j = 0; j < geom.numberOfProperties(); j++) {
+				putString(ch, buf, geom.getPropertyName(j));
+				putDoubles(ch, buf, geom.getPropertyColumn(j), nPoints);
+			}
+
+			int nPatches = geom.numberOfPatches();
+			int[] patchStarts = new int[nPatches];
+			for (int p = 0; p < nPatches; p++)
+				patchStarts[p] = geom.getPatchStart(p);
+			ensure(ch, buf, 4);
+			buf.putInt(nPatches);
+			putInts(ch, buf, patchStarts, nPatches);
+			ensure(ch, buf, 4);
+			buf.putInt(geom.numberOfBstones());
+			putInts(ch, buf, geom.getBstoneArray(), geom.numberOfBstones());
+			ensure(ch, buf, 4);
+			buf.putInt(geom.numberOfBorders());
+			putInts(ch, buf, geom.getBorderArray(), 2 * geom.numberOfBorders());
+		}
+		flush(ch, buf);
+	}
+
+	private static long readDoubles(FileChannel ch, long pos, double[] dst) 
+		throws IOException
+	{
+		for (int k = 0; k < dst.length; ) {
+			int len = Math.min(dst.length - k, MAX_BLOCK_ELEMS);
+			ch.map(FileChannel.MapMode.READ_ONLY, pos, 8L * len)
+				.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(dst, k, len);
+			pos += 8L * len;
+			k += len;
+		}
+		return pos;
+	}
+
+	private static long readInts(FileChannel ch, long pos, int[] dst) 
+		throws IOException
+	{
+		for (int k = 0; k < dst.length; ) {
+			int len = Math.min(dst.length - k, MAX_BLOCK_ELEMS);
+			ch.map(FileChannel.MapMode.READ_ONLY, pos, 4L * len)
+				.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(dst, k, len);
+			pos += 4L * len;
+			k += len;
+		}
+		return pos;
+	}
+
+	private static void putDoubles(FileChannel ch, ByteBuffer buf, double[] src, int n) 
+		throws IOException
+	{
+		for (int k = 0; k < n; ) {
+			ensure(ch, buf, 8);
+			int len = Math.min(n - k, buf.remaining() / 8);
+			buf.asDoubleBuffer().put(src, k, len);
+			buf.position(buf.position() + 8 * len);
+			k += len;
+		}
+	}
+
+	private static void putInts(FileChannel ch, ByteBuffer buf, int[] src, int n) 
+		throws IOException
+	{
+		for (int k = 0; k < n; ) {
+			ensure(ch, buf, 4);
+			int len = Math.min(n - k, buf.remaining() / 4);
+			buf.asIntBuffer().put(src, k, len);
+			buf.position(buf.position() + 4 * len);
+			k += len;
+		}
+	}
+
+	private static void putPropertyHeader(FileChannel ch, ByteBuffer buf, GocadDataInfo lInfo) 
+		throws IOException
+	{
+		String[] names = lInfo.getPropertyNames();
+		int[] sizes = lInfo.getPropertySizes();
+		double[] noData = lInfo.getNoDataValues();
+		ensure(ch, buf, 4);
+		buf.putInt(names == null ? -1 : names.length);
+		for (int j = 0; names != null && j < names.length; j++) {
+			putString(ch, buf, names[j]);
+			ensure(ch, buf, 12);
+			buf.putInt((sizes != null && j < sizes.length) ? sizes[j] : 1);
+			buf.putDouble((noData != null && j < noData.length) ? noData[j] : Double.NaN);
+		}
+	}
+
+	private static void putStatistics(FileChannel ch, ByteBuffer buf, GocadObjectStatistics stats) 
+		throws IOException
+	{
+		ensure(ch, buf, 4 + 13 * 8 + 8 * GocadObjectStatistics.NUMBER_OF_BINS);
+		buf.putInt(stats == null ? 0 : 1);
+		if (stats == null)
+			return;
+		for (double v : stats.getState())
+			buf.putDouble(v);
+		for (long n : stats.getZHistogram())
+			buf.putLong(n);
+	}
+
+	private static void putString(FileChannel ch, ByteBuffer buf, String s) 
+		throws IOException
+	{
+		if (s == null) {
+			ensure(ch, buf, 4);
+			buf.putInt(-1);
+			return;
+		}
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		if (b.length > BUFFER_SIZE - 4)
+			throw new IOException("String too long: " + b.length + " bytes");
+		ensure(ch, buf, 4 + b.length);
+		buf.putInt(b.length);
+		buf.put(b);
+	}
+
+	private static void putColor(ByteBuffer buf, T3dColor col) {
+		buf.put((byte) (col == null ? 0 : 1));
+		if (col != null) {
+			buf.putFloat(col.getRed());
+			buf.putFloat(col.getGreen());
+			buf.putFloat(col.getBlue());
+			buf.putFloat(col.getAlpha());
+		}
+	}
+
+	private static void ensure(FileChannel ch, ByteBuffer buf, int n) throws IOException {
+		if (buf.remaining() < n)
+			flush(ch, buf);
+	}
+
+	private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining())
+			ch.write(buf);
+		buf.clear();
+	}
+
+	// Reader for the header sections located between the mapped blocks: 
+	private static class Header 
+	{
+		private FileChannel ch;
+		private ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+		private long bufPos = 0; // file position of buf's first byte
+
+		Header(FileChannel ch) throws IOException {
+			this.ch = ch;
+			this.seek(0);
+		}
+
+		long position() {
+			return bufPos + buf.position();
+		}
+
+		void seek(long pos) throws IOException {
+			buf.clear();
+			bufPos = pos;
+			while (buf.hasRemaining() && ch.read(buf, pos + buf.position()) > 0);
+			buf.flip();
+			buf.order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		private void require(int n) throws IOException {
+			if (buf.remaining() < n) {
+				long pos = this.position(); // before buf will be replaced
+				if (n > buf.capacity())
+					buf = ByteBuffer.allocate(n);
+				this.seek(pos);
+				if (buf.remaining() < n)
+					throw new IOException("Unexpected end of cache file");
+			}
+		}
+
+		int getInt() throws IOException {
+			this.require(4);
+			return buf.getInt();
+		}
+
+		long getLong() throws IOException {
+			this.require(8);
+			return buf.getLong();
+		}
+
+		double getDouble() throws IOException {
+			this.require(8);
+			return buf.getDouble();
+		}
+
+		String getString() throws IOException {
+			int len = this.getInt();
+			if (len < 0)
+				return null;
+			this.require(len);
+			byte[] b = new byte[len];
+			buf.get(b);
+			return new String(b, StandardCharsets.UTF_8);
+		}
+
+		T3dColor getColor() throws IOException {
+			this.require(1);
+			if (buf.get() == 0)
+				return null;
+			this.require(16);
+			T3dColor col = new T3dColor();
+			col.setRGBA(buf.getFloat(), buf.getFloat(), buf.getFloat(), buf.getFloat());
+			return col;
+		}
+	}
+}
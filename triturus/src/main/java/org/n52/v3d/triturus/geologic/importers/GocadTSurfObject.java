@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature;
+
+/**
+ * TSurf object imported from a GOCAD file, i.e. the TIN together with the 
+ * object information given in the file header. Instances are delivered by 
+ * the import methods of {@link IoGocadTSurfReader} (e.g. 
+ * {@link IoGocadTSurfReader#readObjects(String, GocadReadOptions)}).
+ */
+public class GocadTSurfObject 
+{
+	private GocadDataInfo info;
+	private GmSimpleTINFeature tin;
+
+	public GocadTSurfObject(GocadDataInfo info, GmSimpleTINFeature tin) {
+		this.info = info;
+		this.tin = tin;
+	}
+
+	/**
+	 * gets the object information.
+	 * 
+	 * @return Object information
+	 */
+	public GocadDataInfo getInfo() {
+		return info;
+	}
+
+	/**
+	 * gets the object's TIN.
+	 * 
+	 * @return TIN
+	 */
+	public GmSimpleTINFeature getTIN() {
+		return tin;
+	}
+}
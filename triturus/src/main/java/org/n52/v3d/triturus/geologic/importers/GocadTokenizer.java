@@ -0,0 +1,443 @@
+/**
+ * Copyright (C) 2018 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Line-oriented tokenizer for GOCAD ASCII data working on raw bytes. For
+ * local files, the data will be accessed through a memory-mapped
+ * {@link FileChannel} (mapped window by window, so that files exceeding 2 GB
+ * are supported, too); other sources will be read through a buffered
+ * channel. Keywords are matched and numbers are parsed directly from the
+ * buffer, i.e. no <tt>String</tt> objects will be allocated for VRTX, PVRTX,
+ * ATOM or TRGL lines.
+ * <br>
+ * Tokens are separated by blanks or tabs. As for the former
+ * <tt>getStrTok()</tt> helpers, token numbers start with 1.
+ */
+class GocadTokenizer implements Closeable
+{
+	private static final int
+		MAPPED_WINDOW_SIZE = 64 * 1024 * 1024,
+		STREAM_BUFFER_SIZE = 1024 * 1024;
+
+	private static final double[] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private final int windowSize; // mapped window or initial buffer size
+	private FileChannel fileChannel; // set for memory-mapped files only
+	private boolean ownChannel = true;
+	private ReadableByteChannel streamChannel; // set for other sources only
+	private long endPos; // end of the file section to be read
+	private long windowPos = 0; // input position of the current buffer start
+	private boolean eof = false;
+
+	private ByteBuffer buf;
+	private int lineStart, lineEnd, next;
+
+	private int[] tokStart = new int[16], tokEnd = new int[16];
+	private int ctTokens = -1; // -1: current line has not been tokenized yet
+
+	/**
+	 * Constructor. The given file will be memory-mapped.
+	 *
+	 * @param channel Channel of the file to be read
+	 * @throws IOException if the file could not be mapped
+	 */
+	public GocadTokenizer(FileChannel channel) throws IOException {
+		this(channel, 0, channel.size(), true);
+	}
+
+	/**
+	 * Constructor. The given section of the file will be memory-mapped.
+	 * Multiple tokenizers may share a single channel, e.g. to read 
+	 * different sections of a file concurrently.
+	 *
+	 * @param channel Channel of the file to be read
+	 * @param from Start position inside the file (should be a line start)
+	 * @param to End position inside the file (exclusive)
+	 * @param ownChannel <i>true</i>, if {@link #close()} shall close the 
+	 * given channel
+	 * @throws IOException if the file could not be mapped
+	 */
+	public GocadTokenizer(FileChannel channel, long from, long to, boolean ownChannel) 
+		throws IOException 
+	{
+		this(channel, from, to, ownChannel, MAPPED_WINDOW_SIZE);
+	}
+
+	// Constructor with a custom window size (used for testing):
+	GocadTokenizer(
+		FileChannel channel, long from, long to, boolean ownChannel, int windowSize) 
+		throws IOException 
+	{
+		this.windowSize = windowSize;
+		fileChannel = channel;
+		this.ownChannel = ownChannel;
+		endPos = to;
+		this.mapWindow(from);
+	}
+
+	/**
+	 * Constructor. The given input stream will be read through a buffer.
+	 *
+	 * @param is Input stream
+	 */
+	public GocadTokenizer(InputStream is) {
+		this(is, STREAM_BUFFER_SIZE);
+	}
+
+	// Constructor with a custom initial buffer size (used for testing):
+	GocadTokenizer(InputStream is, int bufferSize) {
+		windowSize = bufferSize;
+		streamChannel = Channels.newChannel(is);
+		buf = ByteBuffer.allocate(bufferSize);
+		buf.limit(0);
+	}
+
+	/**
+	 * advances to the next line.
+	 *
+	 * @return <i>false</i>, if the end of the input has been reached
+	 * @throws IOException if an I/O error occurs
+	 */
+	public boolean nextLine() throws IOException
+	{
+		int i = next;
+		while (true) {
+			int lim = buf.limit();
+			while (i < lim && buf.get(i) != '\n')
+				i++;
+			if (i < lim)
+				break; // found line end
+			if (eof) {
+				if (next >= lim) {
+					ctTokens = 0;
+					return false;
+				}
+				break; // last line without line-feed
+			}
+			// The current line exceeds the buffer, so continue with the next
+			// window (or buffer content) starting at the current line:
+			int offset = i - next;
+			this.refill();
+			i = next + offset;
+		}
+
+		lineStart = next;
+		lineEnd = i;
+		next = (i < buf.limit()) ? i + 1 : i;
+		if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r')
+			lineEnd--;
+		ctTokens = -1; // tokenization will be done on demand
+		return true;
+	}
+
+	/**
+	 * gets the input position of the current line's first byte, i.e. the 
+	 * file position for memory-mapped files.
+	 *
+	 * @return Input position
+	 */
+	public long linePosition() {
+		return windowPos + lineStart;
+	}
+
+	/**
+	 * gets the number of tokens in the current line.
+	 *
+	 * @return Number of tokens
+	 */
+	public int numberOfTokens() {
+		this.tokenize();
+		return ctTokens;
+	}
+
+	/**
+	 * checks if the i-th token of the current line matches the given keyword.
+	 * The comparison will be performed case-insensitive.
+	 *
+	 * @param i Token number (i &gt;= 1)
+	 * @param keyword Keyword consisting of ASCII characters
+	 * @return <i>true</i>, if the token matches
+	 */
+	public boolean tokenEquals(int i, String keyword)
+	{
+		this.tokenize();
+		if (i > ctTokens)
+			return false;
+		int s = tokStart[i - 1], len = tokEnd[i - 1] - s;
+		if (len != keyword.length())
+			return false;
+		for (int k = 0; k < len; k++) {
+			int c1 = buf.get(s + k), c2 = keyword.charAt(k);
+			if (c1 != c2 && toUpper(c1) != toUpper(c2))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * gets the i-th token of the current line as <tt>String</tt>.
+	 *
+	 * @param i Token number (i &gt;= 1)
+	 * @return Token
+	 * @throws T3dException if there is no such token
+	 */
+	public String stringToken(int i) throws T3dException {
+		this.checkToken(i);
+		return this.string(tokStart[i - 1], tokEnd[i - 1]);
+	}
+
+	/**
+	 * gets the current line as <tt>String</tt>.
+	 *
+	 * @return Line content (without line-feed)
+	 */
+	public String line() {
+		return this.string(lineStart, lineEnd);
+	}
+
+	/**
+	 * parses the i-th token of the current line as integer number.
+	 *
+	 * @param i Token number (i &gt;= 1)
+	 * @return Parsed value
+	 * @throws T3dException if there is no such token
+	 * @throws NumberFormatException if the token is not an integer number
+	 */
+	public long longToken(int i) throws T3dException
+	{
+		this.checkToken(i);
+		int p = tokStart[i - 1], end = tokEnd[i - 1];
+		boolean neg = false;
+		byte c = buf.get(p);
+		if (c == '-' || c == '+') {
+			neg = (c == '-');
+			p++;
+		}
+		if (p >= end || end - p > 18)
+			return Long.parseLong(this.stringToken(i));
+		long val = 0;
+		for (; p < end; p++) {
+			int d = buf.get(p) - '0';
+			if (d < 0 || d > 9)
+				throw new NumberFormatException(
+					"For input string: \"" + this.stringToken(i) + "\"");
+			val = 10 * val + d;
+		}
+		return neg ? -val : val;
+	}
+
+	/**
+	 * parses the i-th token of the current line as floating-point number.
+	 * The result is identical to <tt>Double.parseDouble()</tt>; for numbers
+	 * with up to 15 significant digits, no objects will be allocated.
+	 *
+	 * @param i Token number (i &gt;= 1)
+	 * @return Parsed value
+	 * @throws T3dException if there is no such token
+	 * @throws NumberFormatException if the token is not a number
+	 */
+	public double doubleToken(int i) throws T3dException
+	{
+		this.checkToken(i);
+		int p = tokStart[i - 1], end = tokEnd[i - 1];
+
+		boolean neg = false;
+		byte c = buf.get(p);
+		if (c == '-' || c == '+') {
+			neg = (c == '-');
+			p++;
+		}
+		long mant = 0;
+		int nDigits = 0, exp = 0;
+		boolean digits = false;
+		// integer part:
+		while (p < end && (c = buf.get(p)) >= '0' && c <= '9') {
+			digits = true;
+			if (nDigits > 0 || c != '0') {
+				if (nDigits < 18) mant = 10 * mant + (c - '0'); else exp++;
+				nDigits++;
+			}
+			p++;
+		}
+		// fractional part:
+		if (p < end && buf.get(p) == '.') {
+			p++;
+			while (p < end && (c = buf.get(p)) >= '0' && c <= '9') {
+				digits = true;
+				if (nDigits > 0 || c != '0') {
+					if (nDigits < 18) { mant = 10 * mant + (c - '0'); exp--; }
+					nDigits++;
+				} else
+					exp--;
+				p++;
+			}
+		}
+		// exponent:
+		if (digits && p < end && ((c = buf.get(p)) == 'e' || c == 'E')) {
+			p++;
+			boolean expNeg = false;
+			if (p < end && ((c = buf.get(p)) == '-' || c == '+')) {
+				expNeg = (c == '-');
+				p++;
+			}
+			int e = 0;
+			boolean expDigits = false;
+			while (p < end && (c = buf.get(p)) >= '0' && c <= '9') {
+				expDigits = true;
+				if (e < 10000) e = 10 * e + (c - '0');
+				p++;
+			}
+			if (!expDigits)
+				digits = false;
+			exp += expNeg ? -e : e;
+		}
+
+		if (!digits || p != end || nDigits > 15 || exp < -22 || exp > 22) {
+			// Not covered by the exact fast path, e.g. "NaN", long mantissas
+			// or large exponents:
+			return Double.parseDouble(this.stringToken(i));
+		}
+		double val = (double) mant;
+		val = (exp < 0) ? val / POW10[-exp] : val * POW10[exp];
+		return neg ? -val : val;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (fileChannel != null && ownChannel)
+			fileChannel.close();
+		if (streamChannel != null)
+			streamChannel.close();
+	}
+
+	// Private helpers:
+
+	private void tokenize()
+	{
+		if (ctTokens >= 0)
+			return; // already done
+		ctTokens = 0;
+		int i = lineStart;
+		while (i < lineEnd) {
+			while (i < lineEnd && isSeparator(buf.get(i)))
+				i++;
+			if (i >= lineEnd)
+				break;
+			if (ctTokens >= tokStart.length) {
+				int[] s = new int[2 * ctTokens], e = new int[2 * ctTokens];
+				System.arraycopy(tokStart, 0, s, 0, ctTokens);
+				System.arraycopy(tokEnd, 0, e, 0, ctTokens);
+				tokStart = s;
+				tokEnd = e;
+			}
+			tokStart[ctTokens] = i;
+			while (i < lineEnd && !isSeparator(buf.get(i)))
+				i++;
+			tokEnd[ctTokens] = i;
+			ctTokens++;
+		}
+	}
+
+	private void refill() throws IOException
+	{
+		if (fileChannel != null) {
+			long pos = windowPos + next;
+			if (pos == windowPos && buf.limit() >= windowSize)
+				throw new T3dException(
+					"GOCAD line exceeds " + windowSize + " bytes.");
+			this.mapWindow(pos);
+		}
+		else {
+			windowPos += next;
+			buf.position(next);
+			buf.compact(); // moves the remaining bytes to the buffer start
+			if (!buf.hasRemaining()) {
+				// Line does not fit into the buffer, so grow it:
+				ByteBuffer b = ByteBuffer.allocate(2 * buf.capacity());
+				buf.flip();
+				b.put(buf);
+				buf = b;
+			}
+			int n = 0;
+			while (n == 0)
+				n = streamChannel.read(buf);
+			if (n < 0)
+				eof = true;
+			buf.flip();
+			next = 0;
+		}
+	}
+
+	private void mapWindow(long pos) throws IOException {
+		long size = Math.min(windowSize, endPos - pos);
+		buf = fileChannel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+		windowPos = pos;
+		next = 0;
+		eof = (pos + size >= endPos);
+	}
+
+	private void checkToken(int i) {
+		this.tokenize();
+		if (i < 1 || i > ctTokens)
+			throw new T3dException("Logical parser error.");
+	}
+
+	private String string(int from, int to) {
+		byte[] b = new byte[to - from];
+		for (int k = 0; k < b.length; k++)
+			b[k] = buf.get(from + k);
+		return new String(b);
+	}
+
+	private static boolean isSeparator(byte c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private static int toUpper(int c) {
+		return (c >= 'a' && c <= 'z') ? c - 32 : c;
+	}
+}
@@ -0,0 +1,395 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.geologic.data.GmCompactTINGeometry;
+
+/**
+ * Simplifies a triangulated surface by vertex clustering while the 
+ * vertices and triangles are streamed in, i.e. without holding the full 
+ * resolution TIN in memory. The vertices are clustered on a regular 3-D grid;
+ * each cluster is represented by the mean position of its vertices, and 
+ * triangles degenerating to a line or a point are removed.
+ * <br>
+ * The grid's cell size is chosen adaptively: As long as the number of 
+ * vertices does not exceed the cluster budget, each vertex forms a cluster 
+ * of its own. Then, the cell size is derived from the extent of the 
+ * vertices read so far and doubled whenever the number of clusters exceeds 
+ * the budget. Since doubling the cell size merges exactly 2 x 2 x 2 cells, 
+ * the clusters can be merged without revisiting the input.
+ */
+class GocadVertexClustering 
+{
+	private static final int BITS = 21; // bits per cell coordinate
+	private static final int MAX_CELL = 1 << (BITS - 1);
+	private static final long CELL_MASK = (1L << BITS) - 1;
+	private static final long FREE = -1L;
+
+	private int maxTriangles, maxClusters;
+	private double cellSize = 0.; // 0 until the grid is set up
+	private double x0, y0, z0; // grid origin
+
+	// Clusters:
+	private double[] sumX, sumY, sumZ;
+	private int[] count;
+	private int nClusters = 0;
+
+	// Vertices (cluster of each vertex):
+	private int[] vertexCluster = new int[1024];
+	private int nVertices = 0;
+
+	// Cell table (cell key -> cluster), open addressing:
+	private long[] cellKeys;
+	private int[] cellValues;
+	private int cellMask;
+
+	// Triangles, encoded as cluster index triples:
+	private long[] triangles = new long[1024];
+	private int nTriangles = 0, nTrianglesUnique = 0;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxTriangles Target number of triangles
+	 * @throws T3dException if the given triangle budget is not positive
+	 */
+	public GocadVertexClustering(int maxTriangles) throws T3dException
+	{
+		if (maxTriangles < 1)
+			throw new T3dException("Illegal triangle budget: " + maxTriangles);
+		this.maxTriangles = maxTriangles;
+		// a regular triangulation has about twice as many triangles as 
+		// vertices; note that cluster indices have to fit into BITS bits:
+		maxClusters = Math.min(Math.max(maxTriangles / 2, 4), MAX_CELL - 1);
+		this.allocateClusters(Math.min(maxClusters + 1, 1024));
+	}
+
+	/**
+	 * adds a vertex.
+	 * 
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param z z-coordinate
+	 * @return Vertex index
+	 */
+	public int addVertex(double x, double y, double z) 
+	{
+		int c;
+		if (cellSize == 0.)
+			c = this.newCluster();
+		else {
+			long key = this.cellKey(x, y, z, cellSize);
+			while (key == FREE) {
+				this.regrid(2. * cellSize);
+				key = this.cellKey(x, y, z, cellSize);
+			}
+			c = this.getCluster(key);
+			if (c < 0) {
+				c = this.newCluster();
+				this.putCluster(key, c);
+			}
+		}
+		sumX[c] += x;
+		sumY[c] += y;
+		sumZ[c] += z;
+		count[c]++;
+
+		if (nVertices >= vertexCluster.length)
+			vertexCluster = Arrays.copyOf(vertexCluster, 2 * vertexCluster.length);
+		vertexCluster[nVertices] = c;
+		nVertices++;
+		
+		if (nClusters > maxClusters) {
+			if (cellSize == 0.)
+				this.setUpGrid();
+			else
+				this.regrid(2. * cellSize);
+		}
+		return nVertices - 1;
+	}
+
+	/**
+	 * adds a triangle. 
+	 * 
+	 * @param a Index of first vertex as returned by {@link #addVertex(double, double, double)}
+	 * @param b Index of second vertex
+	 * @param c Index of third vertex
+	 */
+	public void addTriangle(int a, int b, int c) 
+	{
+		long key = triangleKey(
+			vertexCluster[a], vertexCluster[b], vertexCluster[c]);
+		if (key == FREE)
+			return; // degenerated triangle
+		if (nTriangles >= triangles.length) {
+			this.removeDuplicates();
+			if (2 * nTriangles > triangles.length)
+				triangles = Arrays.copyOf(triangles, 2 * triangles.length);
+		}
+		triangles[nTriangles++] = key;
+	}
+
+	/**
+	 * gets the simplified TIN. 
+	 * 
+	 * @return TIN geometry holding at most the given number of triangles
+	 */
+	public GmCompactTINGeometry getGeometry() 
+	{
+		this.removeDuplicates();
+		if (nTriangles > maxTriangles && cellSize == 0.) 
+			this.setUpGrid();
+		while (nTriangles > maxTriangles) {
+			// smaller steps here to make use of the triangle budget:
+			this.regrid(Math.sqrt(2.) * cellSize);
+			this.removeDuplicates();
+		}
+
+		// Renumber the clusters referred to by the triangles:
+		int[] index = new int[nClusters];
+		Arrays.fill(index, -1);
+		int nPoints = 0;
+		for (int k = 0; k < nTriangles; k++) {
+			for (int j = 0; j < 3; j++) {
+				int c = (int) (triangles[k] >>> (BITS * j) & CELL_MASK);
+				if (index[c] < 0)
+					index[c] = nPoints++;
+			}
+		}
+		double[] xyz = new double[3 * nPoints];
+		for (int c = 0; c < nClusters; c++) {
+			if (index[c] >= 0) {
+				xyz[3 * index[c]] = sumX[c] / count[c];
+				xyz[3 * index[c] + 1] = sumY[c] / count[c];
+				xyz[3 * index[c] + 2] = sumZ[c] / count[c];
+			}
+		}
+		int[] indices = new int[3 * nTriangles];
+		for (int k = 0; k < nTriangles; k++) {
+			for (int j = 0; j < 3; j++) {
+				int c = (int) (triangles[k] >>> (BITS * (2 - j)) & CELL_MASK);
+				indices[3 * k + j] = index[c];
+			}
+		}
+		return new GmCompactTINGeometry(xyz, indices);
+	}
+
+	// Private helpers:
+
+	private void allocateClusters(int capacity) {
+		sumX = new double[capacity];
+		sumY = new double[capacity];
+		sumZ = new double[capacity];
+		count = new int[capacity];
+		nClusters = 0;
+	}
+
+	private int newCluster() {
+		if (nClusters >= count.length) {
+			int cap = 2 * count.length;
+			sumX = Arrays.copyOf(sumX, cap);
+			sumY = Arrays.copyOf(sumY, cap);
+			sumZ = Arrays.copyOf(sumZ, cap);
+			count = Arrays.copyOf(count, cap);
+		}
+		return nClusters++;
+	}
+
+	// Derives the grid from the extent of the clusters (vertices) given so 
+	// far, and merges these clusters:
+	private void setUpGrid() 
+	{
+		double 
+			xMin = Double.MAX_VALUE, xMax = -Double.MAX_VALUE,
+			yMin = Double.MAX_VALUE, yMax = -Double.MAX_VALUE,
+			zMin = Double.MAX_VALUE, zMax = -Double.MAX_VALUE;
+		for (int c = 0; c < nClusters; c++) {
+			double 
+				x = sumX[c] / count[c], y = sumY[c] / count[c], z = sumZ[c] / count[c];
+			xMin = Math.min(xMin, x); xMax = Math.max(xMax, x);
+			yMin = Math.min(yMin, y); yMax = Math.max(yMax, y);
+			zMin = Math.min(zMin, z); zMax = Math.max(zMax, z);
+		}
+		x0 = xMin; 
+		y0 = yMin; 
+		z0 = zMin;
+		
+		// The surface area is estimated by the two largest extents:
+		double[] ext = new double[] {xMax - xMin, yMax - yMin, zMax - zMin};
+		Arrays.sort(ext);
+		double size = Math.sqrt(ext[1] * ext[2] / maxClusters);
+		if (!(size > 0.))
+			size = ext[2] / maxClusters;
+		if (!(size > 0.))
+			size = 1.;
+		this.regrid(size);
+	}
+
+	// Assigns the existing clusters to a grid with the given cell size and 
+	// merges the clusters falling into the same cell; the cell size will be 
+	// doubled until the cluster budget is met:
+	private void regrid(double size)
+	{
+		while (true) {
+			int cap = Integer.highestOneBit(Math.max(4 * maxClusters, 64));
+			cellKeys = new long[cap];
+			cellValues = new int[cap];
+			Arrays.fill(cellKeys, FREE);
+			cellMask = cap - 1;
+
+			double[] oldX = sumX, oldY = sumY, oldZ = sumZ;
+			int[] oldCount = count;
+			int n = nClusters;
+			this.allocateClusters(Math.min(n, maxClusters) + 1);
+			int[] remap = new int[n];
+			boolean ok = true;
+			for (int c = 0; c < n && ok; c++) {
+				long key = this.cellKey(
+					oldX[c] / oldCount[c], oldY[c] / oldCount[c], oldZ[c] / oldCount[c], 
+					size);
+				ok = key != FREE;
+				int cNew = this.getCluster(key);
+				if (cNew < 0) {
+					cNew = this.newCluster();
+					this.putCluster(key, cNew);
+				}
+				sumX[cNew] += oldX[c];
+				sumY[cNew] += oldY[c];
+				sumZ[cNew] += oldZ[c];
+				count[cNew] += oldCount[c];
+				remap[c] = cNew;
+			}
+			if (!ok || nClusters > maxClusters) {
+				// retry with the old clusters and a coarser grid:
+				sumX = oldX; sumY = oldY; sumZ = oldZ; count = oldCount;
+				nClusters = n;
+				size *= 2.;
+				continue;
+			}
+			
+			cellSize = size;
+			for (int i = 0; i < nVertices; i++)
+				vertexCluster[i] = remap[vertexCluster[i]];
+			int m = 0;
+			for (int k = 0; k < nTriangles; k++) {
+				long t = triangles[k];
+				long key = triangleKey(
+					remap[(int) (t >>> (2 * BITS) & CELL_MASK)],
+					remap[(int) (t >>> BITS & CELL_MASK)],
+					remap[(int) (t & CELL_MASK)]);
+				if (key != FREE)
+					triangles[m++] = key;
+			}
+			nTriangles = m;
+			nTrianglesUnique = 0;
+			return;
+		}
+	}
+
+	// Removes multiple triangles (with same orientation):
+	private void removeDuplicates() 
+	{
+		if (nTrianglesUnique == nTriangles)
+			return;
+		Arrays.sort(triangles, 0, nTriangles);
+		int m = 0;
+		for (int k = 0; k < nTriangles; k++) {
+			if (m == 0 || triangles[k] != triangles[m - 1])
+				triangles[m++] = triangles[k];
+		}
+		nTriangles = nTrianglesUnique = m;
+	}
+
+	// Encodes a triangle; the vertices are rotated (keeping the orientation) 
+	// so that the smallest index comes first. Returns FREE for degenerated 
+	// triangles:
+	private static long triangleKey(int a, int b, int c) 
+	{
+		if (a == b || b == c || c == a)
+			return FREE;
+		if (b < a && b < c) {
+			int t = a; a = b; b = c; c = t;
+		}
+		else if (c < a && c < b) {
+			int t = c; c = b; b = a; a = t;
+		}
+		return ((long) a << (2 * BITS)) | ((long) b << BITS) | c;
+	}
+
+	// Gets the key of the grid cell containing the given position, or FREE 
+	// if the cell coordinates are out of range:
+	private long cellKey(double x, double y, double z, double size) 
+	{
+		double 
+			i = Math.floor((x - x0) / size), 
+			j = Math.floor((y - y0) / size), 
+			k = Math.floor((z - z0) / size);
+		if (
+			Math.abs(i) >= MAX_CELL || Math.abs(j) >= MAX_CELL || 
+			Math.abs(k) >= MAX_CELL)
+		{
+			return FREE;
+		}
+		return 
+			(((long) i & CELL_MASK) << (2 * BITS)) | 
+			(((long) j & CELL_MASK) << BITS) | 
+			((long) k & CELL_MASK);
+	}
+
+	private int getCluster(long key) {
+		for (int k = hash(key) & cellMask; ; k = (k + 1) & cellMask) {
+			if (cellKeys[k] == key)
+				return cellValues[k];
+			if (cellKeys[k] == FREE)
+				return -1;
+		}
+	}
+
+	// Note that the table holds at most maxClusters + 1 entries, i.e. it 
+	// will never be more than half full:
+	private void putCluster(long key, int c) {
+		int k = hash(key) & cellMask;
+		while (cellKeys[k] != FREE)
+			k = (k + 1) & cellMask;
+		cellKeys[k] = key;
+		cellValues[k] = c;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.util.Arrays;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Maps GOCAD vertex ids (as given for VRTX, PVRTX and ATOM elements) to 
+ * vertex indices of the resulting TIN. ATOM ids are mapped to the index of 
+ * the referenced vertex, i.e. no vertex copies are needed.
+ * <br>
+ * As long as the ids are given as 1, 2, 3, ... (which is the common case), 
+ * no hash table is needed: Without ATOMs, the vertex index is given by the 
+ * id itself; after the first ATOM, the indices are held in a plain array 
+ * indexed by id. Otherwise, an open-addressing hash table holding primitive 
+ * <tt>int</tt> keys and values (linear probing) will be used, i.e. no 
+ * objects will be created per vertex.
+ */
+class GocadVertexIdMap 
+{
+	private static final int FREE = Integer.MIN_VALUE; // no valid id
+
+	private boolean dense = true; // ids so far are 1..nDense
+	private int nDense = 0;
+	private int[] denseIndices; // index of id i at i - 1, null if identical
+	
+	private int[] keys, values;
+	private int size = 0, mask;
+
+	/**
+	 * adds a vertex.
+	 * 
+	 * @param id Vertex id as given in the GOCAD file
+	 * @param index Vertex index inside the TIN
+	 * @throws T3dException if the id has been given before
+	 */
+	public void addVertex(long id, int index) throws T3dException
+	{
+		if (dense) {
+			if (id == nDense + 1 && (index == nDense || denseIndices != null)) {
+				this.addDense(index);
+				return;
+			}
+			this.switchToTable();
+		}
+		this.put(this.toKey(id), index);
+	}
+
+	/**
+	 * adds an ATOM element, i.e. an id referring to an already given vertex.
+	 * 
+	 * @param id Vertex id as given in the GOCAD file
+	 * @param refId Id of the referenced vertex
+	 * @throws T3dException if the referenced vertex is unknown or if the id 
+	 * has been given before
+	 */
+	public void addAlias(long id, long refId) throws T3dException
+	{
+		int index = this.indexOf(refId);
+		if (dense) {
+			if (id == nDense + 1) {
+				if (denseIndices == null) {
+					denseIndices = new int[Math.max(2 * nDense, 512)];
+					for (int i = 0; i < nDense; i++)
+						denseIndices[i] = i;
+				}
+				this.addDense(index);
+				return;
+			}
+			this.switchToTable();
+		}
+		this.put(this.toKey(id), index);
+	}
+
+	/**
+	 * gets the vertex index belonging to the given id.
+	 * 
+	 * @param id Vertex id as given in the GOCAD file
+	 * @return Vertex index
+	 * @throws T3dException if the id is unknown
+	 */
+	public int indexOf(long id) throws T3dException
+	{
+		if (dense) {
+			if (id >= 1 && id <= nDense)
+				return (denseIndices == null) ? (int) id - 1 : denseIndices[(int) id - 1];
+			throw new T3dException("Undefined vertex id " + id + ".");
+		}
+		int index = this.find(this.toKey(id));
+		if (index < 0)
+			throw new T3dException("Undefined vertex id " + id + ".");
+		return index;
+	}
+
+	/**
+	 * checks if a vertex id has been given before.
+	 * 
+	 * @param id Vertex id as given in the GOCAD file
+	 * @return <i>true</i>, if the id is known
+	 */
+	public boolean contains(long id) 
+	{
+		if (dense)
+			return id >= 1 && id <= nDense;
+		if (id <= Integer.MIN_VALUE || id > Integer.MAX_VALUE)
+			return false;
+		return this.find((int) id) >= 0;
+	}
+
+	// Private helpers:
+
+	private void addDense(int index) 
+	{
+		if (denseIndices != null) {
+			if (nDense >= denseIndices.length)
+				denseIndices = Arrays.copyOf(denseIndices, 2 * denseIndices.length);
+			denseIndices[nDense] = index;
+		}
+		nDense++;
+	}
+
+	private void switchToTable() 
+	{
+		int cap = Integer.highestOneBit(Math.max(2 * nDense, 512)) << 1;
+		keys = new int[cap];
+		values = new int[cap];
+		Arrays.fill(keys, FREE);
+		mask = cap - 1;
+		dense = false;
+		for (int i = 0; i < nDense; i++)
+			this.put(i + 1, (denseIndices == null) ? i : denseIndices[i]);
+		denseIndices = null;
+	}
+
+	// Returns the index belonging to the given key, or -1 if not found:
+	private int find(int key) 
+	{
+		for (int k = hash(key) & mask; ; k = (k + 1) & mask) {
+			if (keys[k] == key)
+				return values[k];
+			if (keys[k] == FREE)
+				return -1;
+		}
+	}
+
+	private void put(int key, int value) throws T3dException
+	{
+		if (2 * (size + 1) > keys.length) 
+			this.rehash(2 * keys.length);
+		int k = hash(key) & mask;
+		while (keys[k] != FREE) {
+			if (keys[k] == key)
+				throw new T3dException("Duplicate vertex id " + key + ".");
+			k = (k + 1) & mask;
+		}
+		keys[k] = key;
+		values[k] = value;
+		size++;
+	}
+
+	private void rehash(int cap) 
+	{
+		int[] oldKeys = keys, oldValues = values;
+		keys = new int[cap];
+		values = new int[cap];
+		Arrays.fill(keys, FREE);
+		mask = cap - 1;
+		for (int k = 0; k < oldKeys.length; k++) {
+			if (oldKeys[k] != FREE) {
+				int j = hash(oldKeys[k]) & mask;
+				while (keys[j] != FREE)
+					j = (j + 1) & mask;
+				keys[j] = oldKeys[k];
+				values[j] = oldValues[k];
+			}
+		}
+	}
+
+	private int toKey(long id) throws T3dException {
+		if (id <= Integer.MIN_VALUE || id > Integer.MAX_VALUE)
+			throw new T3dException("Vertex id out of range: " + id);
+		return (int) id;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9; // Fibonacci hashing
+		return h ^ (h >>> 16);
+	}
+}
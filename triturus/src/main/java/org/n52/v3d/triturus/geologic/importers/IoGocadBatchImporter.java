@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import org.n52.v3d.triturus.core.IoObject;
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature;
+
+/**
+ * Importer to read a set of GOCAD TSurf files, e.g. all <tt>.ts</tt> files 
+ * inside a project directory. The files are read concurrently by a fixed 
+ * number of worker threads (see {@link #setNumberOfThreads(int)}), sharing 
+ * a single (thread-safe) {@link IoGocadTSurfReader}. To avoid running out of 
+ * heap space, the number of files being parsed at the same time is bounded 
+ * by a memory budget (see {@link #setMemoryBudget(long)}). 
+ * <br>
+ * Failures concerning single files do not stop the batch; they are given 
+ * in the file reports together with the per-file timings (see 
+ * {@link Result#getReports()}). Errors such as an {@link OutOfMemoryError} 
+ * abort the batch.
+ */
+public class IoGocadBatchImporter extends IoObject
+{
+	private String logInfo = IoGocadBatchImporter.class.getName();
+
+	private int nThreads = Runtime.getRuntime().availableProcessors();
+	private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+	private String fileExtension = ".ts";
+	private boolean useCache = false;
+
+	@Override
+	public String log() {
+		return logInfo;
+	}
+
+	/**
+	 * sets the number of worker threads. By default, the number of available 
+	 * processors will be used.
+	 * 
+	 * @param nThreads Number of threads; for values &lt;= 0, the number of 
+	 * available processors will be used 
+	 */
+	public void setNumberOfThreads(int nThreads) {
+		if (nThreads <= 0)
+			nThreads = Runtime.getRuntime().availableProcessors();
+		this.nThreads = nThreads;
+	}
+
+	public int getNumberOfThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * sets the memory budget for concurrent imports. The heap space needed 
+	 * to parse a file is estimated by its file size; a file will not be 
+	 * parsed before the estimates of all files being parsed at the same time 
+	 * fit into the budget. Files exceeding the budget on their own will be 
+	 * parsed exclusively. Note that the budget refers to parsing; the imported 
+	 * TINs will be kept until the batch has been completed. By default, half 
+	 * of the maximum heap size will be used. The budget only throttles the 
+	 * imports; it does not protect against running out of memory.
+	 * 
+	 * @param bytes Memory budget in bytes (at least 1024)
+	 * @throws T3dException if the budget is less than 1 KB
+	 */
+	public void setMemoryBudget(long bytes) {
+		if (bytes < 1024)
+			throw new T3dException(
+				"Illegal memory budget: " + bytes + " bytes (at least 1 KB required).");
+		this.memoryBudget = bytes;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * sets the extension of the files to be read by 
+	 * {@link #importDirectory(String, boolean)}. By default, <tt>.ts</tt> 
+	 * files will be read.
+	 * 
+	 * @param fileExtension File extension, e.g. &quot;.ts&quot; (case will 
+	 * be ignored)
+	 */
+	public void setFileExtension(String fileExtension) {
+		this.fileExtension = fileExtension;
+	}
+
+	/**
+	 * enables the binary cache of the readers used (see 
+	 * {@link GocadReadOptions#setUseCache(boolean)}).
+	 * 
+	 * @param useCache <i>true</i> to enable the cache
+	 */
+	public void setUseCache(boolean useCache) {
+		this.useCache = useCache;
+	}
+
+	/**
+	 * reads all GOCAD files inside a directory.
+	 * 
+	 * @param directory Directory path
+	 * @param recursive <i>true</i>, if sub-directories shall be considered, too
+	 * @return Import result
+	 * @throws T3dException if the directory can not be accessed
+	 */
+	public Result importDirectory(String directory, boolean recursive) 
+		throws T3dException
+	{
+		Path dir = Paths.get(directory);
+		if (!Files.isDirectory(dir))
+			throw new T3dException("Could not access directory \"" + directory + "\".");
+
+		List<String> paths = new ArrayList<String>();
+		try {
+			Stream<Path> files = recursive ? Files.walk(dir) : Files.list(dir);
+			try {
+				files
+					.filter(p -> Files.isRegularFile(p) && p.getFileName().toString()
+						.toLowerCase().endsWith(fileExtension.toLowerCase()))
+					.forEach(p -> paths.add(p.toString()));
+			}
+			finally {
+				files.close();
+			}
+		}
+		catch (IOException e) {
+			throw new T3dException(e.getMessage());
+		}
+		Collections.sort(paths);
+		return this.importFiles(paths);
+	}
+
+	/**
+	 * reads the given GOCAD files.
+	 * 
+	 * @param paths File paths
+	 * @return Import result
+	 */
+	public Result importFiles(List<String> paths) 
+	{
+		// Memory budget in KB units, so that semaphore permits fit into an int:
+		final int budgetKB = (int) Math.min(memoryBudget / 1024, Integer.MAX_VALUE);
+		final Semaphore memory = new Semaphore(budgetKB, true);
+
+		final IoGocadTSurfReader reader = new IoGocadTSurfReader();
+		final GocadReadOptions options = new GocadReadOptions().setUseCache(useCache);
+
+		ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+		List<Future<FileReport>> tasks = new ArrayList<Future<FileReport>>();
+		for (final String path : paths) {
+			tasks.add(pool.submit(() -> {
+				int permits = (int) Math.max(1, 
+					Math.min(new File(path).length() / 1024, budgetKB));
+				memory.acquireUninterruptibly(permits);
+				try {
+					return this.importFile(reader, options, path);
+				}
+				finally {
+					memory.release(permits);
+				}
+			}));
+		}
+		
+		Result res = new Result();
+		try {
+			for (int i = 0; i < tasks.size(); i++) {
+				FileReport report;
+				try {
+					report = tasks.get(i).get();
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof Error)
+						throw (Error) e.getCause(); // e.g. OutOfMemoryError
+					report = new FileReport(paths.get(i));
+					report.error = e.getCause();
+				}
+				res.reports.add(report);
+				if (report.tins != null)
+					res.tins.put(report.path, report.tins);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new T3dException("Batch import has been interrupted.");
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return res;
+	}
+
+	// Private helpers:
+
+	private FileReport importFile(
+		IoGocadTSurfReader reader, GocadReadOptions options, String path) 
+	{
+		FileReport report = new FileReport(path);
+		long t0 = System.nanoTime();
+		try {
+			// Assign TINs to TSurf object names (in file order):
+			Map<String, GmSimpleTINFeature> objects = 
+				new LinkedHashMap<String, GmSimpleTINFeature>();
+			for (GocadTSurfObject obj : reader.readObjects(path, options)) {
+				String name = obj.getInfo().getObjectName();
+				for (int k = 2; objects.containsKey(name); k++)
+					name = obj.getInfo().getObjectName() + "#" + k; // duplicate names
+				objects.put(name, obj.getTIN());
+			}
+			report.tins = objects;
+		}
+		catch (Exception e) {
+			report.error = e;
+		}
+		report.millis = (System.nanoTime() - t0) / 1000000L;
+		return report;
+	}
+
+	/**
+	 * Report concerning the import of a single file.
+	 */
+	public static class FileReport 
+	{
+		private String path;
+		private long millis;
+		private Throwable error;
+		private Map<String, GmSimpleTINFeature> tins;
+
+		FileReport(String path) {
+			this.path = path;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * gets the time needed to import the file.
+		 * 
+		 * @return Time in milliseconds
+		 */
+		public long getMillis() {
+			return millis;
+		}
+
+		/**
+		 * checks if the file has been imported successfully.
+		 * 
+		 * @return <i>true</i>, if no error occurred
+		 */
+		public boolean isSuccess() {
+			return error == null;
+		}
+
+		/**
+		 * gets the error that occurred during import.
+		 * 
+		 * @return Error, or <i>null</i> if the import was successful
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		public int numberOfObjects() {
+			return (tins == null) ? 0 : tins.size();
+		}
+
+		public String toString() {
+			return "[" + path + ": " + (isSuccess() ? 
+				numberOfObjects() + " TSurf object(s)" : "failed (" + error + ")")
+				+ ", " + millis + " ms]";
+		}
+	}
+
+	/**
+	 * Result of a batch import. The TINs are given per file and object name 
+	 * (see {@link GocadDataInfo#getObjectName()}); objects having the same 
+	 * name inside a file are distinguished by appending &quot;#2&quot;, 
+	 * &quot;#3&quot;, etc.
+	 */
+	public static class Result 
+	{
+		private Map<String, Map<String, GmSimpleTINFeature>> tins = 
+			new LinkedHashMap<String, Map<String, GmSimpleTINFeature>>();
+		private List<FileReport> reports = new ArrayList<FileReport>();
+
+		/**
+		 * gets the imported TINs.
+		 * 
+		 * @return TINs per file path and object name (in input order)
+		 */
+		public Map<String, Map<String, GmSimpleTINFeature>> getTINs() {
+			return tins;
+		}
+
+		/**
+		 * gets a single imported TIN.
+		 * 
+		 * @param path File path
+		 * @param objectName Object name
+		 * @return TIN, or <i>null</i> if there is no such object
+		 */
+		public GmSimpleTINFeature getTIN(String path, String objectName) {
+			Map<String, GmSimpleTINFeature> objects = tins.get(path);
+			return (objects == null) ? null : objects.get(objectName);
+		}
+
+		/**
+		 * gets the reports for all files (in input order).
+		 * 
+		 * @return File reports
+		 */
+		public List<FileReport> getReports() {
+			return reports;
+		}
+
+		/**
+		 * gets the reports for the files that could not be imported.
+		 * 
+		 * @return File reports
+		 */
+		public List<FileReport> getFailures() {
+			List<FileReport> res = new ArrayList<FileReport>();
+			for (FileReport r : reports) {
+				if (!r.isSuccess())
+					res.add(r);
+			}
+			return res;
+		}
+	}
+}
@@ -0,0 +1,431 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.n52.v3d.triturus.core.IoObject;
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.geologic.data.GmCompactLineSet;
+import org.n52.v3d.triturus.geologic.data.GmCompactPointSet;
+import org.n52.v3d.triturus.geologic.data.GmMappedGrid;
+
+/**
+ * Reader to import GOCAD objects other than TSurfs. These object types are 
+ * supported:
+ * <ul>
+ * <li><i>PLine</i> objects (e.g. fault sticks), see {@link GmCompactLineSet}</li>
+ * <li><i>VSet</i> objects (e.g. well points), see {@link GmCompactPointSet}</li>
+ * <li><i>Voxet</i>, <i>GSurf</i> and <i>SGrid</i> objects, see 
+ * {@link GmMappedGrid}</li>
+ * </ul>
+ * For TSurf objects, use {@link IoGocadTSurfReader}. The GOCAD file is 
+ * parsed by the same streaming parser (see 
+ * {@link IoGocadTSurfReader#parse(String, GocadHandler)}).
+ * <br>
+ * The binary property files (<tt>PROP_FILE</tt>) and point files 
+ * (<tt>POINTS_FILE</tt>) referenced by grid objects are memory-mapped, i.e. 
+ * the property values will not be copied onto the heap. Such files are 
+ * expected to hold big-endian values as written by GOCAD (<tt>IEEE</tt> 
+ * or <tt>OCTET</tt> element types); they can be accessed for local GOCAD 
+ * files only.
+ */
+public class IoGocadObjectReader extends IoObject
+{
+	private String logInfo = IoGocadObjectReader.class.getName();
+
+	private List<GocadDataInfo> info = new ArrayList<GocadDataInfo>();
+	private List<Object> objects = new ArrayList<Object>();
+
+	@Override
+	public String log() {
+		return logInfo;
+	} 
+
+	/**
+	 * reads the GOCAD objects from a given file or URL location. Afterwards, 
+	 * the objects can be accessed by {@link #getObjects()}, 
+	 * {@link #getPLines()}, {@link #getVSets()} and {@link #getGrids()}.
+	 * 
+	 * @param location File path or valid URL
+	 * @throws T3dException if an error occurs
+	 */
+	public void read(String location) throws T3dException
+	{
+		ObjectBuilder builder = new ObjectBuilder(location);
+		new IoGocadTSurfReader().parse(location, builder);
+		info = builder.info;
+		objects = builder.objects;
+		System.out.println("Imported " + info.size() + " GOCAD object(s) from \"" 
+			+ location + "\".");
+	}
+
+	/**
+	 * gets information about the objects read most recently.
+	 * 
+	 * @return Information objects (in file order)
+	 */
+	public List<GocadDataInfo> getInfo() {
+		return info;
+	}
+
+	/**
+	 * gets the objects read most recently. For each information object given 
+	 * by {@link #getInfo()}, the list holds a {@link GmCompactLineSet}, a 
+	 * {@link GmCompactPointSet} or a {@link GmMappedGrid} object, or 
+	 * <i>null</i> for unsupported object types (e.g. TSurfs).
+	 * 
+	 * @return Objects (in file order)
+	 */
+	public List<Object> getObjects() {
+		return objects;
+	}
+
+	/**
+	 * gets the object with the given name.
+	 * 
+	 * @param objectName Object name as given by {@link GocadDataInfo#getObjectName()}
+	 * @return Object, or <i>null</i> if there is no such object
+	 */
+	public Object getObject(String objectName) {
+		for (int i = 0; i < info.size(); i++) {
+			if (info.get(i).getObjectName().equals(objectName))
+				return objects.get(i);
+		}
+		return null;
+	}
+
+	public List<GmCompactLineSet> getPLines() {
+		return this.getObjects("PLine", GmCompactLineSet.class);
+	}
+
+	public List<GmCompactPointSet> getVSets() {
+		return this.getObjects("VSet", GmCompactPointSet.class);
+	}
+
+	/**
+	 * gets the Voxet, GSurf and SGrid objects read most recently.
+	 * 
+	 * @return Grids (in file order)
+	 */
+	public List<GmMappedGrid> getGrids() {
+		return this.getObjects(null, GmMappedGrid.class);
+	}
+
+	// Private helpers:
+
+	private <T> List<T> getObjects(String type, Class<T> cl) {
+		List<T> res = new ArrayList<T>();
+		for (int i = 0; i < info.size(); i++) {
+			if ((type == null || type.equalsIgnoreCase(info.get(i).getObjectType())) 
+				&& cl.isInstance(objects.get(i)))
+				res.add(cl.cast(objects.get(i)));
+		}
+		return res;
+	}
+
+	private static boolean isGridType(String type) {
+		return "Voxet".equalsIgnoreCase(type) 
+			|| "GSurf".equalsIgnoreCase(type) 
+			|| "SGrid".equalsIgnoreCase(type);
+	}
+
+	// Grid property definition:
+	private static class PropDef {
+		String name, file, eType = "IEEE";
+		int eSize = 4;
+		Boolean signed = null;
+		double noData = Double.NaN;
+		long offset = 0;
+	}
+
+	// Handler building the objects:
+	private static class ObjectBuilder implements GocadHandler
+	{
+		List<GocadDataInfo> info = new ArrayList<GocadDataInfo>();
+		List<Object> objects = new ArrayList<Object>();
+
+		private String location;
+		private GocadDataInfo lInfo;
+		private GmCompactPointSet pointSet; // for PLine and VSet objects
+		private GmCompactLineSet lineSet; // for PLine objects
+		private GocadVertexIdMap ids;
+		private double[] noData;
+		// Grid header information:
+		private double[][] axes;
+		private double[] axisMin, axisMax;
+		private int[] axisN;
+		private String pointsFile;
+		private long pointsOffset;
+		private Map<Integer, PropDef> propDefs;
+
+		ObjectBuilder(String location) {
+			this.location = location;
+		}
+
+		public void onObjectBegin(GocadDataInfo lInfo) 
+		{
+			this.lInfo = lInfo;
+			info.add(lInfo);
+			pointSet = null;
+			lineSet = null;
+			ids = null;
+			noData = null;
+			propDefs = null;
+
+			String type = lInfo.getObjectType();
+			if ("PLine".equalsIgnoreCase(type)) {
+				lineSet = new GmCompactLineSet();
+				pointSet = lineSet;
+			} 
+			else if ("VSet".equalsIgnoreCase(type))
+				pointSet = new GmCompactPointSet();
+			else if (isGridType(type)) {
+				axes = new double[][] {{0., 0., 0.}, {1., 0., 0.}, {0., 1., 0.}, {0., 0., 1.}};
+				axisMin = new double[] {0., 0., 0.};
+				axisMax = new double[] {1., 1., 1.};
+				axisN = new int[] {1, 1, 1};
+				pointsFile = null;
+				pointsOffset = 0;
+				propDefs = new TreeMap<Integer, PropDef>();
+			}
+			if (pointSet != null)
+				ids = new GocadVertexIdMap();
+		}
+
+		public void onVertex(long id, double x, double y, double z, double[] props) 
+		{
+			if (pointSet == null)
+				return;
+			if (props.length == 0) {
+				ids.addVertex(id, pointSet.addPoint(x, y, z));
+				return;
+			}
+			if (noData == null) {
+				if (pointSet.numberOfProperties() == 0)
+					pointSet.setPropertyNames(lInfo.getPropertyColumnNames(props.length));
+				noData = lInfo.getPropertyColumnNoDataValues(props.length);
+			}
+			for (int k = 0; k < props.length && k < noData.length; k++) {
+				if (props[k] == noData[k])
+					props[k] = Double.NaN;
+			}
+			ids.addVertex(id, pointSet.addPoint(x, y, z, props));
+		}
+
+		public void onAtom(long id, long refId) {
+			if (ids != null)
+				ids.addAlias(id, refId);
+		}
+
+		public void onTriangle(long a, long b, long c) {
+		}
+
+		public void onSegment(long a, long b) {
+			if (lineSet != null)
+				lineSet.addSegment(ids.indexOf(a), ids.indexOf(b));
+		}
+
+		public void onPartBegin() {
+			if (lineSet != null)
+				lineSet.beginPart();
+		}
+
+		public void onHeaderLine(String line) 
+		{
+			if (propDefs == null)
+				return; // no grid
+			String[] t = line.trim().split("[ \\t]+");
+			String key = t[0].toUpperCase();
+			
+			if (key.equals("AXIS_O")) axes[0] = toVector(t, axes[0]);
+			else if (key.equals("AXIS_U")) axes[1] = toVector(t, axes[1]);
+			else if (key.equals("AXIS_V")) axes[2] = toVector(t, axes[2]);
+			else if (key.equals("AXIS_W")) axes[3] = toVector(t, axes[3]);
+			else if (key.equals("AXIS_MIN")) axisMin = toVector(t, axisMin);
+			else if (key.equals("AXIS_MAX")) axisMax = toVector(t, axisMax);
+			else if (key.equals("AXIS_N")) {
+				for (int k = 1; k < t.length && k <= 3; k++)
+					axisN[k - 1] = Integer.parseInt(t[k]);
+			}
+			else if (key.equals("POINTS_FILE")) pointsFile = rest(line, t, 1);
+			else if (key.equals("POINTS_OFFSET")) pointsOffset = Long.parseLong(t[1]);
+			else if (key.startsWith("PROP") && t.length >= 3) {
+				PropDef p = this.propDef(t[1]);
+				if (p == null)
+					return; // e.g. PROPERTY_CLASS_HEADER or PROPERTIES line
+				if (key.equals("PROPERTY")) p.name = rest(line, t, 2);
+				else if (key.equals("PROP_FILE")) p.file = rest(line, t, 2);
+				else if (key.equals("PROP_ESIZE")) p.eSize = Integer.parseInt(t[2]);
+				else if (key.equals("PROP_ETYPE")) p.eType = t[2];
+				else if (key.equals("PROP_SIGNED")) p.signed = !t[2].equals("0");
+				else if (key.equals("PROP_OFFSET")) p.offset = Long.parseLong(t[2]);
+				else if (key.equals("PROP_NO_DATA_VALUE")) p.noData = Double.parseDouble(t[2]);
+			}
+		}
+
+		public void onObjectEnd(GocadDataInfo lInfo) 
+		{
+			Object obj = null;
+			if (lineSet != null)
+				lineSet.checkIndices();
+			if (pointSet != null) {
+				pointSet.trimToSize();
+				obj = pointSet;
+			}
+			if (propDefs != null)
+				obj = this.buildGrid();
+			objects.add(obj);
+			pointSet = null;
+			lineSet = null;
+			ids = null;
+			propDefs = null;
+		}
+
+		private PropDef propDef(String id) {
+			int i;
+			try {
+				i = Integer.parseInt(id);
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+			PropDef p = propDefs.get(i);
+			if (p == null) {
+				p = new PropDef();
+				p.name = "PROPERTY_" + i;
+				propDefs.put(i, p);
+			}
+			return p;
+		}
+
+		private GmMappedGrid buildGrid() 
+		{
+			GmMappedGrid grid = new GmMappedGrid();
+			grid.setDimensions(axisN[0], axisN[1], axisN[2]);
+			grid.setAxes(axes[0], axes[1], axes[2], axes[3]);
+			grid.setAxisRange(axisMin, axisMax);
+
+			boolean local = Files.isRegularFile(Paths.get(location));
+			if (!local && (pointsFile != null || !propDefs.isEmpty())) {
+				System.out.println("<IoGocadObjectReader> Grid data files can only be " 
+					+ "accessed for local files, skipping \"" + lInfo.getObjectName() + "\" data.");
+				return grid;
+			}
+			if (pointsFile != null) {
+				grid.setPoints(mapFile(
+					this.resolve(pointsFile), pointsOffset, 12L * grid.numberOfNodes()));
+			}
+			for (PropDef p : propDefs.values()) {
+				if (p.file == null)
+					continue; // e.g. ASCII data
+				boolean floating;
+				if (p.eType.equalsIgnoreCase("IEEE"))
+					floating = true;
+				else if (p.eType.equalsIgnoreCase("OCTET"))
+					floating = false;
+				else 
+					throw new T3dException("Unsupported property element type: " + p.eType);
+				boolean signed = (p.signed != null) ? p.signed : p.eSize > 1;
+				grid.addProperty(p.name, 
+					mapFile(this.resolve(p.file), p.offset, p.eSize * grid.numberOfNodes()),
+					p.eSize, floating, signed, p.noData);
+			}
+			return grid;
+		}
+
+		private File resolve(String fileName) {
+			File f = new File(fileName);
+			if (f.isAbsolute())
+				return f;
+			return new File(new File(location).getAbsoluteFile().getParentFile(), fileName);
+		}
+	}
+
+	// Maps a binary file into (big-endian) byte buffers:
+	private static ByteBuffer[] mapFile(File f, long offset, long length) 
+		throws T3dException
+	{
+		try {
+			FileChannel ch = FileChannel.open(f.toPath());
+			try {
+				if (ch.size() < offset + length) {
+					throw new T3dException("File \"" + f + "\" is too short (" + ch.size() 
+						+ " bytes, " + (offset + length) + " bytes expected).");
+				}
+				int n = (int) ((length + GmMappedGrid.CHUNK_SIZE - 1) / GmMappedGrid.CHUNK_SIZE);
+				ByteBuffer[] res = new ByteBuffer[Math.max(n, 1)];
+				for (int i = 0; i < res.length; i++) {
+					long pos = i * GmMappedGrid.CHUNK_SIZE;
+					res[i] = ch.map(FileChannel.MapMode.READ_ONLY, offset + pos, 
+						Math.min(GmMappedGrid.CHUNK_SIZE, length - pos));
+				}
+				return res; // mappings stay valid after closing the channel
+			}
+			finally {
+				ch.close();
+			}
+		}
+		catch (IOException e) {
+			throw new T3dException("Could not access file \"" + f + "\".");
+		}
+	}
+
+	private static double[] toVector(String[] t, double[] def) {
+		double[] res = def.clone();
+		for (int k = 1; k < t.length && k <= res.length; k++)
+			res[k - 1] = Double.parseDouble(t[k]);
+		return res;
+	}
+
+	// Gets the remainder of a line starting with the i-th token (0-based), 
+	// e.g. file names holding blanks:
+	private static String rest(String line, String[] t, int i) 
+	{
+		String s = line.trim();
+		for (int k = 0; k < i; k++)
+			s = s.substring(t[k].length()).trim();
+		if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\""))
+			s = s.substring(1, s.length() - 1);
+		return s;
+	}
+}
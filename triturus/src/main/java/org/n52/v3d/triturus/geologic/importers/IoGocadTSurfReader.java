@@ -33,6 +33,7 @@
 package org.n52.v3d.triturus.geologic.importers;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -40,28 +41,68 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.MalformedURLException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.n52.v3d.triturus.core.IoObject;
 import org.n52.v3d.triturus.core.T3dException;
-import org.n52.v3d.triturus.gisimplm.GmPoint;
+import org.n52.v3d.triturus.geologic.data.GmCompactTINGeometry;
 import org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature;
-import org.n52.v3d.triturus.gisimplm.GmSimpleTINGeometry;
 import org.n52.v3d.triturus.t3dutil.T3dColor;
-import org.n52.v3d.triturus.vgis.VgPoint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Reader to import a TIN from a GOCAD TSurf file. Note that there are some 
  * restrictions concerning this implementation:
  * <ol>
  * <li>GOCAD data file format version 1.0 is assumed.</li>
- * <li>Vertex numbers given in the TSurf file will not be processed. For the
- * n-th given vertex n will be assumed as index number, with n &gt;= 1.</li>
+ * <li>Vertex ids given in the TSurf file will be resolved (see 
+ * {@link GocadVertexIdMap}), i.e. ids do not have to be dense or ordered. 
+ * ATOM elements refer to the TIN vertex of the referenced id; they do not 
+ * lead to additional TIN vertices.</li>
  * <li>Coordinate system support has not been implemented yet, i.e. 
  * coordinates are processed as they are given.</li>
  * </ol>
+ * By default, the GOCAD file will be read in a single pass, i.e. the object
+ * information (see {@link GocadDataInfo}) and the TIN geometries will be 
+ * collected together. The former two-pass mode (1st pass: object information, 
+ * 2nd pass: geometry) is still available via {@link #read(String, int)}.
+ * In single-pass mode, local files will be memory-mapped and tokenized on 
+ * byte level (see {@link GocadTokenizer}). Files holding multiple GOCAD 
+ * objects can be parsed concurrently (see 
+ * {@link GocadReadOptions#setParallelism(int)}). Optionally, imported files 
+ * can be cached in a binary format (see 
+ * {@link GocadReadOptions#setUseCache(boolean)}).
+ * <br>
+ * Gzip-compressed files and zip archives will be decompressed transparently 
+ * (detected by their content, not by the file extension). Such files can 
+ * not be memory-mapped, so they are always parsed sequentially; the cache 
+ * will not be used for them.
+ * <br>
+ * The reader is thread-safe: The state of a read operation is confined to 
+ * the call, the options (parallelism, cache usage, filter) are passed per 
+ * call (see {@link GocadReadOptions}), and the object information is 
+ * returned together with the TINs (see 
+ * {@link #readObjects(String, GocadReadOptions)}). Thus, a single reader 
+ * instance can serve concurrent requests; the file indices (see 
+ * {@link #read(String, String)}) are kept in memory and shared by all 
+ * threads.
  * For more details, see source code.
  * 
  * @author Benno Schmidt
@@ -70,12 +111,15 @@ public class IoGocadTSurfReader extends IoObject
 {
 	private String logInfo = IoGocadTSurfReader.class.getName();
 
-	private List<GocadDataInfo> info;
-	private List<GmSimpleTINFeature> tins;
+	// Information about the file read most recently (see getInfo()):
+	private volatile List<GocadDataInfo> lastInfo = null;
+	// File indices shared by all threads (key: absolute file path):
+	private final ConcurrentMap<String, GocadFileIndex> indices = 
+		new ConcurrentHashMap<String, GocadFileIndex>();
+	// Options used by the methods without options parameter:
+	private volatile GocadReadOptions defaults = new GocadReadOptions();
 
 	public IoGocadTSurfReader() {
-		info = new ArrayList<GocadDataInfo>();
-		tins = new ArrayList<GmSimpleTINFeature>();
 	}
 
 	@Override
@@ -83,46 +127,524 @@ public class IoGocadTSurfReader extends IoObject
 		return logInfo;
 	} 
 
+	/**
+	 * sets the number of worker threads used by the methods without options 
+	 * parameter (see {@link GocadReadOptions#setParallelism(int)}).
+	 * 
+	 * @param parallelism Number of worker threads; for values &lt;= 0, the 
+	 * number of available processors will be used
+	 * @deprecated The setting is shared by all callers; pass the options per 
+	 * call instead (e.g. {@link #read(String, GocadReadOptions)}).
+	 */
+	@Deprecated
+	public synchronized void setParallelism(int parallelism) {
+		defaults = new GocadReadOptions(defaults).setParallelism(parallelism);
+	}
+
+	/**
+	 * @deprecated see {@link #setParallelism(int)}
+	 */
+	@Deprecated
+	public int getParallelism() {
+		return defaults.getParallelism();
+	}
+
+	/**
+	 * enables the binary cache for the methods without options parameter 
+	 * (see {@link GocadReadOptions#setUseCache(boolean)}).
+	 * 
+	 * @param useCache <i>true</i> to enable the cache
+	 * @deprecated The setting is shared by all callers; pass the options per 
+	 * call instead (e.g. {@link #read(String, GocadReadOptions)}).
+	 */
+	@Deprecated
+	public synchronized void setUseCache(boolean useCache) {
+		defaults = new GocadReadOptions(defaults).setUseCache(useCache);
+	}
+
+	/**
+	 * @deprecated see {@link #setUseCache(boolean)}
+	 */
+	@Deprecated
+	public boolean getUseCache() {
+		return defaults.getUseCache();
+	}
+
+	/**
+	 * sets the object filter for the methods without options parameter 
+	 * (see {@link GocadReadOptions#setFilter(GocadObjectFilter)}).
+	 * 
+	 * @param filter Filter, or <i>null</i> to import all objects
+	 * @deprecated The setting is shared by all callers; pass the options per 
+	 * call instead (e.g. {@link #read(String, GocadReadOptions)}).
+	 */
+	@Deprecated
+	public synchronized void setFilter(GocadObjectFilter filter) {
+		defaults = new GocadReadOptions(defaults).setFilter(filter);
+	}
+
+	/**
+	 * @deprecated see {@link #setFilter(GocadObjectFilter)}
+	 */
+	@Deprecated
+	public GocadObjectFilter getFilter() {
+		return defaults.getFilter();
+	}
+
     /**
-     * reads a set of TINs from a given file or URL location.
+     * reads a set of TINs from a given file or URL location using default 
+     * options (see {@link #read(String, GocadReadOptions)}).
      * 
      * @param location File path or valid URL
      * @return List of TINs, or <i>null</i> if an error occurs
      */
-    public List<GmSimpleTINFeature> read(String location) 
+    public List<GmSimpleTINFeature> read(String location) {
+    	return this.read(location, defaults);
+    }
+
+    /**
+     * reads a set of TINs from a given file or URL location. The file will be
+     * scanned only once. To get the information about the GOCAD objects 
+     * together with the TINs, use {@link #readObjects(String, GocadReadOptions)}.
+     * 
+     * @param location File path or valid URL
+     * @param options Read options
+     * @return List of TINs, or <i>null</i> if an error occurs
+     */
+    public List<GmSimpleTINFeature> read(String location, GocadReadOptions options) 
     {
-    	return this.read(location, 2);
+    	ReadContext ctx = new ReadContext(options);
+    	try {
+    		return this.readTINs(ctx, location);
+    	}
+    	finally {
+    		lastInfo = ctx.info;
+    	}
+    }
+
+    /**
+     * reads the TSurf objects contained in a GOCAD file, i.e. the TINs 
+     * together with the object information given in the file headers. The 
+     * import will be performed as by {@link #read(String, GocadReadOptions)}.
+     * 
+     * @param location File path or valid URL
+     * @param options Read options
+     * @return TSurf objects (in file order)
+     * @throws T3dException if an error occurs
+     */
+    public List<GocadTSurfObject> readObjects(String location, GocadReadOptions options) 
+    	throws T3dException
+    {
+    	ReadContext ctx = new ReadContext(options);
+    	List<GmSimpleTINFeature> tins = this.readTINs(ctx, location);
+    	if (tins == null)
+    		throw new T3dException("Could not read \"" + location + "\".");
+    	return toObjects(ctx.info, tins);
+    }
+
+    private List<GmSimpleTINFeature> readTINs(ReadContext ctx, String location) 
+    {
+        GocadTokenizer tok;
+        List<GmSimpleTINFeature> tins = null;
+        
+        try {
+        	boolean localFile = this.isLocalFile(location);
+        	boolean aoi = ctx.filter != null && ctx.filter.getEnvelope() != null;
+        	if (aoi && localFile)
+        		return this.readGocadTSurf_Filtered(ctx, location);
+        	boolean useCache = ctx.useCache && ctx.filter == null;
+        	GocadTSurfCache cache = null;
+        	if (useCache && localFile) {
+        		cache = GocadTSurfCache.loadAny(new File(location));
+        		if (cache != null && cache.valid) {
+        			ctx.info = cache.info;
+        			ctx.tins = cache.tins;
+        			System.out.println("Loaded " + ctx.tins.size() 
+        				+ " TSurf object(s) from cache for \"" + location + "\".");
+        			return ctx.tins;
+        		}
+        	}
+        	
+        	if (cache != null)
+        		tins = this.readGocadTSurf_Incremental(ctx, location, cache);
+        	else if (ctx.parallelism > 1 && localFile)
+        		tins = this.readGocadTSurf_Parallel(ctx, location);
+        	else {
+        		tok = this.createTokenizer(location);
+        		try {
+        			tins = this.readGocadTSurf_SinglePass(ctx, tok, location, true);
+        		}
+        		finally {
+        			tok.close();
+        		}
+        		if (aoi)
+        			tins = this.applyAreaOfInterest(ctx);
+        	}
+        	
+        	if (useCache && localFile) {
+        		long[] hashes = ctx.hashes;
+        		if (hashes == null)
+        			hashes = this.contentHashes(location, ctx.offsets);
+        		if (!GocadTSurfCache.save(new File(location), ctx.info, tins, hashes))
+        			System.out.println("Could not write cache file for \"" + location + "\".");
+        	}
+        }
+        catch (T3dException e) {
+			throw e;
+        } 
+        catch (IOException e) {
+			e.printStackTrace();
+        } 
+
+        return tins;
     }
     
+    /**
+     * reads a single TIN from a local GOCAD file. To access the object 
+     * directly, an index holding the objects' file positions will be used. 
+     * This index will be built when the file is accessed the first time; it 
+     * is stored as sidecar file (<tt>&lt;location&gt;.gidx</tt>) next to 
+     * the GOCAD file and re-built automatically if the GOCAD file's size or 
+     * modification time changes. If the sidecar file can not be written, the
+     * index will be built again for the next call. Compressed files can not
+     * be indexed; they will be scanned up to the requested object.
+     * <br>
+     * To get the object information, too, use 
+     * {@link #readObject(String, String)}.
+     * 
+     * @param location File path
+     * @param objectName Object name as given by {@link GocadDataInfo#getObjectName()}
+     * @return TIN, or <i>null</i> if the object is not a TSurf
+     * @throws T3dException if the file can not be accessed or if there is no
+     * object with the given name  
+     */
+    public GmSimpleTINFeature read(String location, String objectName) 
+    	throws T3dException
+    {
+    	GocadTSurfObject obj = this.readObject(location, objectName);
+    	return (obj != null) ? obj.getTIN() : null;
+    }
+
+    /**
+     * reads a single TSurf object from a local GOCAD file, i.e. the TIN 
+     * together with the object information (see 
+     * {@link #read(String, String)}).
+     * 
+     * @param location File path
+     * @param objectName Object name as given by {@link GocadDataInfo#getObjectName()}
+     * @return TSurf object, or <i>null</i> if the object is not a TSurf
+     * @throws T3dException if the file can not be accessed or if there is no
+     * object with the given name  
+     */
+    public GocadTSurfObject readObject(String location, String objectName) 
+    	throws T3dException
+    {
+    	File file = new File(location);
+    	if (!file.isFile())
+    		throw new T3dException("Could not access file \"" + location + "\".");
+    	
+    	try {
+    		if (CompressedInput.isCompressed(file.toPath()))
+    			return this.readCompressed(location, objectName);
+
+    		GocadFileIndex idx = this.getIndex(file);
+    		GocadFileIndex.Entry e = idx.getEntry(objectName);
+    		if (e == null) {
+    			throw new T3dException(
+    				"No GOCAD object \"" + objectName + "\" in \"" + location + "\".");
+    		}
+    		
+    		GocadTokenizer tok = mapFile(file.toPath(), e.offset, e.offset + e.length);
+    		TINBuilder builder = new TINBuilder(true, true);
+    		try {
+    			this.parseObjects(tok, location, builder, true, null);
+    		}
+    		finally {
+    			tok.close();
+    		}
+    		lastInfo = builder.info;
+    		List<GocadTSurfObject> res = toObjects(builder.info, builder.tins);
+    		return res.isEmpty() ? null : res.get(0);
+    	}
+    	catch (IOException e) {
+    		throw new T3dException(e.getMessage());
+    	}
+    }
+
+    // Reads a single object from a compressed GOCAD file (sequential scan):
+    private GocadTSurfObject readCompressed(String location, String objectName) 
+    	throws IOException
+    {
+    	TINBuilder builder = new TINBuilder(true, true);
+    	builder.filter = new GocadObjectFilter().addObjectName(objectName);
+    	GocadTokenizer tok = this.createTokenizer(location);
+    	try {
+    		this.parseObjects(tok, location, builder, true, null);
+    	}
+    	finally {
+    		tok.close();
+    	}
+    	if (builder.info.isEmpty()) {
+    		throw new T3dException(
+    			"No GOCAD object \"" + objectName + "\" in \"" + location + "\".");
+    	}
+    	GocadDataInfo lInfo = builder.info.get(0); // first object with this name
+    	List<GocadDataInfo> res = new ArrayList<GocadDataInfo>();
+    	res.add(lInfo);
+    	lastInfo = res;
+    	return isTSurf(lInfo) ? new GocadTSurfObject(lInfo, builder.tins.get(0)) : null;
+    }
+
+    /**
+     * reads simplified versions of the TINs contained in a GOCAD file, e.g. 
+     * to give a quick preview of large surfaces. The TINs are simplified by 
+     * vertex clustering while the file is streamed, i.e. the full resolution 
+     * TINs will never be held in memory. Each resulting TIN holds at most 
+     * the given number of triangles; vertex properties will not be imported.
+     * <br>
+     * The default options will be used (see 
+     * {@link #readPreviewObjects(String, GocadReadOptions, int)}).
+     * 
+     * @param location File path or valid URL
+     * @param maxTriangles Maximum number of triangles per TIN
+     * @return List of simplified TINs
+     * @throws T3dException if an error occurs
+     */
+    public List<GmSimpleTINFeature> readPreview(String location, int maxTriangles) 
+    	throws T3dException
+    {
+    	PreviewBuilder builder = this.preview(location, defaults, maxTriangles);
+    	lastInfo = builder.info;
+    	return builder.tins;
+    }
+
+    /**
+     * reads simplified versions of the TSurf objects contained in a GOCAD 
+     * file (see {@link #readPreview(String, int)}) together with the object 
+     * information. Note that the element counts given by the information 
+     * objects refer to the full resolution objects, whereas no statistics 
+     * will be provided.
+     * <br>
+     * If a filter is given (see {@link GocadReadOptions#setFilter(GocadObjectFilter)}), 
+     * only the selected objects will be imported, and the simplified TINs 
+     * will be restricted to the area of interest. The binary cache and 
+     * parallel parsing will not be used.
+     * 
+     * @param location File path or valid URL
+     * @param options Read options
+     * @param maxTriangles Maximum number of triangles per TIN
+     * @return Simplified TSurf objects (in file order)
+     * @throws T3dException if an error occurs
+     */
+    public List<GocadTSurfObject> readPreviewObjects(
+    	String location, GocadReadOptions options, int maxTriangles) 
+    	throws T3dException
+    {
+    	PreviewBuilder builder = this.preview(location, options, maxTriangles);
+    	return toObjects(builder.info, builder.tins);
+    }
+
+    private PreviewBuilder preview(
+    	String location, GocadReadOptions options, int maxTriangles) 
+    	throws T3dException
+    {
+        try {
+        	PreviewBuilder builder = new PreviewBuilder(maxTriangles);
+        	builder.filter = options.getFilter();
+        	GocadTokenizer tok = this.createTokenizer(location);
+        	try {
+        		this.parseObjects(tok, location, builder, true, null);
+        	}
+        	finally {
+        		tok.close();
+        	}
+        	System.out.println(
+        		"Imported " + builder.tins.size() + " simplified TSurf object(s).");
+        	return builder;
+        }
+        catch (IOException e) {
+			throw new T3dException(e.getMessage());
+        } 
+    }
+
+    /**
+     * reads the TSurf objects contained in a GOCAD file asynchronously using
+     * default options (see {@link #readAsync(String, GocadReadOptions, Executor)}).
+     *
+     * @param location File path or valid URL
+     * @param executor Executor running the import
+     * @return Future giving the imported TSurf objects (in file order); the
+     * future completes exceptionally if an error occurs
+     */
+    public CompletableFuture<List<GocadTSurfObject>> readAsync(
+    	String location, Executor executor)
+    {
+    	return this.readAsync(location, defaults, executor);
+    }
+
+    /**
+     * reads the TSurf objects contained in a GOCAD file asynchronously. The
+     * import will be performed as by 
+     * {@link #readObjects(String, GocadReadOptions)}; the options will be 
+     * copied when this method is called.
+     *
+     * @param location File path or valid URL
+     * @param options Read options
+     * @param executor Executor running the import
+     * @return Future giving the imported TSurf objects (in file order); the
+     * future completes exceptionally if an error occurs
+     */
+    public CompletableFuture<List<GocadTSurfObject>> readAsync(
+    	final String location, GocadReadOptions options, Executor executor)
+    {
+    	final GocadReadOptions opts = new GocadReadOptions(options);
+    	return CompletableFuture.supplyAsync(
+    		() -> this.readObjects(location, opts), executor);
+    }
+
+    /**
+     * reads the TSurf objects contained in a GOCAD file asynchronously using
+     * the common fork-join pool (see {@link #readAsync(String, Executor)}).
+     *
+     * @param location File path or valid URL
+     * @return Future giving the imported TSurf objects
+     */
+    public CompletableFuture<List<GocadTSurfObject>> readAsync(String location) {
+    	return this.readAsync(location, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * streams the TSurf objects contained in a GOCAD file. Each object is
+     * delivered as soon as it has been parsed; the file will be read in the
+     * background by a thread of its own. At most <tt>bufferSize</tt> parsed
+     * objects will be buffered, i.e. the parser is suspended if the consumer
+     * falls behind. Thus, large files can be processed object by object
+     * without holding all TINs in memory.
+     * <br>
+     * The default object filter will be considered (see
+     * {@link #stream(String, GocadReadOptions, int, Executor)}).
+     *
+     * @param location File path or valid URL
+     * @param bufferSize Maximum number of buffered objects
+     * @return Stream of TSurf objects
+     */
+    public IoImportStream<GocadTSurfObject> stream(String location, int bufferSize) {
+    	return this.stream(location, defaults, bufferSize, null);
+    }
+
+    /**
+     * streams the TSurf objects contained in a GOCAD file (see
+     * {@link #stream(String, int)}) using the given executor.
+     *
+     * @param location File path or valid URL
+     * @param bufferSize Maximum number of buffered objects
+     * @param executor Executor running the parser, or <i>null</i> to start a
+     * thread of its own
+     * @return Stream of TSurf objects
+     */
+    public IoImportStream<GocadTSurfObject> stream(
+    	String location, int bufferSize, Executor executor)
+    {
+    	return this.stream(location, defaults, bufferSize, executor);
+    }
+
+    /**
+     * streams the TSurf objects contained in a GOCAD file (see
+     * {@link #stream(String, int)}). The object filter given by the options
+     * will be considered; the binary cache and parallel parsing will not be
+     * used.
+     *
+     * @param location File path or valid URL
+     * @param options Read options
+     * @param bufferSize Maximum number of buffered objects
+     * @param executor Executor running the parser, or <i>null</i> to start a
+     * thread of its own
+     * @return Stream of TSurf objects
+     */
+    public IoImportStream<GocadTSurfObject> stream(
+    	final String location, GocadReadOptions options, int bufferSize, 
+    	Executor executor)
+    {
+    	final GocadObjectFilter filter = options.getFilter();
+    	return IoImportStream.start(bufferSize, executor, stream -> {
+    		StreamBuilder builder = new StreamBuilder(stream);
+    		builder.filter = filter;
+    		GocadTokenizer tok = this.createTokenizer(location);
+    		try {
+    			this.parseObjects(tok, location, builder, true, null);
+    		}
+    		finally {
+    			tok.close();
+    		}
+    	});
+    }
+
+    /**
+     * parses a GOCAD file and passes the contained objects' data to the
+     * given handler, i.e. no TINs will be built (unless the handler does 
+     * so). This allows memory-bounded analyses of large GOCAD files. Note 
+     * that {@link #read(String)} uses this parser, too. 
+     * 
+     * @param location File path or valid URL
+     * @param handler Handler receiving the parser events
+     * @throws T3dException if an error occurs
+     */
+    public void parse(String location, GocadHandler handler) 
+    	throws T3dException
+    {
+        try {
+        	GocadTokenizer tok = this.createTokenizer(location);
+        	try {
+        		this.parseObjects(tok, location, handler, true, null);
+        	}
+        	finally {
+        		tok.close();
+        	}
+        }
+        catch (IOException e) {
+			throw new T3dException(e.getMessage());
+        } 
+    }
+
+    /**
+     * reads a set of TINs from a given file or URL location in two passes. The
+     * first pass determines the GOCAD object information, the second pass 
+     * reads the geometries.
+     * 
+     * @param location File path or valid URL
+     * @param untilPass 1 to gather the object information only, 2 to read 
+     * the geometries, too
+     * @return List of TINs, or <i>null</i> if an error occurs or if 
+     * <tt>untilPass</tt> is less than 2 
+     */
     public List<GmSimpleTINFeature> read(String location, int untilPass) 
     {
         BufferedReader reader;
+        List<GocadDataInfo> lInfo = null;
         List<GmSimpleTINFeature> tins = null;
         
         try {
         	for (int pass = 1; pass <= untilPass; pass++) {
-				if (location.startsWith("http"))
-					reader = this.createBufferedReader(new URL(location));
-				else
-					reader = this.createBufferedReader(location);
-				
-				switch (pass) {
-				case 1:
-					info = this.readGocadTSurf_Pass1(reader, location); 
-					break;
-				case 2:
-					tins = this.readGocadTSurf_Pass2(reader, location); 
-					break;
+				reader = this.openLocation(location);
+				try {
+					switch (pass) {
+					case 1:
+						lInfo = this.readGocadTSurf_Pass1(reader, location); 
+						lastInfo = lInfo;
+						break;
+					case 2:
+						tins = this.readGocadTSurf_Pass2(reader, location, lInfo); 
+						break;
+					}
+				}
+				finally {
+					reader.close();
 				}
-				reader.close();
         	}
         }
         catch (T3dException e) {
 			throw e;
         } 
-        catch (MalformedURLException e) {
-			e.printStackTrace();
-		}
         catch (IOException e) {
 			e.printStackTrace();
         } 
@@ -130,24 +652,136 @@ public class IoGocadTSurfReader extends IoObject
         return tins;
     }
 
+    /**
+     * gets information about the content of a GOCAD file using default 
+     * options (see {@link #getInfo(String, GocadReadOptions)}).
+     * 
+     * @param location File path or valid URL
+     * @return Information objects, or <i>null</i> if an error occurs
+     */
+    public List<GocadDataInfo> getInfo(String location) {
+    	List<GocadDataInfo> res = this.getInfo(location, defaults);
+    	lastInfo = res;
+    	return res;
+    }
+
     /**
      * gets information about the content of a GOCAD file. The method returns
      * single information objects for each GOCAD object which is part of the 
-     * GOCAD file.
+     * GOCAD file (or selected by the filter given in the options).
      * 
      * @param location File path or valid URL
+     * @param options Read options
      * @return Information objects, or <i>null</i> if an error occurs
      */
-    public List<GocadDataInfo> getInfo(String location) {
-    	this.read(location, 1);
-    	return info;
+    public List<GocadDataInfo> getInfo(String location, GocadReadOptions options) {
+    	ReadContext ctx = new ReadContext(options);
+        try {
+        	GocadTokenizer tok = this.createTokenizer(location);
+        	try {
+        		this.readGocadTSurf_SinglePass(ctx, tok, location, false);
+        	}
+        	finally {
+        		tok.close();
+        	}
+        }
+        catch (IOException e) {
+			e.printStackTrace();
+        } 
+    	return ctx.info;
+    }
+    
+    /**
+     * gets information about the content of the GOCAD file that has been 
+     * read most recently by this reader. The method returns single 
+     * information objects for each GOCAD object which is part of the GOCAD 
+     * file. Note that the methods taking {@link GocadReadOptions} (except 
+     * for {@link #read(String, GocadReadOptions)}) return the information 
+     * with their results and do not affect this method's result.
+     * 
+     * @return Information objects (empty list, if no file has been read yet)
+     * @deprecated The result refers to the reader's most recent read 
+     * operation, whatever thread performed it; use 
+     * {@link #readObjects(String, GocadReadOptions)} or 
+     * {@link #getInfo(String, GocadReadOptions)} instead.
+     */
+    @Deprecated
+    public List<GocadDataInfo> getInfo() {
+    	List<GocadDataInfo> res = lastInfo;
+    	return (res != null) ? res : new ArrayList<GocadDataInfo>();
+    }
+    
+    // Local (uncompressed) files can be memory-mapped and indexed:
+    private boolean isLocalFile(String location) {
+    	try {
+    		return !location.startsWith("http") 
+    			&& this.getClass().getClassLoader().getResource(location) == null
+    			&& Files.isRegularFile(Paths.get(location))
+    			&& !CompressedInput.isCompressed(Paths.get(location));
+    	}
+    	catch (IOException e) {
+    		return false;
+    	}
+    }
+
+    private GocadTokenizer createTokenizer(String location) 
+    {
+    	try {
+    		if (location.startsWith("http"))
+    			return new GocadTokenizer(CompressedInput.open(new URL(location).openStream()));
+    		InputStream is = 
+    			this.getClass().getClassLoader().getResourceAsStream(location);
+    		if (is != null) 
+    			return new GocadTokenizer(CompressedInput.open(is));
+    		Path path = Paths.get(location);
+    		if (CompressedInput.isCompressed(path))
+    			return new GocadTokenizer(CompressedInput.open(Files.newInputStream(path)));
+    		// Local files will be memory-mapped:
+    		return mapFile(path, 0, -1);
+    	}
+    	catch (T3dException e) {
+    		throw e; // e.g. unsupported compression format
+    	}
+    	catch (Exception e) {
+    		System.out.println("<IoGocadTSurfReader> Data import failed: " + location);
+    		e.printStackTrace();
+    		throw new T3dException("Could not open file " + location);
+    	}
+    }
+    
+    // Creates a tokenizer for the section [from, to) of a local file (to < 0: 
+    // up to the end of the file); the tokenizer owns the file channel, which 
+    // will be closed if the section can not be mapped:
+    private static GocadTokenizer mapFile(Path path, long from, long to) 
+    	throws IOException
+    {
+    	FileChannel channel = FileChannel.open(path);
+    	try {
+    		GocadTokenizer tok = new GocadTokenizer(
+    			channel, from, (to < 0) ? channel.size() : to, true);
+    		channel = null; // handed over to the tokenizer
+    		return tok;
+    	}
+    	finally {
+    		if (channel != null)
+    			channel.close();
+    	}
+    }
+
+    private BufferedReader openLocation(String location) 
+    	throws MalformedURLException
+    {
+		if (location.startsWith("http"))
+			return this.createBufferedReader(new URL(location));
+		else
+			return this.createBufferedReader(location);
     }
     
     private BufferedReader createBufferedReader(URL url) {
 		InputStream is = null;
 		BufferedReader reader;
 		try {
-			is = url.openStream();
+			is = CompressedInput.open(url.openStream());
 			reader = new BufferedReader(new InputStreamReader(is));
 		} catch (IOException e) {
 			System.out.println("<IoGocadTSurfReader> Data import failed: " + url);
@@ -163,7 +797,7 @@ public class IoGocadTSurfReader extends IoObject
         try {
         	if (is == null)
         		is = new FileInputStream(filename);
-        	reader = new BufferedReader(new InputStreamReader(is));
+        	reader = new BufferedReader(new InputStreamReader(CompressedInput.open(is)));
         }
         catch (Exception e) {
         	System.out.println("<IoGocadTSurfReader> Data import failed: " + filename);
@@ -179,9 +813,9 @@ public class IoGocadTSurfReader extends IoObject
     {
         int lineNumber = 0;
     	String line;
-        String tok1, tok2, tok3;
+        String tok1;
 
-        info = new ArrayList<GocadDataInfo>();
+        List<GocadDataInfo> info = new ArrayList<GocadDataInfo>();
 
         try { // Quick and dirty "parser" implementation:
             line = reader.readLine(); 
@@ -204,79 +838,15 @@ public class IoGocadTSurfReader extends IoObject
 					lineNumber++;
 	            }
 	            
-	            boolean objectEnd = false;
+	            boolean objectEnd = false, inPropertyClassHeader = false;
 	            while (line != null && !objectEnd) {
 	            	tok1 = getStrTok(line, 1, " ");
-
-	            	if ("name:".equalsIgnoreCase(tok1)) {
-	            		if (tok1 != null)
-	            			lInfo.setObjectName(getStrTok(line, 2, " "));
-	            	}
-	            	if ("VRTX".equalsIgnoreCase(tok1)) {
-	            		lInfo.incrVrtxCount();
-	            	}
-	            	if ("PVRTX".equalsIgnoreCase(tok1)) {
-	            		lInfo.incrPvrtxCount();
-	            	}
-	            	if ("ATOM".equalsIgnoreCase(tok1)) {
-	            		lInfo.incrAtomCount();
-	            	}
-	            	if ("TRGL".equalsIgnoreCase(tok1)) {
-	            		lInfo.incrTrglCount();
-	            	}
-	            	if ("BORDER".equalsIgnoreCase(tok1)) {
-	            		lInfo.incrBorderCount();
-	            	}
-	            	if ("BSTONE".equalsIgnoreCase(tok1)) {
-	            		lInfo.incrBstoneCount();
-	            	}
-	            	if ("GEOLOGICAL_TYPE".equalsIgnoreCase(tok1)) {
-	            		if (tok1 != null)
-	            			lInfo.setGeologicalType(getStrTok(line, 2, " "));
-	            	}
-	            	if ("GEOLOGICAL_FEATURE".equalsIgnoreCase(tok1)) {
-	            		if (tok1 != null)
-	            			lInfo.setGeologicalFeature(getStrTok(line, 2, " "));
-	            	}
-	            	if ("STRATIGRAPHIC_POSITION".equalsIgnoreCase(tok1)) {
-	            		if (tok1 != null)
-	            			lInfo.setStratigraphicPosition(getStrTok(line, 2, " "));
-	            	}
-	            	if (
-	            		"*border*color:".equalsIgnoreCase(tok1) ||
-	            		"*solid*color:".equalsIgnoreCase(tok1)) 
-	            	{
-	            		if (tok1 != null) {
-	            			boolean solid = 
-	            				tok1.equalsIgnoreCase("*solid*color") ? true : false;
-	            			T3dColor col = new T3dColor();
-	            			tok2 = getStrTok(line, 2, ":");
-			            	if (tok2.contains("#")) {
-				            	tok3 = getStrTok(line, 2, "#");
-				            	col.setHexEncodedValue("0x" + tok3);	            		
-			            	} else {
-				            	float 
-				            		r = toFloat(getStrTok(tok2, 1, " ")),
-				            		g = toFloat(getStrTok(tok2, 2, " ")),
-				            		b = toFloat(getStrTok(tok2, 3, " ")),
-				            		a = toFloat(getStrTok(tok2, 4, " "));
-				            	col.setRGBA(r, g, b, a);
-			            	}
-			            	if (solid)
-		            			lInfo.setSolidColor(col);
-			            	else
-			            		lInfo.setBorderColor(col);
-	            		}
-	            	}
-	            	if ("BEGIN_MEMBERS".equalsIgnoreCase(tok1)) {
-	            		objectEnd = true;
-	            	}
-	            	if ("END_MEMBERS".equalsIgnoreCase(tok1)) {
-	            		objectEnd = true;
-	            	}
-	            	if ("END".equalsIgnoreCase(tok1)) {
-	            		objectEnd = true;
+	            	if (inPropertyClassHeader || isPropertyClassHeader(tok1)) {
+	            		// skip property class definitions (they might contain "name:" too)
+	            		inPropertyClassHeader = !line.trim().endsWith("}");
 	            	}
+	            	else
+	            		objectEnd = this.scanInfo(line, tok1, lInfo);
 	            	
 	                line = reader.readLine(); 
 	                lineNumber++;
@@ -308,14 +878,15 @@ public class IoGocadTSurfReader extends IoObject
     }
 
     private List<GmSimpleTINFeature> 
-		readGocadTSurf_Pass2(BufferedReader reader, String location) 
+		readGocadTSurf_Pass2(
+			BufferedReader reader, String location, List<GocadDataInfo> info) 
 		throws T3dException
 	{
 		int lineNumber = 0;
 		String line;
 		String tok1;
 	
-		tins = new ArrayList<GmSimpleTINFeature>();
+		List<GmSimpleTINFeature> tins = new ArrayList<GmSimpleTINFeature>();
 		int i = 0;
 		String lastObj = null;
 	    
@@ -328,39 +899,16 @@ public class IoGocadTSurfReader extends IoObject
 	            GocadDataInfo lInfo = info.get(i); 
 	            // lInfo gives information about the object to be read next 
 	            	            
-	            ArrayList<VgPoint> points = new ArrayList<VgPoint>();
-	            ArrayList<long[]> triangles = new ArrayList<long[]>();
+	            GmCompactTINGeometry geom = new GmCompactTINGeometry(
+	            	(int) (lInfo.getVrtxCount() + lInfo.getPvrtxCount()), 
+	            	(int) lInfo.getNumberOfTriangles());
+	            GocadVertexIdMap ids = new GocadVertexIdMap();
 
 	            boolean objectEnd = false;
 	            while (line != null && !objectEnd) {
 	            	tok1 = getStrTok(line, 1, " ");
 
-	            	if (
-	            		"VRTX".equalsIgnoreCase(tok1) ||
-	            		"PVRTX".equalsIgnoreCase(tok1))
-	            	{
-		            	//long id = toLong(getStrTok(line, 2, " "));
-		            	double 
-		            		x = toDouble(getStrTok(line, 3, " ")),
-		            		y = toDouble(getStrTok(line, 4, " ")),
-		            		z = toDouble(getStrTok(line, 5, " "));
-		            	VgPoint p = new GmPoint(x, y, z);
-		            	points.add(p); // without id control yet :-( 
-	            	}
-	            	if ("ATOM".equalsIgnoreCase(tok1)) {
-		            	long 
-		            		//id1 = toLong(getStrTok(line, 2, " ")),
-		            		id2 = toLong(getStrTok(line, 3, " "));
-	            		// Duplicate point (again without id control...):
-	            		points.add(points.get((int) id2 - 1));
-	            	}
-	            	if ("TRGL".equalsIgnoreCase(tok1)) {
-		            	long 
-		            		id1 = toLong(getStrTok(line, 2, " ")),
-		            		id2 = toLong(getStrTok(line, 3, " ")),
-		            		id3 = toLong(getStrTok(line, 4, " "));
-		            	triangles.add(new long[]{id1, id2, id3});
-	            	}
+	            	this.scanGeometry(line, tok1, geom, ids);
 	            	if ("GOCAD".equalsIgnoreCase(tok1)) {
 	            		// found next object, so object data have been read completely
 						if (lastObj != null)
@@ -384,33 +932,8 @@ public class IoGocadTSurfReader extends IoObject
 	            	}
 	            }
 
-	            if (lInfo.getObjectType().equalsIgnoreCase("TSurf")) {
-		            GmSimpleTINFeature tin = new GmSimpleTINFeature();
-		            GmSimpleTINGeometry tinGeom = (GmSimpleTINGeometry) tin.getGeometry();
-					if (points.size() != lInfo.getNumberOfVertices()) {
-						throw new T3dException(
-								"Assertion violation: Vertex count difference!"
-								+ " (Read "	+ points.size() + " VRTX/PVRTX elems"
-								+ " while info is " + lInfo.getNumberOfVertices() + ".)"
-								+ " line#:" + lineNumber 
-								+ " info = " + lInfo);
-					}
-					tinGeom.newPointList(points.size());
-		            //tin.setBoundsInvalid(); // for performance reasons! TODO
-		            for (int ii = 0; ii < points.size(); ii++) {
-		                tinGeom.setPoint(ii, points.get(ii));
-		            }
-		            // Triangle mesh:
-		            tinGeom.newTriangleList(triangles.size());
-		            for (int ii = 0; ii < triangles.size(); ii++) {
-		            	long[] tri = triangles.get(ii); 
-		                tinGeom.setTriangle(ii, 
-		                	(int)(tri[0] - 1), (int)(tri[1] - 1), (int)(tri[2] - 1));
-		                // TODO in Triturus fuer long ergaenzen und dann auch long verwenden!
-		            }
-	
-		            tins.add(tin);
-	            }
+	            addTIN(lInfo, geom, tins);
+	            lInfo.setStatistics(GocadObjectStatistics.compute(geom));
 
 				i++;
 				
@@ -438,8 +961,1158 @@ public class IoGocadTSurfReader extends IoObject
         return tins;
 	}
 
+    private List<GmSimpleTINFeature> 
+		readGocadTSurf_SinglePass(
+			ReadContext ctx, GocadTokenizer tok, String location, 
+			boolean readGeometry) 
+		throws T3dException
+	{
+		// Geometry events are needed to collect the object statistics:
+		TINBuilder builder = new TINBuilder(readGeometry, true);
+		builder.filter = ctx.filter;
+		List<long[]> sections = new ArrayList<long[]>();
+		int lineNumber = this.parseObjects(tok, location, builder, true, sections);
+		ctx.offsets = new ArrayList<Long>();
+		for (long[] sec : sections)
+			ctx.offsets.add(sec[0]);
+		ctx.info = builder.info;
+		ctx.tins = builder.tins;
+	    
+        System.out.println(
+        	"Scanned " + lineNumber + " lines of GOCAD data " +
+        	"from \"" + location + "\".");
+        if (readGeometry)
+        	System.out.println("Imported " + ctx.tins.size() + " TSurf object(s)."); 
+        return ctx.tins;
+	}
+
+    private List<GmSimpleTINFeature> readGocadTSurf_Parallel(
+    	final ReadContext ctx, final String location) 
+    	throws IOException
+    {
+    	final FileChannel channel = FileChannel.open(Paths.get(location));
+    	ForkJoinPool pool = new ForkJoinPool(ctx.parallelism);
+    	try {
+    		// Fast scan to locate the object boundaries (if there is no index):
+    		final List<Long> offsets;
+    		GocadFileIndex idx = this.loadIndex(new File(location));
+    		if (idx != null) {
+    			offsets = new ArrayList<Long>();
+    			for (GocadFileIndex.Entry e : idx.getEntries())
+    				offsets.add(e.offset);
+    		}
+    		else {
+    			offsets = this.scanObjectOffsets(
+    				new GocadTokenizer(channel, 0, channel.size(), false));
+    		}
+    		ctx.offsets = new ArrayList<Long>(offsets);
+    		offsets.add(channel.size());
+
+    		// Parse objects concurrently:
+    		List<ForkJoinTask<ObjectParseResult>> tasks = 
+    			new ArrayList<ForkJoinTask<ObjectParseResult>>();
+    		for (int k = 0; k < offsets.size() - 1; k++) {
+    			final long from = offsets.get(k), to = offsets.get(k + 1);
+    			tasks.add(pool.submit(new Callable<ObjectParseResult>() {
+    				public ObjectParseResult call() throws Exception {
+    					ObjectParseResult res = new ObjectParseResult();
+    					GocadTokenizer tok = new GocadTokenizer(channel, from, to, false);
+    					res.builder = new TINBuilder(true, true);
+    					res.builder.filter = ctx.filter;
+    					try {
+    						res.lineCount = parseObjects(tok, location, res.builder, true, null);
+    					}
+    					finally {
+    						tok.close();
+    					}
+    					return res;
+    				}
+    			}));
+    		}
+
+    		// Collect results in file order:
+    		int lineNumber = 0;
+    		for (ForkJoinTask<ObjectParseResult> task : tasks) {
+    			ObjectParseResult res = task.join();
+    			ctx.info.addAll(res.builder.info);
+    			ctx.tins.addAll(res.builder.tins);
+    			lineNumber += res.lineCount;
+    		}
+
+    		System.out.println(
+    			"Scanned " + lineNumber + " lines of GOCAD data " +
+    			"from \"" + location + "\" (" + tasks.size() + " object(s), " + 
+    			ctx.parallelism + " threads).");
+    		System.out.println("Imported " + ctx.tins.size() + " TSurf object(s).");
+    		return ctx.tins;
+    	}
+    	catch (RuntimeException e) {
+    		// ForkJoinTask.join() re-throws the exceptions of the workers
+    		if (e instanceof T3dException)
+    			throw e;
+    		if (e.getCause() instanceof T3dException)
+    			throw (T3dException) e.getCause();
+    		throw new T3dException(e.getMessage());
+    	}
+    	finally {
+    		pool.shutdown();
+    		channel.close();
+    	}
+    }
+
+    // Reads a modified GOCAD file; objects that did not change (i.e. the 
+    // content hashes of their byte ranges did not change) will be taken from 
+    // the given outdated cache, only the other objects will be parsed:
+    private List<GmSimpleTINFeature> readGocadTSurf_Incremental(
+    	ReadContext ctx, String location, GocadTSurfCache cache) 
+    	throws IOException
+    {
+    	// Cached objects by content hash:
+    	Map<Long, LinkedList<Integer>> cached = new HashMap<Long, LinkedList<Integer>>();
+    	for (int i = 0; i < cache.hashes.size(); i++) {
+    		LinkedList<Integer> l = cached.get(cache.hashes.get(i));
+    		if (l == null)
+    			cached.put(cache.hashes.get(i), l = new LinkedList<Integer>());
+    		l.add(i);
+    	}
+
+    	FileChannel channel = FileChannel.open(Paths.get(location));
+    	try {
+    		List<Long> offsets = this.scanObjectOffsets(
+    			new GocadTokenizer(channel, 0, channel.size(), false));
+    		offsets.add(channel.size());
+    		long[] hashes = new long[offsets.size() - 1];
+    		int nParsed = 0;
+    		for (int k = 0; k < hashes.length; k++) {
+    			long from = offsets.get(k), to = offsets.get(k + 1);
+    			hashes[k] = GocadTSurfCache.contentHash(channel, from, to);
+    			LinkedList<Integer> l = cached.get(hashes[k]);
+    			if (l != null && !l.isEmpty()) {
+    				int i = l.removeFirst();
+    				ctx.info.add(cache.info.get(i));
+    				if (cache.objectTins.get(i) != null)
+    					ctx.tins.add(cache.objectTins.get(i));
+    				continue;
+    			}
+    			TINBuilder builder = new TINBuilder(true, true);
+    			GocadTokenizer tok = new GocadTokenizer(channel, from, to, false);
+    			try {
+    				this.parseObjects(tok, location, builder, true, null);
+    			}
+    			finally {
+    				tok.close();
+    			}
+    			ctx.info.addAll(builder.info);
+    			ctx.tins.addAll(builder.tins);
+    			nParsed++;
+    		}
+    		ctx.hashes = hashes;
+    		
+    		System.out.println("Parsed " + nParsed + " modified object(s) of " 
+    			+ hashes.length + " from \"" + location + "\", " 
+    			+ "took the other objects from cache.");
+    		return ctx.tins;
+    	}
+    	finally {
+    		channel.close();
+    	}
+    }
+
+    // Computes the content hashes of the objects starting at the given file 
+    // positions (if unknown, the positions will be determined):
+    private long[] contentHashes(String location, List<Long> offsets) 
+    	throws IOException
+    {
+    	FileChannel channel = FileChannel.open(Paths.get(location));
+    	try {
+    		if (offsets == null) {
+    			offsets = this.scanObjectOffsets(
+    				new GocadTokenizer(channel, 0, channel.size(), false));
+    		}
+    		long[] hashes = new long[offsets.size()];
+    		for (int k = 0; k < hashes.length; k++) {
+    			long to = (k + 1 < hashes.length) ? offsets.get(k + 1) : channel.size();
+    			hashes[k] = GocadTSurfCache.contentHash(channel, offsets.get(k), to);
+    		}
+    		return hashes;
+    	}
+    	finally {
+    		channel.close();
+    	}
+    }
+
+    // State of a single read operation; the options are copied when the 
+    // operation starts:
+    private static class ReadContext {
+    	List<GocadDataInfo> info = new ArrayList<GocadDataInfo>();
+    	List<GmSimpleTINFeature> tins = new ArrayList<GmSimpleTINFeature>();
+    	List<Long> offsets; // file positions of the objects, if known
+    	long[] hashes; // content hashes of the objects, if known
+    	final int parallelism;
+    	final boolean useCache;
+    	final GocadObjectFilter filter;
+
+    	ReadContext(GocadReadOptions options) {
+    		parallelism = options.getParallelism();
+    		useCache = options.getUseCache();
+    		filter = options.getFilter();
+    	}
+    }
+
+    // Holds the results of parsing a section of a GOCAD file:
+    private static class ObjectParseResult {
+    	TINBuilder builder;
+    	int lineCount;
+    }
+
+    // Determines the input positions of all "GOCAD" lines:
+    private List<Long> scanObjectOffsets(GocadTokenizer tok) throws IOException 
+    {
+    	List<Long> offsets = new ArrayList<Long>();
+    	try {
+    		while (tok.nextLine()) {
+    			if (tok.tokenEquals(1, "GOCAD"))
+    				offsets.add(tok.linePosition());
+    		}
+    	}
+    	finally {
+    		tok.close();
+    	}
+    	return offsets;
+    }
+
+    // Loads the index of the given GOCAD file or builds it, if there is no 
+    // valid index:
+    private GocadFileIndex getIndex(File file) throws IOException
+    {
+    	GocadFileIndex idx = this.loadIndex(file);
+    	if (idx != null)
+    		return idx;
+    	
+    	idx = new GocadFileIndex(file);
+    	TINBuilder builder = new TINBuilder(false, false);
+    	List<GocadDataInfo> lInfo = builder.info;
+    	List<long[]> sections = new ArrayList<long[]>();
+    	GocadTokenizer tok = mapFile(file.toPath(), 0, -1);
+    	int lineCount;
+    	try {
+    		lineCount = this.parseObjects(tok, file.getPath(), builder, false, sections);
+    	}
+    	finally {
+    		tok.close();
+    	}
+    	for (int k = 0; k < sections.size(); k++) {
+    		long[] sec = sections.get(k);
+    		long 
+    			end = (k + 1 < sections.size()) ? sections.get(k + 1)[0] : file.length(),
+    			endLine = (k + 1 < sections.size()) ? sections.get(k + 1)[1] : lineCount + 1;
+    		idx.addEntry(sec[0], end - sec[0], endLine - sec[1], lInfo.get(k));
+    	}
+    	if (!idx.save(file)) {
+    		System.out.println(
+    			"<IoGocadTSurfReader> Could not write index file for " + file);
+    	}
+    	indices.put(file.getAbsolutePath(), idx);
+    	return idx;
+    }
+
+    // Gets the index of the given GOCAD file from memory or from the sidecar 
+    // file; returns null, if there is no valid index:
+    private GocadFileIndex loadIndex(File file) 
+    {
+    	String key = file.getAbsolutePath();
+    	GocadFileIndex idx = indices.get(key);
+    	if (idx != null && idx.isValidFor(file))
+    		return idx;
+    	idx = GocadFileIndex.load(file);
+    	if (idx != null)
+    		indices.put(key, idx);
+    	else
+    		indices.remove(key);
+    	return idx;
+    }
+
+    // Parses the GOCAD objects provided by the given tokenizer and passes 
+    // the object data to the given handler; returns the number of lines 
+    // read. For geometryEvents = false, only the object begin and end events
+    // will be generated. Optionally, the input positions and line numbers of 
+    // the objects' "GOCAD" lines will be added to the given section list: 
+    private int parseObjects(
+    	GocadTokenizer tok, String location, GocadHandler handler, 
+    	boolean geometryEvents, List<long[]> sections) 
+    	throws T3dException
+    {
+		int lineNumber = 0;
+
+		GocadDataInfo lInfo = null; // information about the current object 
+		boolean objectEnd = false, inPropertyClassHeader = false;
+		double[] props = new double[0]; // re-used PVRTX property buffer
+	    
+	    try {
+	        while (tok.nextLine()) 
+	        {
+	        	lineNumber++;
+	        	
+            	if (tok.tokenEquals(1, "GOCAD")) {
+            		// found next object, so previous object data have been 
+            		// read completely
+            		if (lInfo != null)
+            			handler.onObjectEnd(lInfo);
+            		
+					lInfo = new GocadDataInfo();
+					lInfo.setObjectType(tok.stringToken(2));
+					if (sections != null)
+						sections.add(new long[] {tok.linePosition(), lineNumber});
+					handler.onObjectBegin(lInfo);
+					objectEnd = false;
+					inPropertyClassHeader = false;
+					continue;
+            	}
+            	if (lInfo == null || objectEnd)
+            		continue;
+            	
+            	if (tok.tokenEquals(1, "VRTX")) {
+            		lInfo.incrVrtxCount();
+            		if (geometryEvents) {
+            			handler.onVertex(tok.longToken(2),
+            				tok.doubleToken(3), tok.doubleToken(4), tok.doubleToken(5), 
+            				NO_PROPS);
+            		}
+            	}
+            	else if (tok.tokenEquals(1, "PVRTX")) {
+            		lInfo.incrPvrtxCount();
+            		if (geometryEvents) {
+            			int nProps = Math.max(tok.numberOfTokens() - 5, 0);
+            			if (props.length != nProps)
+            				props = new double[nProps];
+            			for (int k = 0; k < nProps; k++)
+            				props[k] = this.propertyValue(tok, k + 6);
+            			handler.onVertex(tok.longToken(2),
+            				tok.doubleToken(3), tok.doubleToken(4), tok.doubleToken(5), 
+            				props);
+            		}
+            	}
+            	else if (tok.tokenEquals(1, "ATOM")) {
+            		lInfo.incrAtomCount();
+            		if (geometryEvents)
+            			handler.onAtom(tok.longToken(2), tok.longToken(3));
+            	}
+            	else if (tok.tokenEquals(1, "TRGL")) {
+            		lInfo.incrTrglCount();
+            		if (geometryEvents) {
+            			handler.onTriangle(
+            				tok.longToken(2), tok.longToken(3), tok.longToken(4));
+            		}
+            	}
+            	else if (tok.tokenEquals(1, "SEG")) {
+            		lInfo.incrSegCount();
+            		if (geometryEvents)
+            			handler.onSegment(tok.longToken(2), tok.longToken(3));
+            	}
+            	else if (tok.tokenEquals(1, "TFACE") || tok.tokenEquals(1, "ILINE")) {
+            		if (geometryEvents)
+            			handler.onPartBegin();
+            	}
+            	else if (tok.tokenEquals(1, "BORDER")) {
+            		lInfo.incrBorderCount();
+            		if (geometryEvents && tok.numberOfTokens() >= 4) {
+            			handler.onBorder(
+            				tok.longToken(2), tok.longToken(3), tok.longToken(4));
+            		}
+            	}
+            	else if (tok.tokenEquals(1, "BSTONE")) {
+            		lInfo.incrBstoneCount();
+            		if (geometryEvents && tok.numberOfTokens() >= 2)
+            			handler.onBstone(tok.longToken(2));
+            	}
+            	else if (tok.numberOfTokens() > 0) {
+            		// Header information, colors etc. (rare, so String 
+            		// processing is acceptable here):
+            		String line = tok.line(), tok1 = getStrTok(line, 1, " ");
+            		if (inPropertyClassHeader || isPropertyClassHeader(tok1)) {
+            			// skip property class definitions (they might contain "name:" too)
+            			inPropertyClassHeader = !line.trim().endsWith("}");
+            			if (!inPropertyClassHeader)
+            				handler.onHeaderLine(line);
+            			continue;
+            		}
+            		objectEnd = this.scanInfo(line, tok1, lInfo);
+            		if (!objectEnd)
+            			handler.onHeaderLine(line);
+            	}
+	        }
+	        
+	        if (lInfo != null)
+	        	handler.onObjectEnd(lInfo);
+	    }
+	    catch (FileNotFoundException e) {
+			throw new T3dException(
+					"Could not access file \"" + location + "\".");
+	    }
+	    catch (IOException e) {
+			throw new T3dException(e.getMessage());
+	    }
+	    catch (T3dException e) {
+			throw new T3dException(e.getMessage());
+	    }
+	    catch (CancellationException e) {
+			throw e; // cancelled by the handler
+	    }
+	    catch (Exception e) {
+			e.printStackTrace();
+			throw new T3dException(
+					"Parser error in \"" + location + "\":" + lineNumber);
+	    }
+	    
+        return lineNumber;
+	}
+
+    private static final double[] NO_PROPS = new double[0];
+
+    private double propertyValue(GocadTokenizer tok, int i) {
+    	try {
+    		return tok.doubleToken(i);
+    	}
+    	catch (NumberFormatException e) {
+    		return Double.NaN; // e.g. non-numeric no-data markers
+    	}
+    }
+
+    // Handler collecting the GOCAD object information and, optionally, 
+    // the object statistics and the TINs. If TINs are built, the statistics 
+    // of TSurf objects will be computed from the TIN geometry at the 
+    // object's end, i.e. not on the parser's hot path:
+    private static class TINBuilder implements GocadHandler
+    {
+    	List<GocadDataInfo> info = new ArrayList<GocadDataInfo>();
+    	List<GmSimpleTINFeature> tins = new ArrayList<GmSimpleTINFeature>();
+    	GocadObjectFilter filter; // optional object selection
+    	boolean buildTINs, collectStats;
+    	GmCompactTINGeometry geom; // transient if !buildTINs
+    	GocadObjectStatistics stats;
+    	GocadVertexIdMap ids;
+    	GocadDataInfo lInfo;
+    	double[] noData;
+    	int selected; // 1: selected, -1: not selected, 0: not decided yet
+    	
+    	TINBuilder(boolean buildTINs, boolean collectStats) {
+    		this.buildTINs = buildTINs;
+    		this.collectStats = collectStats;
+    	}
+    	
+    	public void onObjectBegin(GocadDataInfo lInfo) {
+    		info.add(lInfo);
+    		this.lInfo = lInfo;
+    		noData = null;
+    		if (buildTINs || collectStats) {
+    			geom = new GmCompactTINGeometry();
+    			ids = new GocadVertexIdMap();
+    		}
+    		stats = (collectStats && !(buildTINs && isTSurf(lInfo))) ? 
+    			new GocadObjectStatistics() : null;
+    		selected = (filter == null) ? 1 : 0;
+    	}
+
+    	// checks if the current object has been selected; the decision is 
+    	// made when the first geometry element (or the object end) is reached:
+    	boolean selected() 
+    	{
+    		if (selected == 0) {
+    			selected = filter.accepts(lInfo) ? 1 : -1;
+    			if (selected < 0) {
+    				info.remove(info.size() - 1);
+    				geom = null;
+    				ids = null;
+    				stats = null;
+    			}
+    		}
+    		return selected > 0;
+    	}
+
+    	public void onVertex(long id, double x, double y, double z, double[] props) 
+    	{
+    		if (!this.selected())
+    			return;
+    		if (stats != null)
+    			stats.addVertex(x, y, z);
+    		if (props.length == 0 || !buildTINs) {
+        		ids.addVertex(id, geom.addPoint(x, y, z));
+        		return;
+    		}
+    		if (noData == null) {
+    			// first PVRTX element, the property header has been read now
+    			if (geom.numberOfProperties() == 0)
+    				geom.setPropertyNames(lInfo.getPropertyColumnNames(props.length));
+    			noData = lInfo.getPropertyColumnNoDataValues(props.length);
+    		}
+    		for (int k = 0; k < props.length && k < noData.length; k++) {
+    			if (props[k] == noData[k])
+    				props[k] = Double.NaN;
+    		}
+    		ids.addVertex(id, geom.addPoint(x, y, z, props));
+    	}
+
+    	public void onAtom(long id, long refId) {
+    		if (this.selected())
+    			ids.addAlias(id, refId);
+    	}
+
+    	public void onTriangle(long a, long b, long c) 
+    	{
+    		if (!this.selected())
+    			return;
+    		int ia = ids.indexOf(a), ib = ids.indexOf(b), ic = ids.indexOf(c);
+    		if (buildTINs)
+    			geom.addTriangle(ia, ib, ic);
+    		if (stats != null) {
+    			stats.addTriangle(
+    				geom.getX(ia), geom.getY(ia), geom.getZ(ia), 
+    				geom.getX(ib), geom.getY(ib), geom.getZ(ib), 
+    				geom.getX(ic), geom.getY(ic), geom.getZ(ic));
+    		}
+    	}
+
+    	public void onPartBegin() {
+    		if (buildTINs && this.selected())
+    			geom.beginPatch();
+    	}
+
+    	public void onBstone(long id) {
+    		if (buildTINs && this.selected())
+    			geom.addBstone(ids.indexOf(id));
+    	}
+
+    	public void onBorder(long id, long a, long b) {
+    		if (buildTINs && this.selected())
+    			geom.addBorder(ids.indexOf(a), ids.indexOf(b));
+    	}
+
+    	public void onObjectEnd(GocadDataInfo lInfo) {
+    		if (!this.selected())
+    			return;
+    		if (buildTINs)
+    			addTIN(lInfo, geom, tins);
+    		if (stats != null)
+    			lInfo.setStatistics(stats);
+    		else if (collectStats && buildTINs && isTSurf(lInfo))
+    			lInfo.setStatistics(GocadObjectStatistics.compute(geom));
+    		geom = null;
+    		ids = null;
+    		stats = null;
+    	}
+    }
+
+    // Handler simplifying the TSurf objects by vertex clustering:
+    private static class PreviewBuilder extends TINBuilder
+    {
+    	private int maxTriangles;
+    	private GocadVertexClustering clustering;
+
+    	PreviewBuilder(int maxTriangles) {
+    		super(false, false);
+    		this.maxTriangles = maxTriangles;
+    	}
+
+    	@Override
+    	public void onObjectBegin(GocadDataInfo lInfo) {
+    		super.onObjectBegin(lInfo);
+    		ids = new GocadVertexIdMap();
+    		clustering = "TSurf".equalsIgnoreCase(lInfo.getObjectType()) ? 
+    			new GocadVertexClustering(maxTriangles) : null;
+    	}
+
+    	@Override
+    	public void onVertex(long id, double x, double y, double z, double[] props) {
+    		if (this.selected() && clustering != null)
+    			ids.addVertex(id, clustering.addVertex(x, y, z));
+    	}
+
+    	@Override
+    	public void onTriangle(long a, long b, long c) {
+    		if (this.selected() && clustering != null)
+    			clustering.addTriangle(ids.indexOf(a), ids.indexOf(b), ids.indexOf(c));
+    	}
+
+    	@Override
+    	public void onObjectEnd(GocadDataInfo lInfo) 
+    	{
+    		if (this.selected() && clustering != null) {
+    			GmCompactTINGeometry geom = clustering.getGeometry();
+    			if (filter != null && filter.getEnvelope() != null) {
+    				geom = filterTIN(geom, filter);
+    				if (geom.numberOfTriangles() == 0) 
+    					info.remove(lInfo); // outside the area of interest
+    			}
+    			if (info.contains(lInfo)) {
+    				GmSimpleTINFeature tin = new GmSimpleTINFeature();
+    				tin.setGeometry(geom);
+    				tins.add(tin);
+    			}
+    		}
+    		clustering = null;
+    		ids = null;
+    	}
+    }
+
+    // Handler passing each TSurf object to an import stream as soon as it
+    // has been parsed:
+    private static class StreamBuilder extends TINBuilder
+    {
+    	private IoImportStream<GocadTSurfObject> stream;
+
+    	StreamBuilder(IoImportStream<GocadTSurfObject> stream) {
+    		super(true, true);
+    		this.stream = stream;
+    	}
+
+    	@Override
+    	public void onObjectEnd(GocadDataInfo lInfo)
+    	{
+    		super.onObjectEnd(lInfo);
+    		info.clear(); // nothing is kept
+    		if (tins.isEmpty())
+    			return; // not selected or no TSurf
+    		GmSimpleTINFeature tin = tins.remove(0);
+    		if (filter != null && filter.getEnvelope() != null) {
+    			GmCompactTINGeometry geom =
+    				filterTIN((GmCompactTINGeometry) tin.getGeometry(), filter);
+    			if (geom.numberOfTriangles() == 0)
+    				return; // outside the area of interest
+    			lInfo.setStatistics(GocadObjectStatistics.compute(geom));
+    			tin.setGeometry(geom);
+    		}
+    		if (!stream.put(new GocadTSurfObject(lInfo, tin)))
+    			throw new CancellationException(); // stream has been closed
+    	}
+    }
+
     // Private helpers:
 
+    // Evaluates a single line of GOCAD object data and adds the vertices and
+    // triangles given there to the given TIN geometry:
+    private void scanGeometry(
+    	String line, String tok1, GmCompactTINGeometry geom, GocadVertexIdMap ids) 
+    {
+    	if (
+    		"VRTX".equalsIgnoreCase(tok1) ||
+    		"PVRTX".equalsIgnoreCase(tok1))
+    	{
+    		long id = toLong(getStrTok(line, 2, " "));
+    		double 
+    			x = toDouble(getStrTok(line, 3, " ")),
+    			y = toDouble(getStrTok(line, 4, " ")),
+    			z = toDouble(getStrTok(line, 5, " "));
+    		ids.addVertex(id, geom.addPoint(x, y, z));
+    	}
+    	if ("ATOM".equalsIgnoreCase(tok1)) {
+    		long 
+    			id1 = toLong(getStrTok(line, 2, " ")),
+    			id2 = toLong(getStrTok(line, 3, " "));
+    		ids.addAlias(id1, id2); // no point copy needed
+    	}
+    	if ("TRGL".equalsIgnoreCase(tok1)) {
+    		long 
+    			id1 = toLong(getStrTok(line, 2, " ")),
+    			id2 = toLong(getStrTok(line, 3, " ")),
+    			id3 = toLong(getStrTok(line, 4, " "));
+    		geom.addTriangle(ids.indexOf(id1), ids.indexOf(id2), ids.indexOf(id3));
+    	}
+    }
+
+    // Reads the TINs from a local file, restricted to the filter's area of 
+    // interest (two-step approach, see GocadReadOptions.setFilter()):
+    private List<GmSimpleTINFeature> readGocadTSurf_Filtered(
+    	ReadContext ctx, String location) 
+    	throws IOException
+    {
+
+    	FileChannel channel = FileChannel.open(Paths.get(location));
+    	try {
+    		// 1st step: Determine triangles inside the area of interest:
+    		AOIScanner scanner = new AOIScanner(ctx.filter);
+    		List<long[]> sections = new ArrayList<long[]>();
+    		GocadTokenizer tok = new GocadTokenizer(channel, 0, channel.size(), false);
+    		int lineNumber;
+    		try {
+    			lineNumber = this.parseObjects(tok, location, scanner, true, sections);
+    		}
+    		finally {
+    			tok.close();
+    		}
+
+    		// 2nd step: Read the vertices referred to by these triangles:
+    		for (AOICandidate cand : scanner.candidates) {
+    			long 
+    				from = sections.get(cand.objectIndex)[0], 
+    				to = (cand.objectIndex + 1 < sections.size()) ? 
+    					sections.get(cand.objectIndex + 1)[0] : channel.size();
+    			AOICompactor compactor = new AOICompactor(cand);
+    			tok = new GocadTokenizer(channel, from, to, false);
+    			try {
+    				this.parseObjects(tok, location, compactor, true, null);
+    			}
+    			finally {
+    				tok.close();
+    			}
+    			ctx.info.addAll(compactor.info);
+    			ctx.tins.addAll(compactor.tins);
+    		}
+
+    		System.out.println(
+    			"Scanned " + lineNumber + " lines of GOCAD data " +
+    			"from \"" + location + "\".");
+    		System.out.println("Imported " + ctx.tins.size() + " TSurf object(s) " 
+    			+ "intersecting the area of interest."); 
+    	}
+    	finally {
+    		channel.close();
+    	}
+    	return ctx.tins;
+    }
+
+    // Restricts the given TINs to the filter's area of interest (used for 
+    // non-local locations, i.e. without memory savings):
+    private List<GmSimpleTINFeature> applyAreaOfInterest(ReadContext ctx) 
+    {
+    	List<GocadDataInfo> resInfo = new ArrayList<GocadDataInfo>();
+    	List<GmSimpleTINFeature> resTins = new ArrayList<GmSimpleTINFeature>();
+    	int i = 0;
+    	for (GocadDataInfo lInfo : ctx.info) {
+    		if (!lInfo.getObjectType().equalsIgnoreCase("TSurf"))
+    			continue;
+    		GmSimpleTINFeature tin = ctx.tins.get(i++);
+    		GmCompactTINGeometry geom = 
+    			filterTIN((GmCompactTINGeometry) tin.getGeometry(), ctx.filter);
+    		if (geom.numberOfTriangles() == 0)
+    			continue;
+    		lInfo.setStatistics(GocadObjectStatistics.compute(geom));
+    		tin.setGeometry(geom);
+    		resInfo.add(lInfo);
+    		resTins.add(tin);
+    	}
+    	ctx.info = resInfo;
+    	ctx.tins = resTins;
+    	return resTins;
+    }
+
+    private static GmCompactTINGeometry filterTIN(
+    	GmCompactTINGeometry geom, GocadObjectFilter filter)
+    {
+    	AOICandidate cand = new AOICandidate(0);
+    	double[] xyz = geom.getCoordinateArray();
+    	int[] idx = geom.getIndexArray();
+    	int p = 0;
+    	for (int k = 0; k < 3 * geom.numberOfTriangles(); k += 3) {
+    		while (p < geom.numberOfPatches() && 3 * geom.getPatchStart(p) == k) {
+    			cand.beginPatch(); // patch starts at the same index are consumed, too
+    			p++;
+    		}
+    		int a = idx[k], b = idx[k + 1], c = idx[k + 2];
+    		if ((filter.outcode(xyz[3 * a], xyz[3 * a + 1]) 
+    			& filter.outcode(xyz[3 * b], xyz[3 * b + 1]) 
+    			& filter.outcode(xyz[3 * c], xyz[3 * c + 1])) == 0)
+    			cand.addTriangle(a, b, c);
+    	}
+
+    	int[] rank = cand.ranks();
+    	GmCompactTINGeometry res = new GmCompactTINGeometry(
+    		cand.rank(rank, geom.numberOfPoints()), cand.nTriangles);
+    	int nProps = geom.numberOfProperties();
+    	if (nProps > 0) {
+    		String[] names = new String[nProps];
+    		for (int j = 0; j < nProps; j++)
+    			names[j] = geom.getPropertyName(j);
+    		res.setPropertyNames(names);
+    	}
+    	double[] values = new double[nProps];
+    	for (int i = 0; i < geom.numberOfPoints(); i++) {
+    		if (!cand.isMarked(i))
+    			continue;
+    		for (int j = 0; j < nProps; j++)
+    			values[j] = geom.getPropertyColumn(j)[i];
+    		res.addPoint(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2], values);
+    	}
+    	cand.addTriangles(res, rank);
+
+    	// Keep the border topology as far as the vertices have been kept:
+    	int[] bstones = geom.getBstoneArray(), borders = geom.getBorderArray();
+    	for (int b = 0; b < geom.numberOfBstones(); b++) {
+    		if (cand.isMarked(bstones[b]))
+    			res.addBstone(cand.rank(rank, bstones[b]));
+    	}
+    	for (int b = 0; b < geom.numberOfBorders(); b++) {
+    		int i1 = borders[2 * b], i2 = borders[2 * b + 1];
+    		if (cand.isMarked(i1) && cand.isMarked(i2))
+    			res.addBorder(cand.rank(rank, i1), cand.rank(rank, i2));
+    	}
+    	res.trimToSize();
+    	return res;
+    }
+
+    // TSurf object intersecting the area of interest:
+    private static class AOICandidate 
+    {
+    	int objectIndex;
+    	int[] triangles = new int[3 * 1024]; // original vertex indices
+    	int nTriangles = 0;
+    	int[] patchStarts = new int[16]; // first selected triangle of each patch
+    	int nPatches = 0;
+    	long[] marks = new long[16]; // bit set marking the vertices needed
+
+    	AOICandidate(int objectIndex) {
+    		this.objectIndex = objectIndex;
+    	}
+
+    	void addTriangle(int a, int b, int c) {
+    		if (3 * nTriangles + 3 > triangles.length)
+    			triangles = Arrays.copyOf(triangles, 2 * triangles.length);
+    		triangles[3 * nTriangles] = a;
+    		triangles[3 * nTriangles + 1] = b;
+    		triangles[3 * nTriangles + 2] = c;
+    		nTriangles++;
+    		this.mark(a);
+    		this.mark(b);
+    		this.mark(c);
+    	}
+
+    	void beginPatch() {
+    		if (nPatches >= patchStarts.length)
+    			patchStarts = Arrays.copyOf(patchStarts, 2 * patchStarts.length);
+    		patchStarts[nPatches++] = nTriangles;
+    	}
+
+    	void mark(int i) {
+    		if ((i >> 6) >= marks.length)
+    			marks = Arrays.copyOf(marks, Math.max(2 * marks.length, (i >> 6) + 1));
+    		marks[i >> 6] |= 1L << i;
+    	}
+
+    	boolean isMarked(int i) {
+    		return (i >> 6) < marks.length && (marks[i >> 6] & (1L << i)) != 0;
+    	}
+
+    	// gets the number of marked vertices preceding each 64-bit word:
+    	int[] ranks() {
+    		int[] res = new int[marks.length + 1];
+    		for (int w = 0; w < marks.length; w++)
+    			res[w + 1] = res[w] + Long.bitCount(marks[w]);
+    		return res;
+    	}
+
+    	// gets the new (compacted) index of vertex i, i.e. the number of 
+    	// marked vertices preceding vertex i:
+    	int rank(int[] ranks, int i) {
+    		int w = i >> 6;
+    		if (w >= marks.length)
+    			return ranks[marks.length];
+    		return ranks[w] + Long.bitCount(marks[w] & ((1L << i) - 1));
+    	}
+
+    	void addTriangles(GmCompactTINGeometry geom, int[] ranks) {
+    		int p = 0;
+    		for (int k = 0; k < 3 * nTriangles; k += 3) {
+    			while (p < nPatches && 3 * patchStarts[p] == k) {
+    				geom.beginPatch(); // empty patches will be merged (not kept)
+    				p++;
+    			}
+    			geom.addTriangle(
+    				this.rank(ranks, triangles[k]), 
+    				this.rank(ranks, triangles[k + 1]), 
+    				this.rank(ranks, triangles[k + 2]));
+    		}
+    	}
+    }
+
+    // Handler performing the 1st step of an import restricted to an area of 
+    // interest: For each vertex, only its outcode (see 
+    // GocadObjectFilter.outcode()) is kept; triangles intersecting the area 
+    // are collected as candidates.
+    private static class AOIScanner implements GocadHandler
+    {
+    	List<AOICandidate> candidates = new ArrayList<AOICandidate>();
+    	private GocadObjectFilter filter;
+    	private int objectCount = 0;
+    	private GocadDataInfo lInfo;
+    	private int selected; // cf. TINBuilder
+    	private AOICandidate cand;
+    	private GocadVertexIdMap ids;
+    	private byte[] outcodes;
+    	private int nVertices;
+
+    	AOIScanner(GocadObjectFilter filter) {
+    		this.filter = filter;
+    	}
+
+    	public void onObjectBegin(GocadDataInfo lInfo) {
+    		this.lInfo = lInfo;
+    		objectCount++;
+    		selected = "TSurf".equalsIgnoreCase(lInfo.getObjectType()) ? 0 : -1;
+    	}
+
+    	private boolean selected() 
+    	{
+    		if (selected == 0) {
+    			selected = filter.accepts(lInfo) ? 1 : -1;
+    			if (selected > 0) {
+    				cand = new AOICandidate(objectCount - 1);
+    				ids = new GocadVertexIdMap();
+    				outcodes = new byte[1024];
+    				nVertices = 0;
+    			}
+    		}
+    		return selected > 0;
+    	}
+
+    	public void onVertex(long id, double x, double y, double z, double[] props) {
+    		if (!this.selected())
+    			return;
+    		if (nVertices >= outcodes.length)
+    			outcodes = Arrays.copyOf(outcodes, 2 * outcodes.length);
+    		outcodes[nVertices] = (byte) filter.outcode(x, y);
+    		ids.addVertex(id, nVertices++);
+    	}
+
+    	public void onAtom(long id, long refId) {
+    		if (this.selected())
+    			ids.addAlias(id, refId);
+    	}
+
+    	public void onTriangle(long a, long b, long c) {
+    		if (!this.selected())
+    			return;
+    		int ia = ids.indexOf(a), ib = ids.indexOf(b), ic = ids.indexOf(c);
+    		if ((outcodes[ia] & outcodes[ib] & outcodes[ic]) == 0)
+    			cand.addTriangle(ia, ib, ic);
+    	}
+
+    	public void onPartBegin() {
+    		if (this.selected())
+    			cand.beginPatch();
+    	}
+
+    	public void onObjectEnd(GocadDataInfo lInfo) {
+    		if (this.selected() && cand.nTriangles > 0)
+    			candidates.add(cand);
+    		cand = null;
+    		ids = null;
+    		outcodes = null;
+    	}
+    }
+
+    // Handler performing the 2nd step of an import restricted to an area of 
+    // interest: Only the vertices referred to by the candidate triangles are 
+    // added to the TIN.
+    private static class AOICompactor extends TINBuilder
+    {
+    	private AOICandidate cand;
+    	private int vertexIndex = 0; // original index of the current vertex
+
+    	AOICompactor(AOICandidate cand) {
+    		super(true, false);
+    		this.cand = cand;
+    	}
+
+    	@Override
+    	public void onVertex(long id, double x, double y, double z, double[] props) {
+    		if (cand.isMarked(vertexIndex++))
+    			super.onVertex(id, x, y, z, props);
+    	}
+
+    	@Override
+    	public void onAtom(long id, long refId) {
+    		// ATOMs referred to by triangles have been resolved in the 1st 
+    		// step; the aliases of kept vertices are needed for BSTONE and 
+    		// BORDER elements:
+    		if (ids.contains(refId))
+    			ids.addAlias(id, refId);
+    	}
+
+    	@Override
+    	public void onTriangle(long a, long b, long c) {
+    		// triangles have been selected in the 1st step
+    	}
+
+    	@Override
+    	public void onPartBegin() {
+    		// patches have been determined in the 1st step
+    	}
+
+    	@Override
+    	public void onBstone(long id) {
+    		if (ids.contains(id))
+    			super.onBstone(id);
+    	}
+
+    	@Override
+    	public void onBorder(long id, long a, long b) {
+    		if (ids.contains(a) && ids.contains(b))
+    			super.onBorder(id, a, b);
+    	}
+
+    	@Override
+    	public void onObjectEnd(GocadDataInfo lInfo) 
+    	{
+    		cand.addTriangles(geom, cand.ranks());
+    		geom.checkIndices();
+    		geom.trimToSize();
+    		lInfo.setStatistics(GocadObjectStatistics.compute(geom));
+
+    		GmSimpleTINFeature tin = new GmSimpleTINFeature();
+    		tin.setGeometry(geom);
+    		tins.add(tin);
+    		geom = null;
+    		ids = null;
+    	}
+    }
+
+    private static boolean isTSurf(GocadDataInfo lInfo) {
+    	return "TSurf".equalsIgnoreCase(lInfo.getObjectType());
+    }
+
+    // Pairs the TSurf objects' information with the given TINs (in file 
+    // order):
+    private static List<GocadTSurfObject> toObjects(
+    	List<GocadDataInfo> info, List<GmSimpleTINFeature> tins)
+    {
+    	List<GocadTSurfObject> res = new ArrayList<GocadTSurfObject>();
+    	int i = 0;
+    	for (GocadDataInfo lInfo : info) {
+    		if (isTSurf(lInfo) && i < tins.size())
+    			res.add(new GocadTSurfObject(lInfo, tins.get(i++)));
+    	}
+    	return res;
+    }
+
+    // Adds a TIN holding the given geometry to the result list, if the 
+    // described object is a TSurf:
+    private static void addTIN(
+    	GocadDataInfo lInfo, GmCompactTINGeometry geom, List<GmSimpleTINFeature> tins)
+    {
+    	if (!lInfo.getObjectType().equalsIgnoreCase("TSurf")) 
+    		return;
+    	
+    	long nVrtx = lInfo.getVrtxCount() + lInfo.getPvrtxCount(); // ATOMs are aliases
+    	if (geom.numberOfPoints() != nVrtx) {
+    		throw new T3dException(
+    			"Assertion violation: Vertex count difference!"
+    			+ " (Read "	+ geom.numberOfPoints() + " VRTX/PVRTX elems"
+    			+ " while info is " + nVrtx + ".)"
+    			+ " info = " + lInfo);
+    	}
+    	geom.checkIndices();
+    	geom.trimToSize();
+    	
+    	GmSimpleTINFeature tin = new GmSimpleTINFeature();
+    	tin.setGeometry(geom);
+    	tins.add(tin);
+    }
+
+    // Checks if a line starts a property class definition block:
+    private static boolean isPropertyClassHeader(String tok1) {
+    	return "PROPERTY_CLASS_HEADER".equalsIgnoreCase(tok1);
+    }
+
+    // Evaluates a single line of GOCAD object data and updates the given 
+    // information object; returns true, if the line terminates the object's
+    // header scan. Lines inside property class definition blocks have to be
+    // skipped by the caller (see isPropertyClassHeader()): 
+    private boolean scanInfo(String line, String tok1, GocadDataInfo lInfo) 
+    {
+        String tok2, tok3;
+
+    	if ("PROPERTIES".equalsIgnoreCase(tok1)) {
+    		String[] names = line.trim().split("[ \\t]+");
+    		lInfo.setPropertyNames(Arrays.copyOfRange(names, 1, names.length));
+    	}
+    	if ("ESIZES".equalsIgnoreCase(tok1)) {
+    		String[] vals = line.trim().split("[ \\t]+");
+    		int[] sizes = new int[vals.length - 1];
+    		for (int k = 0; k < sizes.length; k++)
+    			sizes[k] = (int) toLong(vals[k + 1]);
+    		lInfo.setPropertySizes(sizes);
+    	}
+    	if ("NO_DATA_VALUES".equalsIgnoreCase(tok1)) {
+    		String[] vals = line.trim().split("[ \\t]+");
+    		double[] noData = new double[vals.length - 1];
+    		for (int k = 0; k < noData.length; k++)
+    			noData[k] = toDouble(vals[k + 1]);
+    		lInfo.setNoDataValues(noData);
+    	}
+    	if ("name:".equalsIgnoreCase(tok1)) {
+    		if (tok1 != null)
+    			lInfo.setObjectName(getStrTok(line, 2, " "));
+    	}
+    	if ("VRTX".equalsIgnoreCase(tok1)) {
+    		lInfo.incrVrtxCount();
+    	}
+    	if ("PVRTX".equalsIgnoreCase(tok1)) {
+    		lInfo.incrPvrtxCount();
+    	}
+    	if ("ATOM".equalsIgnoreCase(tok1)) {
+    		lInfo.incrAtomCount();
+    	}
+    	if ("TRGL".equalsIgnoreCase(tok1)) {
+    		lInfo.incrTrglCount();
+    	}
+    	if ("BORDER".equalsIgnoreCase(tok1)) {
+    		lInfo.incrBorderCount();
+    	}
+    	if ("BSTONE".equalsIgnoreCase(tok1)) {
+    		lInfo.incrBstoneCount();
+    	}
+    	if ("SEG".equalsIgnoreCase(tok1)) {
+    		lInfo.incrSegCount();
+    	}
+    	if ("GEOLOGICAL_TYPE".equalsIgnoreCase(tok1)) {
+    		if (tok1 != null)
+    			lInfo.setGeologicalType(getStrTok(line, 2, " "));
+    	}
+    	if ("GEOLOGICAL_FEATURE".equalsIgnoreCase(tok1)) {
+    		if (tok1 != null)
+    			lInfo.setGeologicalFeature(getStrTok(line, 2, " "));
+    	}
+    	if ("STRATIGRAPHIC_POSITION".equalsIgnoreCase(tok1)) {
+    		if (tok1 != null)
+    			lInfo.setStratigraphicPosition(getStrTok(line, 2, " "));
+    	}
+    	if (
+    		"*border*color:".equalsIgnoreCase(tok1) ||
+    		"*solid*color:".equalsIgnoreCase(tok1)) 
+    	{
+    		if (tok1 != null) {
+    			boolean solid = 
+    				tok1.equalsIgnoreCase("*solid*color") ? true : false;
+    			T3dColor col = new T3dColor();
+    			tok2 = getStrTok(line, 2, ":");
+    			if (tok2.contains("#")) {
+    				tok3 = getStrTok(line, 2, "#");
+    				col.setHexEncodedValue("0x" + tok3);
+    			} else {
+    				float 
+    					r = toFloat(getStrTok(tok2, 1, " ")),
+    					g = toFloat(getStrTok(tok2, 2, " ")),
+    					b = toFloat(getStrTok(tok2, 3, " ")),
+    					a = toFloat(getStrTok(tok2, 4, " "));
+    				col.setRGBA(r, g, b, a);
+    			}
+    			if (solid)
+    				lInfo.setSolidColor(col);
+    			else
+    				lInfo.setBorderColor(col);
+    		}
+    	}
+    	if ("BEGIN_MEMBERS".equalsIgnoreCase(tok1)) {
+    		return true;
+    	}
+    	if ("END_MEMBERS".equalsIgnoreCase(tok1)) {
+    		return true;
+    	}
+    	if ("END".equalsIgnoreCase(tok1)) {
+    		return true;
+    	}
+    	return false;
+    }
+
     private String getStrTok(String str, int i, String sep) throws T3dException
     {
         // extract i-th token (i >= 1!) from a string with 'sep' as separator
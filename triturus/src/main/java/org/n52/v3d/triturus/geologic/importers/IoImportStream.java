@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2020 52 North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *  - Apache License, version 2.0
+ *  - Apache Software License, version 1.0
+ *  - GNU Lesser General Public License, version 3
+ *  - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *  - Common Development and Distribution License (CDDL), version 1.0.
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * Contact: Benno Schmidt and Martin May, 52 North Initiative for Geospatial
+ * Open Source Software GmbH, Martin-Luther-King-Weg 24, 48155 Muenster,
+ * Germany, info@52north.org
+ */
+package org.n52.v3d.triturus.geologic.importers;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.n52.v3d.triturus.core.T3dException;
+
+/**
+ * Stream of imported items (e.g. TSurf objects or well records) which are 
+ * delivered while the input is still being read. The import runs in a 
+ * background thread and passes the items through a bounded buffer: If the 
+ * consumer is slower than the import, the import will be suspended until 
+ * the consumer takes the next item (back pressure). Thus, at most 
+ * <i>capacity</i> items will be held in memory by the stream.
+ * <br>
+ * The stream is consumed as an {@link Iterator}; {@link #hasNext()} blocks 
+ * until the next item is available or the import has been finished. Errors 
+ * occurring during the import are re-thrown by {@link #hasNext()} as 
+ * {@link T3dException}s. Consumers that stop early should call 
+ * {@link #close()} to cancel the import:
+ * <pre>
+ * try (IoImportStream&lt;GocadTSurfObject&gt; s = reader.stream(location, 4)) {
+ *     while (s.hasNext())
+ *         process(s.next());
+ * }
+ * </pre>
+ * Note that the stream can be adapted easily to reactive frameworks (e.g. 
+ * as iterable source).
+ * 
+ * @param <T> Item type
+ */
+public class IoImportStream<T> implements Iterator<T>, AutoCloseable
+{
+	private static final Object END = new Object();
+
+	private final BlockingQueue<Object> queue;
+	private volatile boolean closed = false;
+	private volatile Throwable failure = null;
+	private Object next = null; // item taken from the queue, not consumed yet
+	private boolean ended = false;
+
+	/**
+	 * Producer of the items of an import stream.
+	 */
+	interface Producer<T> {
+		/**
+		 * passes all items to the given stream (see 
+		 * {@link IoImportStream#put(Object)}).
+		 */
+		void produce(IoImportStream<T> stream) throws Exception;
+	}
+
+	IoImportStream(int capacity) throws T3dException
+	{
+		if (capacity < 1)
+			throw new T3dException("Illegal buffer capacity: " + capacity);
+		queue = new ArrayBlockingQueue<Object>(capacity);
+	}
+
+	/**
+	 * starts an import in the background.
+	 * 
+	 * @param capacity Maximum number of buffered items
+	 * @param executor Executor running the import, or <i>null</i> to start a 
+	 * thread of its own
+	 * @param producer Producer passing the items to the stream
+	 * @return Stream delivering the items
+	 */
+	static <T> IoImportStream<T> start(
+		int capacity, Executor executor, final Producer<T> producer)
+	{
+		final IoImportStream<T> stream = new IoImportStream<T>(capacity);
+		Runnable task = () -> {
+			try {
+				producer.produce(stream);
+				stream.end(null);
+			}
+			catch (Throwable e) {
+				stream.end(e);
+			}
+		};
+		if (executor != null)
+			executor.execute(task);
+		else {
+			Thread t = new Thread(task, "IoImportStream");
+			t.setDaemon(true);
+			t.start();
+		}
+		return stream;
+	}
+
+	/**
+	 * passes an item to the consumer. The call blocks as long as the buffer 
+	 * is full.
+	 * 
+	 * @param item Item
+	 * @return <i>false</i>, if the stream has been closed by the consumer, 
+	 * i.e. the import should be cancelled
+	 */
+	boolean put(T item) 
+	{
+		try {
+			while (!closed) {
+				if (queue.offer(item, 100, TimeUnit.MILLISECONDS))
+					return true;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	// Signals the end of the import:
+	private void end(Throwable failure) 
+	{
+		this.failure = failure;
+		try {
+			while (!closed) {
+				if (queue.offer(END, 100, TimeUnit.MILLISECONDS))
+					return;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * checks if there are further items. The call blocks until the next item
+	 * has been imported or the import has been finished.
+	 * 
+	 * @return <i>true</i>, if there is another item
+	 * @throws T3dException if the import failed or the stream has been closed
+	 */
+	public boolean hasNext() throws T3dException
+	{
+		if (ended)
+			return false;
+		if (closed)
+			throw new T3dException("Import stream has been closed.");
+		if (next == null) {
+			try {
+				next = queue.take();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new T3dException("Import has been interrupted.");
+			}
+		}
+		if (next != END)
+			return true;
+
+		ended = true;
+		next = null;
+		if (failure instanceof T3dException)
+			throw (T3dException) failure;
+		if (failure != null)
+			throw new T3dException(failure.toString());
+		return false;
+	}
+
+	/**
+	 * gets the next item. The call blocks until the next item has been 
+	 * imported.
+	 * 
+	 * @return Item
+	 * @throws NoSuchElementException if there are no more items
+	 * @throws T3dException if the import failed
+	 */
+	@SuppressWarnings("unchecked")
+	public T next() throws T3dException
+	{
+		if (!this.hasNext())
+			throw new NoSuchElementException();
+		T res = (T) next;
+		next = null;
+		return res;
+	}
+
+	/**
+	 * closes the stream. A running import will be cancelled.
+	 */
+	public void close() {
+		closed = true;
+		queue.clear(); // the producer might wait for free capacity
+	}
+}
@@ -33,11 +33,17 @@
 package org.n52.v3d.triturus.geologic.importers;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import org.n52.v3d.triturus.core.T3dException;
 import org.n52.v3d.triturus.geologic.data.Well;
@@ -122,6 +128,10 @@ import org.n52.v3d.triturus.vgis.VgPoint;
  *   To detect the positions of <i>x</i>- and <i>y</i>-coordinates in the file, 
  *   it is assumed that coordinates are given by floating-point numbers &gt; 100.000. 
  * </li>
+ * <li>
+ *   Gzip-compressed files and zip archives (holding the CSV file as first 
+ *   entry) will be decompressed transparently.
+ * </li>
  * </ul>
  * 
  * @author Benno Schmidt
@@ -158,79 +168,98 @@ public class IoWellCsvReader
      */
     public WellRepository addToRepository(String filename, WellRepository wRepo) 
        	throws T3dException
+    {
+        this.scanFile(filename, rec -> rec.addTo(wRepo));
+        return wRepo;        
+    }
+
+    /**
+     * reads well information from the given CSV file asynchronously.
+     * 
+     * @param filename File name (with path optionally)
+     * @param executor Executor running the import
+     * @return Future giving the {@link Well} objects; the future completes 
+     * exceptionally if an error occurs
+     */
+    public CompletableFuture<List<Well>> readAsync(final String filename, Executor executor) {
+    	return CompletableFuture.supplyAsync(() -> this.read(filename), executor);
+    }
+
+    /**
+     * reads well information from the given CSV file asynchronously using the
+     * common fork-join pool.
+     * 
+     * @param filename File name (with path optionally)
+     * @return Future giving the {@link Well} objects
+     */
+    public CompletableFuture<List<Well>> readAsync(String filename) {
+    	return this.readAsync(filename, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * streams the records (i.e. the well locations or markers) given in a 
+     * CSV file. Each record will be delivered as soon as its line has been 
+     * parsed; the file will be read in the background. At most 
+     * <tt>bufferSize</tt> records will be buffered, i.e. the reader is 
+     * suspended if the consumer falls behind. Note that the records are not
+     * aggregated to {@link Well} objects (the markers belonging to a well 
+     * might be spread over the file); use {@link WellRecord#addTo(WellRepository)}
+     * to do so.
+     * 
+     * @param filename File name (with path optionally)
+     * @param bufferSize Maximum number of buffered records
+     * @param executor Executor running the reader, or <i>null</i> to start a
+     * thread of its own
+     * @return Stream of records
+     */
+    public IoImportStream<WellRecord> stream(final String filename, int bufferSize, Executor executor) 
+    {
+    	return IoImportStream.start(bufferSize, executor, stream -> 
+    		this.scanFile(filename, rec -> {
+    			if (!stream.put(rec))
+    				throw new CancellationException(); // stream has been closed
+    		}));
+    }
+
+    public IoImportStream<WellRecord> stream(String filename, int bufferSize) {
+    	return this.stream(filename, bufferSize, null);
+    }
+
+    // Reads the given file and passes the records to the given consumer:
+    private void scanFile(String filename, Consumer<WellRecord> consumer) 
+       	throws T3dException
     {
         String line = "";
         int lineNumber = 0;
         int nSkippedLines = 0;
         
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(filename));
+        try (
+            FileInputStream is = new FileInputStream(filename);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+            	CompressedInput.open(is)))) 
+        {
 
             // read first input line (field names):
             line = reader.readLine();
             lineNumber++;
             List<String> cols = this.scanTokens(line);
     		InfoType iType = detectInformationType(cols);
+    		if (iType == InfoType.Unknown) {
+    			throw new T3dException("Unsupported field names in \"" + filename 
+    				+ "\" (expected well locations or markers).");
+    		}
     		
     		// read marker data (from line 2 and onwards): 
             line = reader.readLine();
             while (line != null) {
                 lineNumber++;
-                boolean lineOk = false;
-                
-                List<String> tokens = this.scanTokens(line);                
-				//System.out.println("\nline #" + lineNumber + ": " + tokens.size() + " tokens");
-				//System.out.println(line);
-				List<FieldType> tokTypeInfo = this.determineTypes(tokens);
-				//for (FieldType type : tokTypeInfo) {
-				//	System.out.println("type = " + type);
-				//}
-				int coordIndex = this.determineCoordPos(tokTypeInfo);
-
-				String _wellName, _markerName;
-				Double _x, _y, _z, _datum, _kb, _maximumDepth, _md; 
-				
-				switch (iType) {
-				case Well_Locations:
-					_wellName = this.scanWellName(tokens, coordIndex);
-					_x = this.scanCoord(tokens, coordIndex);
-					_y = this.scanCoord(tokens, coordIndex + 1);
-					_datum = this.scanFloat(tokens, coordIndex + 2);
-					_kb = this.scanFloat(tokens, coordIndex + 3);
-					_maximumDepth = this.scanFloat(tokens, coordIndex + 4);
-
-					if (_wellName != null && _x != null && _y != null && _datum != null) {
-						VgPoint pos = new GmPoint(_x, _y, _datum);
-						wRepo.addWell(_wellName, pos, _kb, _maximumDepth);
-						lineOk = true; 
-					}
-					
-					break;
-				case Markers:
-					_wellName = this.scanWellName(tokens, coordIndex);
-					_x = this.scanCoord(tokens, coordIndex);
-					_y = this.scanCoord(tokens, coordIndex + 1);
-					_z = this.scanFloat(tokens, coordIndex + 2);
-					_md = this.scanFloat(tokens, coordIndex + 3);
-					_markerName = this.scanMarkerName(tokens, coordIndex + 4);
-					
-					if (_wellName != null && _x != null && _y != null && _z != null && _markerName != null) {
-						VgPoint loc = new GmPoint(_x, _y, _z);
-						wRepo.addMarker(_wellName, loc, _md, _markerName);
-						lineOk = true; 
-					}
-					
-					break;
-				case Unknown:
-					// TODO
-					break;
-				}
-				
-				if (!lineOk) 
-					nSkippedLines++;
+                WellRecord rec = this.scanRecord(line, iType);
+                if (rec != null)
+                	consumer.accept(rec);
+                else
+                	nSkippedLines++;
                 line = reader.readLine();
             }
-            reader.close();
             System.out.println("Read " + lineNumber + " lines from file \"" + filename + "\".");
             if (nSkippedLines > 0) {
                 System.out.print("WARNING: Skipped " + nSkippedLines + " line");
@@ -250,12 +279,59 @@ public class IoWellCsvReader
         catch (T3dException e) {
             throw new T3dException(e.getMessage());
         }
+        catch (CancellationException e) {
+            throw e;
+        }
         catch (Exception e) {
         	String msg = "Parser error in \"" + filename + "\":" + lineNumber;
         	throw new T3dException(msg);
         }
+    }
+    
+    // Parses a single input line; returns null if the line can not be parsed:
+    private WellRecord scanRecord(String line, InfoType iType)
+    {
+		List<String> tokens = this.scanTokens(line);
+		List<FieldType> tokTypeInfo = this.determineTypes(tokens);
+		int coordIndex = this.determineCoordPos(tokTypeInfo);
 
-        return wRepo;        
+		String _wellName, _markerName;
+		Double _x, _y, _z, _datum, _kb, _maximumDepth, _md; 
+		
+		switch (iType) {
+		case Well_Locations:
+			_wellName = this.scanWellName(tokens, coordIndex);
+			_x = this.scanCoord(tokens, coordIndex);
+			_y = this.scanCoord(tokens, coordIndex + 1);
+			_datum = this.scanFloat(tokens, coordIndex + 2);
+			_kb = this.scanFloat(tokens, coordIndex + 3);
+			_maximumDepth = this.scanFloat(tokens, coordIndex + 4);
+
+			if (_wellName != null && _x != null && _y != null && _datum != null) {
+				VgPoint pos = new GmPoint(_x, _y, _datum);
+				return new WellRecord(iType, _wellName, pos, _kb, _maximumDepth, null, null);
+			}
+			
+			break;
+		case Markers:
+			_wellName = this.scanWellName(tokens, coordIndex);
+			_x = this.scanCoord(tokens, coordIndex);
+			_y = this.scanCoord(tokens, coordIndex + 1);
+			_z = this.scanFloat(tokens, coordIndex + 2);
+			_md = this.scanFloat(tokens, coordIndex + 3);
+			_markerName = this.scanMarkerName(tokens, coordIndex + 4);
+			
+			if (_wellName != null && _x != null && _y != null && _z != null && _markerName != null) {
+				VgPoint loc = new GmPoint(_x, _y, _z);
+				return new WellRecord(iType, _wellName, loc, null, null, _md, _markerName);
+			}
+			
+			break;
+		default: // unknown information types are rejected by scanFile()
+			break;
+		}
+		
+		return null;
     }
     
 	// Scan tokens separated by a whitespace character from the given text line in:
@@ -386,4 +462,99 @@ public class IoWellCsvReader
 		System.out.println("Detected InfoType: \"" + res + "\"");
 		return res;
 	}
+
+	/**
+	 * Single record read from a well CSV file, i.e. a well location or a 
+	 * marker (see {@link #getInfoType()}).
+	 */
+	public static class WellRecord 
+	{
+		private InfoType infoType;
+		private String wellName, markerName;
+		private VgPoint position;
+		private Double kb, maxDepth, md;
+
+		WellRecord(InfoType infoType, String wellName, VgPoint position, 
+			Double kb, Double maxDepth, Double md, String markerName) 
+		{
+			this.infoType = infoType;
+			this.wellName = wellName;
+			this.position = position;
+			this.kb = kb;
+			this.maxDepth = maxDepth;
+			this.md = md;
+			this.markerName = markerName;
+		}
+
+		/**
+		 * gets the record type.
+		 * 
+		 * @return <tt>Well_Locations</tt> for well locations, 
+		 * <tt>Markers</tt> for markers
+		 */
+		public InfoType getInfoType() {
+			return infoType;
+		}
+
+		public String getWellName() {
+			return wellName;
+		}
+
+		/**
+		 * gets the well location or the marker position.
+		 * 
+		 * @return Position
+		 */
+		public VgPoint getPosition() {
+			return position;
+		}
+
+		/**
+		 * gets the Kelly Bushing height (well locations only).
+		 * 
+		 * @return KB value, or <i>null</i>
+		 */
+		public Double getKB() {
+			return kb;
+		}
+
+		/**
+		 * gets the maximum depth (well locations only).
+		 * 
+		 * @return Maximum depth, or <i>null</i>
+		 */
+		public Double getMaximumDepth() {
+			return maxDepth;
+		}
+
+		/**
+		 * gets the marker depth (markers only).
+		 * 
+		 * @return Marker depth, or <i>null</i>
+		 */
+		public Double getMarkerDepth() {
+			return md;
+		}
+
+		/**
+		 * gets the marker name (markers only).
+		 * 
+		 * @return Marker name, or <i>null</i>
+		 */
+		public String getMarkerName() {
+			return markerName;
+		}
+
+		/**
+		 * adds the record to a well repository.
+		 * 
+		 * @param wRepo Well repository
+		 */
+		public void addTo(WellRepository wRepo) {
+			if (infoType == InfoType.Markers)
+				wRepo.addMarker(wellName, position, md, markerName);
+			else
+				wRepo.addWell(wellName, position, kb, maxDepth);
+		}
+	}
 }
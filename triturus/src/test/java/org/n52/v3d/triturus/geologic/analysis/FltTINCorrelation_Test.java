@@ -0,0 +1,247 @@
+package org.n52.v3d.triturus.geologic.analysis;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import org.n52.v3d.triturus.core.T3dException;
+import org.n52.v3d.triturus.geologic.data.GmCompactTINGeometry;
+import org.n52.v3d.triturus.gisimplm.GmSimpleElevationGrid;
+import org.n52.v3d.triturus.gisimplm.GmSimpleTINFeature;
+import org.n52.v3d.triturus.vgis.VgElevationGrid;
+
+public class FltTINCorrelation_Test
+{
+	// The TINs cover [0, EXTENT] x [0, EXTENT]; with a cell size of 1, the
+	// grids hold more than TILE_SIZE x TILE_SIZE cells:
+	private static final int EXTENT = 300, SPACING = 10;
+
+	// Both TINs are flat (z = 0) for x <= FLAT; the second TIN has a hole
+	// at [HOLE_X, HOLE_X + SPACING] x [HOLE_Y, HOLE_Y + SPACING]:
+	private static final int FLAT = 60, HOLE_X = 200, HOLE_Y = 150;
+
+	// For x >= QUIET, the elevations vary by a few millimetres only, next to
+	// elevations varying by some metres:
+	private static final int QUIET = 250;
+
+	// Tolerance for the prefix sum modes:
+	private static final double EPS = 1e-6;
+
+	private GmSimpleTINFeature tin1, tin2;
+
+	@Before
+	public void setUp() {
+		tin1 = this.tin(1, false);
+		tin2 = this.tin(2, true);
+	}
+
+	@Test
+	public void testSummedAreaTables()
+	{
+		for (short windowSize : new short[] { 3, 5, 8, 13 }) {
+			GmSimpleElevationGrid
+				direct = this.correlation("Quadrat", windowSize, false, 1),
+				sat = this.correlation("Quadrat", windowSize, true, 1);
+			this.assertEquivalent(direct, sat, EPS);
+		}
+	}
+
+	@Test
+	public void testRowSpanSums()
+	{
+		for (short windowSize : new short[] { 3, 5, 8, 13 }) {
+			GmSimpleElevationGrid
+				direct = this.correlation("Kreis", windowSize, false, 1),
+				rss = this.correlation("Kreis", windowSize, true, 1);
+			this.assertEquivalent(direct, rss, EPS);
+		}
+	}
+
+	@Test
+	public void testParallelism()
+	{
+		for (String windowForm : new String[] { "Quadrat", "Kreis" }) {
+			for (boolean prefixSums : new boolean[] { false, true }) {
+				for (short windowSize : new short[] { 3, 7, 13 }) {
+					GmSimpleElevationGrid seq = 
+						this.correlation(windowForm, windowSize, prefixSums, 1);
+					for (int parallelism : new int[] { 2, 4, 0 }) {
+						GmSimpleElevationGrid par = 
+							this.correlation(windowForm, windowSize, prefixSums, parallelism);
+						this.assertEquivalent(seq, par, 0.);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testParallelismSetting()
+	{
+		FltTINCorrelation corr = new FltTINCorrelation();
+		assertEquals(1, corr.getParallelism());
+		corr.setParallelism(3);
+		assertEquals(3, corr.getParallelism());
+		corr.setParallelism(0);
+		assertEquals(Runtime.getRuntime().availableProcessors(), corr.getParallelism());
+	}
+
+	@Test
+	public void testConstantWindows()
+	{
+		for (String windowForm : new String[] { "Quadrat", "Kreis" }) {
+			for (boolean prefixSums : new boolean[] { false, true }) {
+				GmSimpleElevationGrid grd =
+					this.correlation(windowForm, (short) 7, prefixSums, 1);
+				// complete windows inside the flat region give NaN:
+				for (int i = 3; i < EXTENT - 3; i++) {
+					for (int j = 3; j <= FLAT - 3; j++)
+						assertFalse(windowForm + " " + i + "," + j, grd.isSet(i, j));
+				}
+				// windows overlapping the flat region's border do not:
+				assertTrue(grd.isSet(100, FLAT));
+				assertTrue(grd.isSet(100, FLAT + 10));
+				// incomplete windows at the hole, which leaves the cells
+				// inside the hole's boundary unset:
+				assertFalse(grd.isSet(HOLE_Y + 5, HOLE_X + 5));
+				assertFalse(grd.isSet(HOLE_Y - 2, HOLE_X + 5));
+				assertTrue(grd.isSet(HOLE_Y - 3, HOLE_X + 5));
+			}
+		}
+	}
+
+	@Test
+	public void testLowVarianceWindows()
+	{
+		for (String windowForm : new String[] { "Quadrat", "Kreis" }) {
+			GmSimpleElevationGrid
+				direct = this.correlation(windowForm, (short) 7, false, 1),
+				sums = this.correlation(windowForm, (short) 7, true, 1);
+			// windows inside the quiet region and windows overlapping its 
+			// border are defined:
+			for (int j = QUIET - 3; j < EXTENT - 3; j++) 
+				assertTrue(windowForm + " " + j, direct.isSet(100, j));
+			this.assertEquivalent(direct, sums, EPS);
+		}
+	}
+
+	@Test
+	public void testMultiScale()
+	{
+		short[] windowSizes = new short[] { 3, 5, 8, 13 };
+		for (String windowForm : new String[] { "Quadrat", "Kreis" }) {
+			for (int parallelism : new int[] { 1, 4 }) {
+				FltTINCorrelation corr = new FltTINCorrelation();
+				corr.setParallelism(parallelism);
+				List<VgElevationGrid> res = corr.transformMultiScale(
+					tin1, tin2, windowSizes, 1, "max", windowForm);
+				assertEquals(windowSizes.length, res.size());
+				for (int s = 0; s < windowSizes.length; s++) {
+					GmSimpleElevationGrid grd = (GmSimpleElevationGrid) res.get(s);
+					this.assertEquivalent(
+						this.correlation(windowForm, windowSizes[s], false, 1), grd, EPS);
+					this.assertEquivalent(
+						this.correlation(windowForm, windowSizes[s], true, 1), grd, EPS);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidWindowSize()
+	{
+		FltTINCorrelation corr = new FltTINCorrelation();
+		for (String windowForm : new String[] { "Quadrat", "Kreis" }) {
+			try {
+				corr.transform(tin1, tin2, (short) -3, 1, "max", windowForm);
+				fail("Window size -3 accepted");
+			}
+			catch (T3dException e) {
+			}
+			try {
+				corr.transformMultiScale(
+					tin1, tin2, new short[] { 3, -3 }, 1, "max", windowForm);
+				fail("Window size -3 accepted");
+			}
+			catch (T3dException e) {
+			}
+		}
+	}
+
+	// Helpers:
+
+	private GmSimpleElevationGrid correlation(
+		String windowForm, short windowSize, boolean prefixSums, int parallelism)
+	{
+		FltTINCorrelation corr = new FltTINCorrelation();
+		corr.setUseSummedAreaTables(prefixSums);
+		corr.setUseRowSpanSums(prefixSums);
+		corr.setParallelism(parallelism);
+		GmSimpleElevationGrid res = (GmSimpleElevationGrid)
+			corr.transform(tin1, tin2, windowSize, 1, "max", windowForm);
+		assertNotNull(res);
+		return res;
+	}
+
+	private void assertEquivalent(
+		GmSimpleElevationGrid expected, GmSimpleElevationGrid grd, double eps)
+	{
+		assertEquals(expected.numberOfRows(), grd.numberOfRows());
+		assertEquals(expected.numberOfColumns(), grd.numberOfColumns());
+		int nSet = 0;
+		for (int i = 0; i < grd.numberOfRows(); i++) {
+			for (int j = 0; j < grd.numberOfColumns(); j++) {
+				assertEquals("Cell " + i + "," + j, expected.isSet(i, j), grd.isSet(i, j));
+				if (!grd.isSet(i, j))
+					continue;
+				nSet++;
+				double r = grd.getValue(i, j);
+				assertTrue(r >= -1. && r <= 1.);
+				if (eps == 0.) {
+					assertEquals("Cell " + i + "," + j,
+						Double.doubleToLongBits(expected.getValue(i, j)),
+						Double.doubleToLongBits(r));
+				}
+				else
+					assertEquals("Cell " + i + "," + j, expected.getValue(i, j), r, eps);
+			}
+		}
+		// even window sizes do not give any complete windows:
+		if (nSet > 0)
+			assertTrue(nSet > grd.numberOfRows() * grd.numberOfColumns() / 2);
+	}
+
+	// Regular TIN with random elevations; the second TIN's elevations are
+	// correlated with the first one's:
+	private GmSimpleTINFeature tin(int which, boolean hole)
+	{
+		Random rand = new Random(52);
+		int n = EXTENT / SPACING + 1;
+		GmCompactTINGeometry geom = new GmCompactTINGeometry();
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				double 
+					amp = (j * SPACING >= QUIET) ? 1e-4 : 1.,
+					z1 = 500. + 20. * amp * rand.nextDouble(),
+					z2 = 0.5 * z1 + 10. * amp * rand.nextDouble();
+				if (j * SPACING <= FLAT)
+					z1 = z2 = 0.;
+				geom.addPoint(j * SPACING, i * SPACING, (which == 1) ? z1 : z2);
+			}
+		}
+		for (int i = 0; i < n - 1; i++) {
+			for (int j = 0; j < n - 1; j++) {
+				if (hole && i * SPACING == HOLE_Y && j * SPACING == HOLE_X)
+					continue;
+				int k = i * n + j;
+				geom.addTriangle(k, k + 1, k + n + 1);
+				geom.addTriangle(k, k + n + 1, k + n);
+			}
+		}
+		GmSimpleTINFeature tin = new GmSimpleTINFeature();
+		tin.setGeometry(geom);
+		return tin;
+	}
+}
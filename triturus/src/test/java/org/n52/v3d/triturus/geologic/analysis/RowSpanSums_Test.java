@@ -0,0 +1,135 @@
+package org.n52.v3d.triturus.geologic.analysis;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.*;
+
+public class RowSpanSums_Test
+{
+	private static final int ROWS = 60, COLS = 70;
+
+	// Columns [0, QUIET) vary by some metres, columns [QUIET, FLAT) by a few
+	// millimetres and columns [FLAT, COLS) are constant:
+	private static final int QUIET = 25, FLAT = 50;
+
+	// Tables region:
+	private static final int ROW0 = 2, COL0 = 3, N_ROWS = 55, N_COLS = 64;
+
+	// Window shapes: squares, diamonds and windows with empty rows:
+	private static final int[][] HALF_WIDTHS = new int[][] {
+		{ 0 }, { 1, 1, 1 }, { 3, 3, 3, 3, 3, 3, 3 },
+		{ 0, 1, 0 }, { 0, 1, 2, 3, 2, 1, 0 }, { -1, 2, -1 }, { 1, -1, 0, -1, 1 }
+	};
+
+	private GridBuffer b1, b2;
+
+	@Before
+	public void setUp()
+	{
+		Random rand = new Random(52);
+		b1 = new GridBuffer(ROWS, COLS);
+		b2 = new GridBuffer(ROWS, COLS);
+		for (int i = 0; i < ROWS; i++) {
+			for (int j = 0; j < COLS; j++) {
+				double
+					amp = (j < QUIET) ? 1. : ((j < FLAT) ? 1e-4 : 0.),
+					z1 = 500. + 20. * amp * rand.nextDouble(),
+					z2 = 0.5 * z1 + 10. * amp * rand.nextDouble();
+				b1.setValue(i, j, z1);
+				b2.setValue(i, j, z2);
+			}
+		}
+		b1.unset(20, 10);
+		b2.unset(40, 45);
+	}
+
+	@Test
+	public void testWindowMoments()
+	{
+		RowSpanSums rss = new RowSpanSums(b1, b2, ROW0, COL0, N_ROWS, N_COLS);
+		double[] m = new double[3];
+		int nComplete = 0, nQuiet = 0;
+		for (int[] halfWidths : HALF_WIDTHS) {
+			int h = (halfWidths.length - 1) / 2, w = 0;
+			for (int k : halfWidths)
+				w = Math.max(w, k);
+			for (int i = ROW0 + h; i + h < ROW0 + N_ROWS; i++) {
+				for (int j = COL0 + w; j + w < COL0 + N_COLS; j++) {
+					double[] expected = this.moments(i, j, halfWidths);
+					String msg = "Window " + halfWidths.length + "/" + w + " at " + i + "," + j;
+					assertEquals(msg, expected != null, rss.windowMoments(i, j, halfWidths, m));
+					if (expected == null)
+						continue;
+					nComplete++;
+					SummedAreaTables_Test.assertMoments(msg, expected, m);
+					if (halfWidths.length > 1 && j - w >= QUIET && j + w < FLAT) {
+						// low-variance windows next to high-variance ones:
+						assertTrue(msg, m[0] > 0. && m[1] > 0.);
+						nQuiet++;
+					}
+					if (j - w >= FLAT) {
+						assertEquals(msg, 0., m[0], 0.);
+						assertEquals(msg, 0., m[1], 0.);
+					}
+				}
+			}
+		}
+		assertTrue(nComplete > 0 && nQuiet > 0);
+	}
+
+	@Test
+	public void testRegions()
+	{
+		// The moments do not depend on the region the tables are set up for:
+		RowSpanSums
+			rss1 = new RowSpanSums(b1, b2, ROW0, COL0, N_ROWS, N_COLS),
+			rss2 = new RowSpanSums(b1, b2, 25, 30, 10, 30);
+		int[] halfWidths = HALF_WIDTHS[4];
+		double[] m1 = new double[3], m2 = new double[3];
+		for (int i = 28; i < 32; i++) {
+			for (int j = 33; j < 57; j++) {
+				assertTrue(rss1.windowMoments(i, j, halfWidths, m1));
+				assertTrue(rss2.windowMoments(i, j, halfWidths, m2));
+				SummedAreaTables_Test.assertMoments(i + "," + j, m1, m2);
+			}
+		}
+	}
+
+	// Helpers:
+
+	// Two-pass computation of the moments of the window centered at (row,
+	// col); null, if the window is incomplete:
+	private double[] moments(int row, int col, int[] halfWidths)
+	{
+		int h = (halfWidths.length - 1) / 2;
+		double meanX = 0., meanY = 0.;
+		int n = 0;
+		for (int k = -h; k <= h; k++) {
+			int w = halfWidths[k + h];
+			for (int j = col - w; j <= col + w; j++) {
+				if (!b1.isSet(row + k, j) || !b2.isSet(row + k, j))
+					return null;
+				meanX += b1.getValue(row + k, j);
+				meanY += b2.getValue(row + k, j);
+				n++;
+			}
+		}
+		meanX /= n;
+		meanY /= n;
+		double[] res = new double[3];
+		for (int k = -h; k <= h; k++) {
+			int w = halfWidths[k + h];
+			for (int j = col - w; j <= col + w; j++) {
+				double
+					dx = b1.getValue(row + k, j) - meanX,
+					dy = b2.getValue(row + k, j) - meanY;
+				res[0] += dx * dx;
+				res[1] += dy * dy;
+				res[2] += dx * dy;
+			}
+		}
+		return res;
+	}
+}
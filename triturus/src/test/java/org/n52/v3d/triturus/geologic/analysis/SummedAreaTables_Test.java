@@ -0,0 +1,133 @@
+package org.n52.v3d.triturus.geologic.analysis;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.*;
+
+public class SummedAreaTables_Test
+{
+	private static final int ROWS = 60, COLS = 70;
+
+	// Columns [0, QUIET) vary by some metres, columns [QUIET, FLAT) by a few
+	// millimetres and columns [FLAT, COLS) are constant:
+	private static final int QUIET = 25, FLAT = 50;
+
+	// Tables region:
+	private static final int ROW0 = 2, COL0 = 3, N_ROWS = 55, N_COLS = 64;
+
+	// Relative tolerance for the moments:
+	private static final double EPS = 1e-6;
+
+	private GridBuffer b1, b2;
+
+	@Before
+	public void setUp()
+	{
+		Random rand = new Random(52);
+		b1 = new GridBuffer(ROWS, COLS);
+		b2 = new GridBuffer(ROWS, COLS);
+		for (int i = 0; i < ROWS; i++) {
+			for (int j = 0; j < COLS; j++) {
+				double
+					amp = (j < QUIET) ? 1. : ((j < FLAT) ? 1e-4 : 0.),
+					z1 = 500. + 20. * amp * rand.nextDouble(),
+					z2 = 0.5 * z1 + 10. * amp * rand.nextDouble();
+				b1.setValue(i, j, z1);
+				b2.setValue(i, j, z2);
+			}
+		}
+		b1.unset(20, 10);
+		b2.unset(40, 45);
+	}
+
+	@Test
+	public void testWindowMoments()
+	{
+		SummedAreaTables sat = new SummedAreaTables(b1, b2, ROW0, COL0, N_ROWS, N_COLS);
+		double[] m = new double[3];
+		int nComplete = 0, nQuiet = 0;
+		for (int h : new int[] { 1, 3, 7 }) {
+			for (int w : new int[] { 1, 4, 13 }) {
+				for (int r0 = ROW0; r0 + h <= ROW0 + N_ROWS; r0++) {
+					for (int c0 = COL0; c0 + w <= COL0 + N_COLS; c0++) {
+						double[] expected = this.moments(r0, c0, r0 + h, c0 + w);
+						String msg = h + "x" + w + " window at " + r0 + "," + c0;
+						assertEquals(msg, expected != null,
+							sat.windowMoments(r0, c0, r0 + h, c0 + w, m));
+						if (expected == null)
+							continue;
+						nComplete++;
+						assertMoments(msg, expected, m);
+						if (h * w > 1 && c0 >= QUIET && c0 + w <= FLAT) {
+							// low-variance windows next to high-variance ones:
+							assertTrue(msg, m[0] > 0. && m[1] > 0.);
+							nQuiet++;
+						}
+						if (c0 >= FLAT) {
+							assertEquals(msg, 0., m[0], 0.);
+							assertEquals(msg, 0., m[1], 0.);
+						}
+					}
+				}
+			}
+		}
+		assertTrue(nComplete > 0 && nQuiet > 0);
+	}
+
+	@Test
+	public void testRegions()
+	{
+		// The moments do not depend on the region the tables are set up for:
+		SummedAreaTables
+			sat1 = new SummedAreaTables(b1, b2, ROW0, COL0, N_ROWS, N_COLS),
+			sat2 = new SummedAreaTables(b1, b2, 25, 30, 10, 30);
+		double[] m1 = new double[3], m2 = new double[3];
+		for (int r0 = 25; r0 + 5 <= 35; r0++) {
+			for (int c0 = 30; c0 + 5 <= 60; c0++) {
+				assertTrue(sat1.windowMoments(r0, c0, r0 + 5, c0 + 5, m1));
+				assertTrue(sat2.windowMoments(r0, c0, r0 + 5, c0 + 5, m2));
+				assertMoments(r0 + "," + c0, m1, m2);
+			}
+		}
+	}
+
+	// Helpers:
+
+	// Two-pass computation of the moments of [r0, r1) x [c0, c1); null, if
+	// the window is incomplete:
+	private double[] moments(int r0, int c0, int r1, int c1)
+	{
+		double meanX = 0., meanY = 0.;
+		int n = 0;
+		for (int i = r0; i < r1; i++) {
+			for (int j = c0; j < c1; j++) {
+				if (!b1.isSet(i, j) || !b2.isSet(i, j))
+					return null;
+				meanX += b1.getValue(i, j);
+				meanY += b2.getValue(i, j);
+				n++;
+			}
+		}
+		meanX /= n;
+		meanY /= n;
+		double[] res = new double[3];
+		for (int i = r0; i < r1; i++) {
+			for (int j = c0; j < c1; j++) {
+				double dx = b1.getValue(i, j) - meanX, dy = b2.getValue(i, j) - meanY;
+				res[0] += dx * dx;
+				res[1] += dy * dy;
+				res[2] += dx * dy;
+			}
+		}
+		return res;
+	}
+
+	static void assertMoments(String msg, double[] expected, double[] m)
+	{
+		assertEquals(msg, expected[0], m[0], EPS * expected[0]);
+		assertEquals(msg, expected[1], m[1], EPS * expected[1]);
+		assertEquals(msg, expected[2], m[2], EPS * Math.sqrt(expected[0] * expected[1]));
+	}
+}
@@ -0,0 +1,217 @@
+package org.n52.v3d.triturus.geologic.importers;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.*;
+import org.n52.v3d.triturus.geologic.data.GmCompactTINGeometry;
+import org.n52.v3d.triturus.t3dutil.T3dColor;
+
+public class GocadTSurfCache_Test
+{
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("gocad", ".ts");
+	}
+
+	@After
+	public void tearDown() {
+		GocadTSurfCache.cacheFile(file).delete();
+		new File(file.getPath() + ".gidx").delete();
+		file.delete();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		this.write(this.objects());
+		String expected = this.readUncached();
+
+		assertFalse(GocadTSurfCache.cacheFile(file).exists());
+		assertEquals(expected, this.readCached()); // parses and writes the cache
+		assertTrue(GocadTSurfCache.cacheFile(file).isFile());
+		GocadTSurfCache cache = GocadTSurfCache.load(file);
+		assertNotNull(cache);
+		assertEquals(4, cache.info.size());
+		assertEquals(3, cache.tins.size());
+		assertEquals(
+			new IoGocadTSurfReader().getInfo(file.getPath(), new GocadReadOptions()).toString(),
+			cache.info.toString());
+		assertEquals(expected, this.readCached()); // loads the cache
+	}
+
+	@Test
+	public void testModifiedObject() throws IOException
+	{
+		this.write(this.objects());
+		String original = this.readUncached();
+		assertEquals(original, this.readCached());
+
+		// Modify the second object only:
+		String[] objects = this.objects();
+		objects[1] = this.tsurf("surface 2", 1001, true);
+		this.write(objects);
+		assertNotNull(GocadTSurfCache.loadAny(file));
+		assertNull(GocadTSurfCache.load(file)); // outdated
+
+		String expected = this.readUncached();
+		assertFalse(expected.equals(original));
+		assertEquals(expected, this.readCached()); // incremental update
+		assertNotNull(GocadTSurfCache.load(file));
+		assertEquals(expected, this.readCached());
+
+		// Append and remove objects:
+		objects = new String[] { 
+			objects[2], objects[3], objects[1], this.tsurf("surface 4", 4, false) };
+		this.write(objects);
+		expected = this.readUncached();
+		assertEquals(expected, this.readCached());
+		assertEquals(expected, this.readCached());
+	}
+
+	@Test
+	public void testLargeHeader() throws IOException
+	{
+		// Header entries exceeding the cache reader's buffer of 64 KB:
+		StringBuilder name = new StringBuilder("surface");
+		while (name.length() < 100000)
+			name.append('_').append(name.length());
+		StringBuilder props = new StringBuilder("PROPERTIES");
+		for (int j = 0; j < 8000; j++)
+			props.append(" prop").append(j);
+		String large = this.tsurf(name.toString(), 5, false).replace(
+			"GEOLOGICAL_TYPE top\n", "GEOLOGICAL_TYPE top\n" + props + "\n");
+		String[] objects = this.objects();
+		this.write(new String[] { objects[0], large, objects[2] });
+
+		String expected = this.readUncached();
+		assertTrue(expected.contains(name + "\""));
+		assertTrue(expected.contains("prop7999]"));
+		assertEquals(expected, this.readCached()); // parses and writes the cache
+		assertNotNull(GocadTSurfCache.load(file));
+		assertEquals(expected, this.readCached()); // loads the cache
+	}
+
+	// Helpers:
+
+	private String readUncached() {
+		return this.dump(new IoGocadTSurfReader().readObjects(
+			file.getPath(), new GocadReadOptions()));
+	}
+
+	private String readCached() {
+		return this.dump(new IoGocadTSurfReader().readObjects(
+			file.getPath(), new GocadReadOptions().setUseCache(true)));
+	}
+
+	private void write(String[] objects) throws IOException
+	{
+		long lastModified = file.lastModified();
+		StringBuilder s = new StringBuilder();
+		for (String obj : objects)
+			s.append(obj);
+		Files.write(file.toPath(), s.toString().getBytes("US-ASCII"));
+		// Ensure that the modification is detected despite a coarse timer:
+		file.setLastModified(lastModified + 2000);
+	}
+
+	private String[] objects() {
+		return new String[] {
+			this.tsurf("surface 1", 1, true),
+			this.tsurf("surface 2", 2, true),
+			this.pline("line 1"),
+			this.tsurf("surface 3", 3, false)
+		};
+	}
+
+	private String tsurf(String name, int seed, boolean properties)
+	{
+		Random rand = new Random(seed);
+		StringBuilder s = new StringBuilder();
+		s.append("GOCAD TSurf 1\nHEADER {\nname: " + name + "\n");
+		s.append(String.format(Locale.US, "*border*color: %.2f %.2f %.2f %.2f\n",
+			rand.nextDouble(), rand.nextDouble(), rand.nextDouble(), rand.nextDouble()));
+		s.append("}\n");
+		s.append("GEOLOGICAL_TYPE top\n");
+		if (properties)
+			s.append("PROPERTIES poro temp\nNO_DATA_VALUES -99999 -99999\n");
+		int n = 0;
+		for (int patch = 0; patch < 2; patch++) {
+			s.append("TFACE\n");
+			int first = n + 1;
+			for (int i = 0; i < 6; i++) {
+				n++;
+				double x = 100. * rand.nextDouble(), y = 100. * rand.nextDouble(), z = -rand.nextDouble();
+				if (properties && i % 2 == 0) {
+					s.append(String.format(Locale.US, "PVRTX %d %.3f %.3f %.3f %.2f %.1f\n",
+						n, x, y, z, rand.nextDouble(), 20. + 10. * rand.nextDouble()));
+				}
+				else
+					s.append(String.format(Locale.US, "VRTX %d %.3f %.3f %.3f\n", n, x, y, z));
+			}
+			n++;
+			s.append("ATOM " + n + " " + first + "\n");
+			for (int i = 0; i < 4; i++) {
+				s.append("TRGL " + (first + i) + " " + (first + i + 1) + " " + (first + i + 2) + "\n");
+			}
+			s.append("TRGL " + (first + 4) + " " + (first + 5) + " " + n + "\n");
+		}
+		s.append("BSTONE 2\nBORDER 1 2 3\nEND\n");
+		return s.toString();
+	}
+
+	private String pline(String name) {
+		return "GOCAD PLine 1\nHEADER {\nname: " + name + "\n}\nILINE\n"
+			+ "VRTX 1 0 0 0\nVRTX 2 10 0 -1\nVRTX 3 10 10 -2\nSEG 1 2\nSEG 2 3\nEND\n";
+	}
+
+	private String dump(List<GocadTSurfObject> objects)
+	{
+		StringBuilder s = new StringBuilder();
+		for (GocadTSurfObject obj : objects) {
+			GocadDataInfo info = obj.getInfo();
+			s.append(info).append(Arrays.toString(info.getPropertyNames()));
+			s.append(info.getStatistics());
+			s.append(this.dump(info.getSolidColor())).append(this.dump(info.getBorderColor()));
+			s.append('\n');
+			GmCompactTINGeometry geom = (GmCompactTINGeometry) obj.getTIN().getGeometry();
+			for (int i = 0; i < geom.numberOfPoints(); i++) {
+				s.append(geom.getX(i)).append(' ').append(geom.getY(i)).append(' ');
+				s.append(geom.getZ(i));
+				for (int j = 0; j < geom.numberOfProperties(); j++)
+					s.append(' ').append(geom.getPropertyValue(j, i));
+				s.append(';');
+			}
+			for (int i = 0; i < geom.numberOfTriangles(); i++)
+				s.append(Arrays.toString(geom.getTriangleVertexIndices(i)));
+			for (int j = 0; j < geom.numberOfProperties(); j++)
+				s.append(' ').append(geom.getPropertyName(j));
+			for (int p = 0; p < geom.numberOfPatches(); p++)
+				s.append(" p").append(geom.getPatchStart(p));
+			for (int b = 0; b < geom.numberOfBstones(); b++)
+				s.append(" b").append(geom.getBstoneVertexIndex(b));
+			for (int b = 0; b < geom.numberOfBorders(); b++) {
+				s.append(" B").append(geom.getBorderVertexIndex(b, 0));
+				s.append('-').append(geom.getBorderVertexIndex(b, 1));
+			}
+			s.append('\n');
+		}
+		return s.toString();
+	}
+
+	private String dump(T3dColor col) {
+		if (col == null)
+			return "()";
+		return "(" + col.getRed() + " " + col.getGreen() + " " + col.getBlue() 
+			+ " " + col.getAlpha() + ")";
+	}
+}
@@ -0,0 +1,307 @@
+package org.n52.v3d.triturus.geologic.importers;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.*;
+import org.n52.v3d.triturus.core.T3dException;
+
+public class GocadTokenizer_Test
+{
+	private static final String[] DOUBLES = {
+		"0", "-0", "-0.0", "+5", "007", ".5", "5.", "1.0", "-1.5",
+		"0.1", "0.2", "0.3", "-0.7", "3552128.25", "5641740.125", "-222.875",
+		"1e10", "1E10", "1.5e-3", "-2.5E+22", "1e22", "1e23", "1e-22", "1e-23",
+		"123456789012345", "1234567890123456", "12345678901234567",
+		"123456789012345678", "1234567890123456789012",
+		"0.12345678901234567", "-3552128.123456789012", "9007199254740993",
+		"0.000000000000000000001", "-0.0000000000000000000000123",
+		"1e-400", "4.9e-324", "1.7976931348623157e308", "1e309",
+		"2.2250738585072014E-308", "NaN", "Infinity", "-Infinity"
+	};
+
+	private static final String[] LONGS = {
+		"0", "-0", "+42", "-1", "2147483647", "2147483648", "-2147483649",
+		"123456789012345678", "-123456789012345678",
+		"9223372036854775807", "-9223372036854775808"
+	};
+
+	@Test
+	public void testDoubleToken() throws IOException
+	{
+		GocadTokenizer tok = this.tokenizer(String.join(" ", DOUBLES));
+		assertTrue(tok.nextLine());
+		assertEquals(DOUBLES.length, tok.numberOfTokens());
+		for (int i = 0; i < DOUBLES.length; i++) {
+			double
+				expected = Double.parseDouble(DOUBLES[i]),
+				val = tok.doubleToken(i + 1);
+			assertEquals("Token \"" + DOUBLES[i] + "\"",
+				Double.doubleToLongBits(expected), Double.doubleToLongBits(val));
+		}
+		tok.close();
+	}
+
+	@Test
+	public void testDoubleTokenRandom() throws IOException
+	{
+		Random rand = new Random(52);
+		StringBuilder line = new StringBuilder();
+		List<String> tokens = new ArrayList<String>();
+		for (int i = 0; i < 10000; i++) {
+			String s;
+			switch (i % 4) {
+			case 0:
+				s = Double.toString(rand.nextDouble() * 1e7); break;
+			case 1:
+				s = String.format(Locale.US, "%.3f", -rand.nextDouble() * 5000.); break;
+			case 2:
+				s = Double.toString(Double.longBitsToDouble(rand.nextLong())); break;
+			default:
+				s = rand.nextInt(1000000) + "." + (rand.nextLong() >>> 1)
+					+ "e" + (rand.nextInt(60) - 30);
+			}
+			tokens.add(s);
+			line.append(s).append(' ');
+		}
+		GocadTokenizer tok = this.tokenizer(line.toString());
+		assertTrue(tok.nextLine());
+		for (int i = 0; i < tokens.size(); i++) {
+			assertEquals("Token \"" + tokens.get(i) + "\"",
+				Double.doubleToLongBits(Double.parseDouble(tokens.get(i))),
+				Double.doubleToLongBits(tok.doubleToken(i + 1)));
+		}
+		tok.close();
+	}
+
+	@Test
+	public void testLongToken() throws IOException
+	{
+		GocadTokenizer tok = this.tokenizer(String.join(" ", LONGS));
+		assertTrue(tok.nextLine());
+		for (int i = 0; i < LONGS.length; i++)
+			assertEquals(Long.parseLong(LONGS[i]), tok.longToken(i + 1));
+		tok.close();
+	}
+
+	@Test
+	public void testInvalidNumbers() throws IOException
+	{
+		GocadTokenizer tok = this.tokenizer("1e - . 1.2.3 12a -");
+		assertTrue(tok.nextLine());
+		for (int i = 1; i <= tok.numberOfTokens(); i++) {
+			try {
+				tok.doubleToken(i);
+				fail("Token \"" + tok.stringToken(i) + "\" parsed as double");
+			}
+			catch (NumberFormatException e) {
+			}
+		}
+		for (int i = 1; i <= tok.numberOfTokens(); i++) {
+			try {
+				tok.longToken(i);
+				fail("Token \"" + tok.stringToken(i) + "\" parsed as long");
+			}
+			catch (NumberFormatException e) {
+			}
+		}
+		try {
+			tok.doubleToken(tok.numberOfTokens() + 1);
+			fail("Missing token not detected");
+		}
+		catch (T3dException e) {
+		}
+		tok.close();
+	}
+
+	@Test
+	public void testSeparators() throws IOException
+	{
+		GocadTokenizer tok = this.tokenizer(
+			"VRTX\t1 \t 3552128.5\t5641740  -222.25\r\n" +
+			"\r\n" +
+			"  \t \n" +
+			"trgl 1 2 3\r\n" +
+			"END");
+		assertTrue(tok.nextLine());
+		assertEquals("VRTX\t1 \t 3552128.5\t5641740  -222.25", tok.line());
+		assertEquals(5, tok.numberOfTokens());
+		assertTrue(tok.tokenEquals(1, "VRTX"));
+		assertEquals(1, tok.longToken(2));
+		assertTrue(tok.doubleToken(3) == 3552128.5);
+		assertTrue(tok.doubleToken(4) == 5641740.);
+		assertTrue(tok.doubleToken(5) == -222.25);
+		assertTrue(tok.nextLine());
+		assertEquals("", tok.line());
+		assertEquals(0, tok.numberOfTokens());
+		assertTrue(tok.nextLine());
+		assertEquals(0, tok.numberOfTokens());
+		assertTrue(tok.nextLine());
+		assertTrue(tok.tokenEquals(1, "TRGL"));
+		assertFalse(tok.tokenEquals(1, "TRG"));
+		assertFalse(tok.tokenEquals(5, "TRGL"));
+		assertEquals("3", tok.stringToken(4));
+		assertTrue(tok.nextLine());
+		assertEquals("END", tok.line()); // last line without line-feed
+		assertFalse(tok.nextLine());
+		tok.close();
+	}
+
+	@Test
+	public void testStreamBufferGrowth() throws IOException
+	{
+		String text = this.sampleText();
+		List<String[]> expected = this.split(text);
+		for (int bufferSize = 1; bufferSize <= 64; bufferSize++) {
+			// Deliver the data in small chunks to force partial buffer fills:
+			GocadTokenizer tok = new GocadTokenizer(
+				new ChunkedInputStream(text.getBytes("US-ASCII"), 3), bufferSize);
+			this.compare(tok, expected, null);
+			tok.close();
+		}
+	}
+
+	@Test
+	public void testMappedWindowBoundary() throws IOException
+	{
+		String text = this.sampleText();
+		List<String[]> expected = this.split(text);
+		List<Long> positions = this.lineStarts(text);
+		File file = File.createTempFile("gocad", ".ts");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(text.getBytes("US-ASCII"));
+		out.close();
+
+		// The longest line holds 55 bytes incl. CR/LF; small windows let
+		// each token straddle a window boundary for some window size:
+		for (int windowSize = 56; windowSize <= 200; windowSize++) {
+			GocadTokenizer tok = new GocadTokenizer(
+				FileChannel.open(file.toPath()), 0, file.length(), true, windowSize);
+			this.compare(tok, expected, positions);
+			tok.close();
+		}
+
+		// Sections starting at a line start:
+		long from = positions.get(2), to = positions.get(5);
+		GocadTokenizer tok = new GocadTokenizer(
+			FileChannel.open(file.toPath()), from, to, true, 64);
+		this.compare(tok, expected.subList(2, 5), positions.subList(2, 5));
+		tok.close();
+
+		// Lines exceeding the window size can not be handled:
+		tok = new GocadTokenizer(
+			FileChannel.open(file.toPath()), 0, file.length(), true, 16);
+		try {
+			while (tok.nextLine())
+				;
+			fail("Line exceeding the window size not detected");
+		}
+		catch (T3dException e) {
+		}
+		finally {
+			tok.close();
+		}
+		assertTrue(file.delete());
+	}
+
+	// Helpers:
+
+	private GocadTokenizer tokenizer(String text) throws IOException {
+		return new GocadTokenizer(new ByteArrayInputStream(text.getBytes("US-ASCII")));
+	}
+
+	private String sampleText() {
+		return
+			"GOCAD TSurf 1\r\n" +
+			"HEADER {\n" +
+			"name:\tsurface 1\n" +
+			"}\n" +
+			"VRTX 1 3552128.125 5641740.0625 -222.5\r\n" +
+			"PVRTX 2 3552129.000000000001 5641741 -1.25e2 0.5 1E-3\r\n" +
+			"\n" +
+			"VRTX\t3\t3552130.5\t5641742.5\t-224.75\n" +
+			"ATOM 4 1\r\n" +
+			"TRGL 1 2 3\n" +
+			"TRGL 3 2 4\n" +
+			"END";
+	}
+
+	private List<String[]> split(String text) {
+		List<String[]> res = new ArrayList<String[]>();
+		for (String line : text.split("\n", -1)) {
+			line = line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+			String trimmed = line.trim();
+			res.add(trimmed.isEmpty() ? new String[0] : trimmed.split("[ \t]+"));
+		}
+		return res;
+	}
+
+	private List<Long> lineStarts(String text) {
+		List<Long> res = new ArrayList<Long>();
+		res.add(0L);
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '\n')
+				res.add((long) i + 1);
+		}
+		return res;
+	}
+
+	private void compare(GocadTokenizer tok, List<String[]> expected, List<Long> positions)
+		throws IOException
+	{
+		for (int l = 0; l < expected.size(); l++) {
+			assertTrue(tok.nextLine());
+			if (positions != null)
+				assertEquals(positions.get(l).longValue(), tok.linePosition());
+			String[] tokens = expected.get(l);
+			assertEquals(tokens.length, tok.numberOfTokens());
+			for (int i = 0; i < tokens.length; i++) {
+				assertEquals(tokens[i], tok.stringToken(i + 1));
+				assertTrue(tok.tokenEquals(i + 1, tokens[i].toLowerCase()));
+				if (tokens[i].matches("[-+0-9.eE]+") && !tokens[i].matches(".*\\..*\\..*")) {
+					assertEquals(Double.parseDouble(tokens[i]), tok.doubleToken(i + 1), 0.);
+				}
+			}
+		}
+		assertFalse(tok.nextLine());
+	}
+
+	// Input stream delivering at most n bytes per read() call:
+	private static class ChunkedInputStream extends InputStream
+	{
+		private final byte[] data;
+		private final int n;
+		private int pos = 0;
+
+		ChunkedInputStream(byte[] data, int n) {
+			this.data = data;
+			this.n = n;
+		}
+
+		@Override
+		public int read() {
+			return (pos < data.length) ? data[pos++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (pos >= data.length)
+				return -1;
+			len = Math.min(Math.min(len, n), data.length - pos);
+			System.arraycopy(data, pos, b, off, len);
+			pos += len;
+			return len;
+		}
+	}
+}
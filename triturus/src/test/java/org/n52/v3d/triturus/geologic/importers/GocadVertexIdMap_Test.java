@@ -0,0 +1,160 @@
+package org.n52.v3d.triturus.geologic.importers;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.n52.v3d.triturus.core.T3dException;
+
+public class GocadVertexIdMap_Test
+{
+	@Test
+	public void testDenseIds()
+	{
+		GocadVertexIdMap ids = new GocadVertexIdMap();
+		for (int i = 0; i < 1000; i++)
+			ids.addVertex(i + 1, i);
+		for (int i = 0; i < 1000; i++)
+			assertEquals(i, ids.indexOf(i + 1));
+		assertTrue(ids.contains(1));
+		assertTrue(ids.contains(1000));
+		assertFalse(ids.contains(0));
+		assertFalse(ids.contains(1001));
+		assertFalse(ids.contains(-1));
+		this.assertUndefined(ids, 1001);
+		this.assertUndefined(ids, 0);
+	}
+
+	@Test
+	public void testDenseAtoms()
+	{
+		// VRTX 1, VRTX 2, ATOM 3 -> 2, VRTX 4, VRTX 5, VRTX 6, ATOM 7 -> 6, ...
+		GocadVertexIdMap ids = new GocadVertexIdMap();
+		int n = 0;
+		long id = 1;
+		for (int k = 0; k < 2000; k++) {
+			ids.addVertex(id++, n++);
+			if (k % 3 == 1) {
+				ids.addAlias(id, id - 1);
+				id++;
+			}
+		}
+		n = 0;
+		id = 1;
+		for (int k = 0; k < 2000; k++) {
+			assertEquals(n, ids.indexOf(id++));
+			if (k % 3 == 1)
+				assertEquals(n, ids.indexOf(id++));
+			n++;
+		}
+		assertTrue(ids.contains(id - 1));
+		assertFalse(ids.contains(id));
+
+		// ATOM referring to an ATOM:
+		ids.addAlias(id, 3);
+		assertEquals(1, ids.indexOf(id));
+
+		// Switch to the hash table afterwards:
+		ids.addVertex(id + 10, n);
+		assertEquals(n, ids.indexOf(id + 10));
+		assertEquals(1, ids.indexOf(3));
+		assertEquals(1, ids.indexOf(id));
+		assertEquals(n - 1, ids.indexOf(id - 1));
+		assertFalse(ids.contains(id + 1));
+	}
+
+	@Test
+	public void testSparseIds()
+	{
+		GocadVertexIdMap ids = new GocadVertexIdMap();
+		int n = 100000; // enforces several rehash operations
+		for (int i = 0; i < n; i++)
+			ids.addVertex(7L * i + 5, i);
+		ids.addAlias(-3, 5);
+		ids.addAlias(Integer.MAX_VALUE, 7L * (n - 1) + 5);
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, ids.indexOf(7L * i + 5));
+			assertFalse(ids.contains(7L * i + 6));
+		}
+		assertEquals(0, ids.indexOf(-3));
+		assertEquals(n - 1, ids.indexOf(Integer.MAX_VALUE));
+		this.assertUndefined(ids, 6);
+		this.assertUndefined(ids, 7L * n + 5);
+	}
+
+	@Test
+	public void testNonSequentialStart()
+	{
+		// Ids starting at 0 or given in descending order:
+		GocadVertexIdMap ids = new GocadVertexIdMap();
+		ids.addVertex(0, 0);
+		ids.addVertex(1, 1);
+		assertEquals(0, ids.indexOf(0));
+		assertEquals(1, ids.indexOf(1));
+
+		ids = new GocadVertexIdMap();
+		for (int i = 0; i < 10; i++)
+			ids.addVertex(10 - i, i);
+		for (int i = 0; i < 10; i++)
+			assertEquals(i, ids.indexOf(10 - i));
+	}
+
+	@Test
+	public void testIdsOutOfRange()
+	{
+		GocadVertexIdMap ids = new GocadVertexIdMap();
+		ids.addVertex(1, 0);
+		long big = 1L + Integer.MAX_VALUE;
+		try {
+			ids.addVertex(big, 1);
+			fail("Vertex id " + big + " accepted");
+		}
+		catch (T3dException e) {
+		}
+		try {
+			ids.addAlias(Integer.MIN_VALUE, 1);
+			fail("Vertex id " + Integer.MIN_VALUE + " accepted");
+		}
+		catch (T3dException e) {
+		}
+		assertFalse(ids.contains(big));
+		assertFalse(ids.contains(Integer.MIN_VALUE));
+		this.assertUndefined(ids, big);
+		this.assertUndefined(ids, 1L << 40);
+		assertEquals(0, ids.indexOf(1));
+	}
+
+	@Test
+	public void testDuplicateIds()
+	{
+		GocadVertexIdMap ids = new GocadVertexIdMap();
+		ids.addVertex(1, 0);
+		ids.addVertex(2, 1);
+		try {
+			ids.addVertex(2, 2);
+			fail("Duplicate vertex id accepted");
+		}
+		catch (T3dException e) {
+		}
+		try {
+			ids.addAlias(1, 1);
+			fail("Duplicate ATOM id accepted");
+		}
+		catch (T3dException e) {
+		}
+		try {
+			ids.addAlias(10, 9);
+			fail("ATOM referring to an unknown vertex accepted");
+		}
+		catch (T3dException e) {
+		}
+	}
+
+	private void assertUndefined(GocadVertexIdMap ids, long id) {
+		try {
+			ids.indexOf(id);
+			fail("Vertex id " + id + " found");
+		}
+		catch (T3dException e) {
+		}
+	}
+}